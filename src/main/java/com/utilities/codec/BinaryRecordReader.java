@@ -0,0 +1,146 @@
+package com.utilities.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of the primitives written by {@link BinaryRecordWriter}.
+ *
+ * <p>
+ * Every method throws an {@link IllegalArgumentException} when the bytes end
+ * early or are malformed, so that a consumer can skip a corrupt record.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class BinaryRecordReader {
+
+	private final byte[] bytes;
+
+	private final int limit;
+
+	private int position;
+
+	private BinaryRecordReader(byte[] bytes, int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IllegalArgumentException("invalid range " + offset + "+" + length + " of " + bytes.length);
+		this.bytes = bytes;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * Method to get a new instance of {@link BinaryRecordReader} over an array
+	 *
+	 * @param bytes Encoded bytes
+	 * @return New instance of {@link BinaryRecordReader}
+	 */
+	public static BinaryRecordReader getInstance(byte[] bytes) {
+		return new BinaryRecordReader(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Method to get a new instance of {@link BinaryRecordReader} over a range of
+	 * an array
+	 *
+	 * @param bytes  Encoded bytes
+	 * @param offset Index of the first byte to read
+	 * @param length Number of bytes to read
+	 * @return New instance of {@link BinaryRecordReader}
+	 */
+	public static BinaryRecordReader getInstance(byte[] bytes, int offset, int length) {
+		return new BinaryRecordReader(bytes, offset, length);
+	}
+
+	/**
+	 * Method to read one byte
+	 *
+	 * @return Byte as an unsigned value
+	 */
+	public int readByte() {
+		require(1);
+		return bytes[position++] & 0xFF;
+	}
+
+	/**
+	 * Method to read an integer written by
+	 * {@link BinaryRecordWriter#writeVarInt(int)}
+	 *
+	 * @return Value read
+	 */
+	public int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IllegalArgumentException("malformed varint at " + position);
+	}
+
+	/**
+	 * Method to read a long written by
+	 * {@link BinaryRecordWriter#writeVarLong(long)}
+	 *
+	 * @return Value read
+	 */
+	public long readVarLong() {
+		long zigzag = 0L;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			zigzag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+		throw new IllegalArgumentException("malformed varlong at " + position);
+	}
+
+	/**
+	 * Method to read a string written by
+	 * {@link BinaryRecordWriter#writeString(CharSequence)}
+	 *
+	 * @return Value read, may be {@code null}
+	 */
+	public String readString() {
+		int length = readVarInt() - 1;
+		if (length < 0)
+			return null;
+		require(length);
+		String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	/**
+	 * Method to skip bytes
+	 *
+	 * @param length Number of bytes to skip
+	 */
+	public void skip(int length) {
+		require(length);
+		position += length;
+	}
+
+	/**
+	 * Method to get the position of the next byte to read
+	 *
+	 * @return Index in the array
+	 */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Method to get the number of bytes left
+	 *
+	 * @return Number of unread bytes
+	 */
+	public int remaining() {
+		return limit - position;
+	}
+
+	private void require(int length) {
+		if (length < 0 || length > limit - position)
+			throw new IllegalArgumentException("record truncated at " + position);
+	}
+}
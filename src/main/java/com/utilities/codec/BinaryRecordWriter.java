@@ -0,0 +1,205 @@
+package com.utilities.codec;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer writing the primitives of the binary record format: unsigned
+ * and zig-zag variable length integers, and strings as their UTF-8 byte count
+ * plus one, {@code 0} standing for {@code null}, followed by the bytes.
+ *
+ * <p>
+ * Strings are encoded from their characters straight into the buffer, without
+ * an intermediate {@code byte[]}. A writer is not thread safe and is meant to
+ * be reused by one thread through {@link #reset()}.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class BinaryRecordWriter {
+
+	/**
+	 * Buffers grown beyond this size are shrunk back on {@link #reset()}
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private final int initialCapacity;
+
+	private byte[] buffer;
+
+	private int size;
+
+	private BinaryRecordWriter(int initialCapacity) {
+		this.initialCapacity = Math.max(16, initialCapacity);
+		this.buffer = new byte[this.initialCapacity];
+	}
+
+	/**
+	 * Method to get a new instance of {@link BinaryRecordWriter}
+	 *
+	 * @param initialCapacity Initial size of the buffer in bytes
+	 * @return New instance of {@link BinaryRecordWriter}
+	 */
+	public static BinaryRecordWriter getInstance(int initialCapacity) {
+		return new BinaryRecordWriter(initialCapacity);
+	}
+
+	/**
+	 * Method to discard the written bytes
+	 *
+	 * @return This writer
+	 */
+	public BinaryRecordWriter reset() {
+		if (buffer.length > MAX_RETAINED_CAPACITY)
+			buffer = new byte[initialCapacity];
+		size = 0;
+		return this;
+	}
+
+	/**
+	 * Method to write one byte
+	 *
+	 * @param value Byte to write
+	 * @return This writer
+	 */
+	public BinaryRecordWriter writeByte(int value) {
+		ensure(1);
+		buffer[size++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * Method to write raw bytes
+	 *
+	 * @param bytes Bytes to write
+	 * @return This writer
+	 */
+	public BinaryRecordWriter writeBytes(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+		return this;
+	}
+
+	/**
+	 * Method to write a non-negative integer in 1 to 5 bytes
+	 *
+	 * @param value Value to write, treated as unsigned
+	 * @return This writer
+	 */
+	public BinaryRecordWriter writeVarInt(int value) {
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * Method to write a signed long in 1 to 10 bytes, small magnitudes of either
+	 * sign using the fewest bytes
+	 *
+	 * @param value Value to write
+	 * @return This writer
+	 */
+	public BinaryRecordWriter writeVarLong(long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		ensure(10);
+		while ((zigzag & ~0x7FL) != 0) {
+			buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		buffer[size++] = (byte) zigzag;
+		return this;
+	}
+
+	/**
+	 * Method to write a string, or {@code null}
+	 *
+	 * @param value Characters to write
+	 * @return This writer
+	 */
+	public BinaryRecordWriter writeString(CharSequence value) {
+		if (value == null)
+			return writeVarInt(0);
+		int length = value.length();
+		int bytes = utf8Length(value, length);
+		writeVarInt(bytes + 1);
+		ensure(bytes);
+		if (bytes == length) {
+			for (int i = 0; i < length; i++)
+				buffer[size++] = (byte) value.charAt(i);
+			return this;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[size++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[size++] = (byte) (0xC0 | (c >> 6));
+				buffer[size++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				buffer[size++] = (byte) '?';
+			} else {
+				buffer[size++] = (byte) (0xE0 | (c >> 12));
+				buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[size++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Method to count the UTF-8 bytes of a string, unpaired surrogates counting
+	 * as the one byte of their {@code ?} replacement
+	 */
+	private static int utf8Length(CharSequence value, int length) {
+		int bytes = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80)
+				continue;
+			if (c < 0x800) {
+				bytes++;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				bytes += 2;
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	private void ensure(int extra) {
+		if (size + extra > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length << 1));
+	}
+
+	/**
+	 * Method to get the number of bytes written
+	 *
+	 * @return Number of bytes written since the last reset
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Method to copy the written bytes
+	 *
+	 * @return New array holding the written bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+}
@@ -0,0 +1,231 @@
+package com.utilities.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.utilities.interceptors.AuditKafkaDto;
+import com.utilities.log.LogDto;
+
+/**
+ * Schema of the binary log and audit records, with the encoders used by the
+ * producers and the decoders for consumers.
+ *
+ * <p>
+ * Every record starts with a three byte header: {@link #MAGIC}, the record
+ * type and the schema version. The magic byte can never start a UTF-8 text, so
+ * a consumer reading a topic during a switch from {@link PayloadFormat#JSON}
+ * tells the formats apart with {@link #isBinary(byte[])}. Fields follow in the
+ * order below, strings and integers encoded as by {@link BinaryRecordWriter}.
+ * </p>
+ *
+ * <pre>
+ * LOG   (1) service | clazz | method | threadId (varlong) | logLevel
+ *           | time (epoch millis, varlong) | message
+ * AUDIT (2) date | api | refNo | status (varint, 0 for null, else status + 1)
+ *           | request | response | requestEncoding (2) | responseEncoding (2)
+ * BATCH (0) count (varint) | per record: length (varint) | record
+ * </pre>
+ *
+ * <p>
+ * Decoders skip trailing fields added by a later schema version, so fields
+ * are only ever appended. Fields marked {@code (2)} were added in version 2
+ * and decode as {@code null} from earlier records.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class BinaryRecords {
+
+	/**
+	 * First byte of every record, a UTF-8 continuation byte
+	 */
+	public static final int MAGIC = 0xB7;
+
+	/**
+	 * Schema version written by this encoder
+	 */
+	public static final int SCHEMA_VERSION = 2;
+
+	public static final int TYPE_BATCH = 0;
+
+	public static final int TYPE_LOG = 1;
+
+	public static final int TYPE_AUDIT = 2;
+
+	private static final ThreadLocal<BinaryRecordWriter> WRITER = ThreadLocal
+			.withInitial(() -> BinaryRecordWriter.getInstance(512));
+
+	/**
+	 * Private constructor to override the default constructor for this utility
+	 * class which contains static utility methods
+	 */
+	private BinaryRecords() {
+	}
+
+	/**
+	 * Method to get the writer reused by the calling thread, reset
+	 *
+	 * @return Empty writer of the calling thread
+	 */
+	public static BinaryRecordWriter localWriter() {
+		return WRITER.get().reset();
+	}
+
+	/**
+	 * Method to write a log record
+	 *
+	 * @param writer     Target writer, reset
+	 * @param service    Service name
+	 * @param clazz      Class name for logging
+	 * @param method     Method name for logging
+	 * @param threadId   Thread id
+	 * @param logLevel   Log level label
+	 * @param timeMillis Epoch time of the event in milliseconds
+	 * @param message    Log message with its arguments substituted
+	 * @return The writer
+	 */
+	public static BinaryRecordWriter writeLog(BinaryRecordWriter writer, String service, String clazz,
+			String method, long threadId, String logLevel, long timeMillis, CharSequence message) {
+		return header(writer, TYPE_LOG).writeString(service).writeString(clazz).writeString(method)
+				.writeVarLong(threadId).writeString(logLevel).writeVarLong(timeMillis).writeString(message);
+	}
+
+	/**
+	 * Method to encode an audit record
+	 *
+	 * @param audit Audit to encode
+	 * @return Encoded record
+	 */
+	public static byte[] encodeAudit(AuditKafkaDto audit) {
+		BinaryRecordWriter writer = header(localWriter(), TYPE_AUDIT).writeString(audit.getDate())
+				.writeString(audit.getApi()).writeString(audit.getRefNo() == null ? null : audit.getRefNo().toString());
+		writer.writeVarInt(audit.getStatus() == null ? 0 : audit.getStatus() + 1);
+		return writer.writeString(audit.getRequest()).writeString(audit.getResponse())
+				.writeString(audit.getRequestEncoding()).writeString(audit.getResponseEncoding()).toByteArray();
+	}
+
+	/**
+	 * Method to pack records into one batch record. Callers keep the sum of the
+	 * {@link #packedSize(byte[])} of the records below the maximum record size of
+	 * the producer.
+	 *
+	 * @param records Encoded records
+	 * @return Encoded batch
+	 */
+	public static byte[] pack(List<byte[]> records) {
+		BinaryRecordWriter writer = header(localWriter(), TYPE_BATCH).writeVarInt(records.size());
+		for (byte[] record : records)
+			writer.writeVarInt(record.length).writeBytes(record);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Method to get the bytes a record adds to a batch record, its length prefix
+	 * included. The batch header adds at most 8 bytes more.
+	 *
+	 * @param record Encoded record
+	 * @return Size of the record within a batch
+	 */
+	public static int packedSize(byte[] record) {
+		int prefix = 1;
+		for (int length = record.length >>> 7; length != 0; length >>>= 7)
+			prefix++;
+		return prefix + record.length;
+	}
+
+	private static BinaryRecordWriter header(BinaryRecordWriter writer, int type) {
+		return writer.writeByte(MAGIC).writeByte(type).writeByte(SCHEMA_VERSION);
+	}
+
+	/**
+	 * Method to check whether a payload is a binary record rather than JSON
+	 *
+	 * @param payload Record value
+	 * @return {@code true} if the payload starts with {@link #MAGIC}
+	 */
+	public static boolean isBinary(byte[] payload) {
+		return payload != null && payload.length >= 3 && (payload[0] & 0xFF) == MAGIC;
+	}
+
+	/**
+	 * Method to get the type of a record
+	 *
+	 * @param payload Encoded record
+	 * @return One of {@link #TYPE_LOG}, {@link #TYPE_AUDIT} or
+	 *         {@link #TYPE_BATCH}
+	 * @throws IllegalArgumentException Thrown when the payload is not a binary
+	 *                                  record
+	 */
+	public static int getType(byte[] payload) {
+		if (!isBinary(payload))
+			throw new IllegalArgumentException("not a binary record");
+		return payload[1] & 0xFF;
+	}
+
+	/**
+	 * Method to decode the log records of a payload, either a single log record
+	 * or a batch of them
+	 *
+	 * @param payload Encoded record
+	 * @return Decoded logs, with the time formatted in the zone of the consumer
+	 * @throws IllegalArgumentException Thrown when the payload is malformed or
+	 *                                  not a log record
+	 */
+	public static List<LogDto> decodeLogs(byte[] payload) {
+		List<LogDto> logs = new ArrayList<>();
+		if (getType(payload) != TYPE_BATCH) {
+			logs.add(decodeLog(BinaryRecordReader.getInstance(payload)));
+			return logs;
+		}
+		BinaryRecordReader reader = BinaryRecordReader.getInstance(payload);
+		readHeader(reader, TYPE_BATCH);
+		int count = reader.readVarInt();
+		for (int i = 0; i < count; i++) {
+			int length = reader.readVarInt();
+			logs.add(decodeLog(BinaryRecordReader.getInstance(payload, reader.position(), length)));
+			reader.skip(length);
+		}
+		return logs;
+	}
+
+	private static LogDto decodeLog(BinaryRecordReader reader) {
+		readHeader(reader, TYPE_LOG);
+		return LogDto.getInstance(reader.readString(), reader.readString(), reader.readString(),
+				reader.readVarLong(), reader.readString(), reader.readVarLong(), reader.readString());
+	}
+
+	/**
+	 * Method to decode an audit record
+	 *
+	 * @param payload Encoded record
+	 * @return Decoded audit, with the reference number as a string
+	 * @throws IllegalArgumentException Thrown when the payload is malformed or
+	 *                                  not an audit record
+	 */
+	public static AuditKafkaDto decodeAudit(byte[] payload) {
+		BinaryRecordReader reader = BinaryRecordReader.getInstance(payload);
+		int version = readHeader(reader, TYPE_AUDIT);
+		String date = reader.readString();
+		String api = reader.readString();
+		String refNo = reader.readString();
+		int status = reader.readVarInt();
+		String request = reader.readString();
+		String response = reader.readString();
+		return version < 2
+				? AuditKafkaDto.getInstance(date, api, refNo, status == 0 ? null : status - 1, request, response)
+				: AuditKafkaDto.getInstance(date, api, refNo, status == 0 ? null : status - 1, request, response,
+						reader.readString(), reader.readString());
+	}
+
+	private static int readHeader(BinaryRecordReader reader, int type) {
+		if (reader.readByte() != MAGIC)
+			throw new IllegalArgumentException("not a binary record");
+		int actual = reader.readByte();
+		if (actual != type)
+			throw new IllegalArgumentException("expected record type " + type + " but found " + actual);
+		int version = reader.readByte();
+		if (version < 1)
+			throw new IllegalArgumentException("unsupported schema version " + version);
+		return version;
+	}
+}
@@ -0,0 +1,40 @@
+package com.utilities.codec;
+
+import java.util.Locale;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Encoding of the log and audit payloads sent to Kafka, selected in the
+ * configuration, e.g. {@code config.kafka.log-format=binary}.
+ * 
+ * @author Kabir Akware
+ */
+public enum PayloadFormat {
+
+	/**
+	 * Single-line JSON sent through a {@code StringSerializer}
+	 */
+	JSON,
+
+	/**
+	 * Compact binary records of {@link BinaryRecords} sent through a
+	 * {@code ByteArraySerializer}
+	 */
+	BINARY;
+
+	/**
+	 * Method to resolve a {@link PayloadFormat} from its configured name
+	 * 
+	 * @param name Format name, case insensitive
+	 * @return Matching {@link PayloadFormat}
+	 * @throws ConfigException Thrown when the name does not match any format
+	 */
+	public static PayloadFormat from(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw ConfigException.getInstance("invalid payload format: " + name);
+		}
+	}
+}
@@ -0,0 +1,571 @@
+package com.utilities.interceptors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import lombok.Getter;
+
+/**
+ * Serializes the request and response bodies of an audit straight into a
+ * bounded buffer, never building the full JSON of a body as a {@link String}.
+ *
+ * <p>
+ * Three limits are applied while the body is streamed:
+ * </p>
+ * <ul>
+ * <li>a cap on the UTF-8 bytes of a body: serialization stops as soon as it is
+ * reached and {@link #TRUNCATION_MARKER} is appended, so the body is no longer
+ * valid JSON</li>
+ * <li>redaction: the values of the configured field names, compared ignoring
+ * case, are written as {@link #MASK} at any depth, and every value nested in
+ * them as well. Bodies already in text form, {@link String} or UTF-8
+ * {@code byte[]}, are re-read as JSON to be redacted and kept as they are when
+ * they are not JSON</li>
+ * <li>compression: a body longer than the threshold is gzipped as it is
+ * written and returned Base64 encoded, with the encoding {@link #GZIP}</li>
+ * </ul>
+ *
+ * <p>
+ * The buffers are reused by the calling thread, the {@link AuditDispatcher}
+ * workers.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class AuditBodyWriter {
+
+	/**
+	 * Value written in place of a redacted value
+	 */
+	static final String MASK = "****";
+
+	/**
+	 * Encoding of a gzipped, Base64 encoded body
+	 */
+	static final String GZIP = "gzip";
+
+	/**
+	 * Text appended to a body cut at the byte cap
+	 */
+	static final String TRUNCATION_MARKER = "...[truncated]";
+
+	/**
+	 * Capacity above which the buffer of a thread is not kept for the next body
+	 */
+	private static final int RETAINED_CAPACITY = 64 * 1024;
+
+	/**
+	 * Thrown by the sink at the byte cap to stop serialization, without a stack
+	 * trace since it is expected
+	 */
+	private static final IOException LIMIT_REACHED = new IOException("audit body limit reached") {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	};
+
+	private final Gson gson;
+
+	/**
+	 * Maximum UTF-8 bytes of a body, not capped when zero or negative
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Length in bytes above which a body is compressed, never compressed when
+	 * negative
+	 */
+	private final long compressThreshold;
+
+	/**
+	 * Lower case names of the redacted fields
+	 */
+	private final Set<String> redactedFields;
+
+	private final ThreadLocal<Sink> sinks = ThreadLocal.withInitial(Sink::new);
+
+	/**
+	 * Private constructor to set the limits
+	 *
+	 * @param gson              Gson serializing the bodies
+	 * @param maxBytes          Maximum UTF-8 bytes of a body, not capped when
+	 *                          zero or negative
+	 * @param compressThreshold Length in bytes above which a body is compressed,
+	 *                          never compressed when negative
+	 * @param redactedFields    Names of the fields whose values are masked
+	 */
+	private AuditBodyWriter(Gson gson, long maxBytes, long compressThreshold, Collection<String> redactedFields) {
+		this.gson = gson;
+		this.maxBytes = maxBytes;
+		this.compressThreshold = compressThreshold;
+		this.redactedFields = new HashSet<>();
+		for (String field : redactedFields) {
+			if (!field.isBlank())
+				this.redactedFields.add(field.trim().toLowerCase(Locale.ROOT));
+		}
+	}
+
+	/**
+	 * Method to get a new instance of {@link AuditBodyWriter}
+	 *
+	 * @param gson              Gson serializing the bodies
+	 * @param maxBytes          Maximum UTF-8 bytes of a body, not capped when
+	 *                          zero or negative
+	 * @param compressThreshold Length in bytes above which a body is compressed,
+	 *                          never compressed when negative
+	 * @param redactedFields    Names of the fields whose values are masked
+	 * @return New instance of {@link AuditBodyWriter}
+	 */
+	static AuditBodyWriter getInstance(Gson gson, long maxBytes, long compressThreshold,
+			Collection<String> redactedFields) {
+		return new AuditBodyWriter(gson, maxBytes, compressThreshold, redactedFields);
+	}
+
+	/**
+	 * Method to serialize a body
+	 *
+	 * @param body Request or response body
+	 * @return Serialized body, or {@code null} if the body is {@code null}
+	 */
+	Body write(Object body) {
+		if (body == null)
+			return null;
+		Sink sink = sinks.get();
+		sink.open(maxBytes, compressThreshold);
+		try {
+			try {
+				if (body instanceof String)
+					writeText(sink, () -> new StringReader((String) body));
+				else if (body instanceof byte[])
+					writeText(sink, () -> new InputStreamReader(new ByteArrayInputStream((byte[]) body),
+							StandardCharsets.UTF_8));
+				else
+					gson.toJson(body, body.getClass(), jsonWriter(sink));
+			} catch (JsonIOException e) {
+				if (e.getCause() != LIMIT_REACHED)
+					throw e;
+			} catch (IOException e) {
+				if (e != LIMIT_REACHED)
+					throw new JsonIOException(e);
+			}
+			return sink.finish();
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		} finally {
+			sink.release();
+		}
+	}
+
+	/**
+	 * Method to write a body already in text form, a {@link String} or UTF-8
+	 * bytes, redacting it if it is JSON. A body starting like JSON but not
+	 * parsing as such, e.g. cut by the capture of {@link ReactiveAuditFilter},
+	 * keeps its redacted part only and is marked truncated, so that a value of a
+	 * redacted field is never written in clear.
+	 *
+	 * @param sink   Target sink
+	 * @param source Supplier of a new reader of the body
+	 * @throws IOException Thrown when the byte cap is reached
+	 */
+	private void writeText(Sink sink, Supplier<Reader> source) throws IOException {
+		if (redactedFields.isEmpty()) {
+			source.get().transferTo(sink);
+			return;
+		}
+		try {
+			JsonReader reader = new JsonReader(source.get());
+			JsonWriter writer = jsonWriter(sink);
+			copy(reader, writer);
+			if (reader.peek() == JsonToken.END_DOCUMENT) {
+				writer.flush();
+				return;
+			}
+		} catch (IOException | IllegalStateException e) {
+			if (e == LIMIT_REACHED)
+				throw LIMIT_REACHED;
+		}
+		if (startsLikeJson(source.get())) {
+			sink.truncated = true;
+			return;
+		}
+		// not JSON, kept as it is
+		sink.open(maxBytes, compressThreshold);
+		source.get().transferTo(sink);
+	}
+
+	private static boolean startsLikeJson(Reader reader) throws IOException {
+		int c;
+		do {
+			c = reader.read();
+		} while (c >= 0 && Character.isWhitespace(c));
+		return c == '{' || c == '[';
+	}
+
+	private JsonWriter jsonWriter(Writer sink) {
+		return redactedFields.isEmpty() ? new JsonWriter(sink) : new RedactingJsonWriter(sink, redactedFields);
+	}
+
+	/**
+	 * Method to copy one JSON value token by token
+	 *
+	 * @param reader Source of the value
+	 * @param writer Target of the value
+	 * @throws IOException Thrown when the source is not JSON or the byte cap is
+	 *                     reached
+	 */
+	private static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+		int depth = 0;
+		do {
+			switch (reader.peek()) {
+			case BEGIN_ARRAY:
+				reader.beginArray();
+				writer.beginArray();
+				depth++;
+				break;
+			case END_ARRAY:
+				reader.endArray();
+				writer.endArray();
+				depth--;
+				break;
+			case BEGIN_OBJECT:
+				reader.beginObject();
+				writer.beginObject();
+				depth++;
+				break;
+			case END_OBJECT:
+				reader.endObject();
+				writer.endObject();
+				depth--;
+				break;
+			case NAME:
+				writer.name(reader.nextName());
+				break;
+			case STRING:
+				writer.value(reader.nextString());
+				break;
+			case NUMBER:
+				writer.jsonValue(reader.nextString());
+				break;
+			case BOOLEAN:
+				writer.value(reader.nextBoolean());
+				break;
+			case NULL:
+				reader.nextNull();
+				writer.nullValue();
+				break;
+			default:
+				throw new IOException("unexpected end of JSON");
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * Serialized body
+	 */
+	@Getter
+	static final class Body {
+
+		/**
+		 * Body as JSON, or Base64 of its compressed form
+		 */
+		private final String text;
+
+		/**
+		 * {@code null} for plain JSON, else the compression of {@link #text}
+		 */
+		private final String encoding;
+
+		private final boolean truncated;
+
+		private Body(String text, String encoding, boolean truncated) {
+			this.text = text;
+			this.encoding = encoding;
+			this.truncated = truncated;
+		}
+	}
+
+	/**
+	 * {@link JsonWriter} masking the values of the redacted fields
+	 */
+	private static final class RedactingJsonWriter extends JsonWriter {
+
+		private final Set<String> redactedFields;
+
+		/**
+		 * Whether the next value belongs to a redacted field
+		 */
+		private boolean redactNext;
+
+		/**
+		 * Number of arrays and objects open within a redacted field
+		 */
+		private int redactedDepth;
+
+		private RedactingJsonWriter(Writer out, Set<String> redactedFields) {
+			super(out);
+			this.redactedFields = redactedFields;
+		}
+
+		/**
+		 * Method to check whether the value being written is redacted
+		 *
+		 * @return {@code true} if the value must be masked
+		 */
+		private boolean redacted() {
+			boolean redacted = redactNext || redactedDepth > 0;
+			redactNext = false;
+			return redacted;
+		}
+
+		@Override
+		public JsonWriter name(String name) throws IOException {
+			redactNext = redactedDepth == 0 && redactedFields.contains(name.toLowerCase(Locale.ROOT));
+			return super.name(name);
+		}
+
+		@Override
+		public JsonWriter beginArray() throws IOException {
+			if (redacted())
+				redactedDepth++;
+			return super.beginArray();
+		}
+
+		@Override
+		public JsonWriter endArray() throws IOException {
+			if (redactedDepth > 0)
+				redactedDepth--;
+			return super.endArray();
+		}
+
+		@Override
+		public JsonWriter beginObject() throws IOException {
+			if (redacted())
+				redactedDepth++;
+			return super.beginObject();
+		}
+
+		@Override
+		public JsonWriter endObject() throws IOException {
+			if (redactedDepth > 0)
+				redactedDepth--;
+			return super.endObject();
+		}
+
+		@Override
+		public JsonWriter value(String value) throws IOException {
+			return value != null && redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter jsonValue(String value) throws IOException {
+			return value != null && redacted() ? super.value(MASK) : super.jsonValue(value);
+		}
+
+		@Override
+		public JsonWriter value(boolean value) throws IOException {
+			return redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter value(Boolean value) throws IOException {
+			return value != null && redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter value(float value) throws IOException {
+			return redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter value(double value) throws IOException {
+			return redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter value(long value) throws IOException {
+			return redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter value(Number value) throws IOException {
+			return value != null && redacted() ? super.value(MASK) : super.value(value);
+		}
+
+		@Override
+		public JsonWriter nullValue() throws IOException {
+			redactNext = false;
+			return super.nullValue();
+		}
+	}
+
+	/**
+	 * Writer counting the UTF-8 bytes of a body, buffering its characters until
+	 * the compression threshold and compressing the rest as it is written
+	 */
+	private static final class Sink extends Writer {
+
+		private char[] buffer = new char[1024];
+
+		private int count;
+
+		/**
+		 * UTF-8 bytes written so far
+		 */
+		private long bytes;
+
+		private long maxBytes;
+
+		private long compressThreshold;
+
+		private boolean truncated;
+
+		private ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+		/**
+		 * Compressing writer, {@code null} until the body exceeds the threshold
+		 */
+		private Writer gzip;
+
+		private void open(long maxBytes, long compressThreshold) {
+			discardCompression();
+			this.maxBytes = maxBytes;
+			this.compressThreshold = compressThreshold;
+			count = 0;
+			bytes = 0L;
+			truncated = false;
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			for (int i = offset, end = offset + length; i < end; i++)
+				write(chars[i]);
+		}
+
+		@Override
+		public void write(String text, int offset, int length) throws IOException {
+			for (int i = offset, end = offset + length; i < end; i++)
+				write(text.charAt(i));
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			char ch = (char) c;
+			int length = ch < 0x80 ? 1 : ch < 0x800 || Character.isSurrogate(ch) ? 2 : 3;
+			if (maxBytes > 0 && bytes + length > maxBytes) {
+				truncated = true;
+				if (count > 0 && Character.isHighSurrogate(buffer[count - 1]) && gzip == null)
+					count--;
+				throw LIMIT_REACHED;
+			}
+			bytes += length;
+			put(ch);
+		}
+
+		private void put(char c) throws IOException {
+			if (count == buffer.length) {
+				if (gzip == null && compressThreshold >= 0 && bytes > compressThreshold)
+					startCompression();
+				else if (gzip != null)
+					flushBuffer();
+				else
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			buffer[count++] = c;
+		}
+
+		private void startCompression() throws IOException {
+			gzip = new OutputStreamWriter(new GZIPOutputStream(compressed, 8192), StandardCharsets.UTF_8);
+			flushBuffer();
+		}
+
+		private void flushBuffer() throws IOException {
+			gzip.write(buffer, 0, count);
+			count = 0;
+		}
+
+		/**
+		 * Method to complete the body, appending the truncation marker if the cap
+		 * was reached
+		 *
+		 * @return Serialized body
+		 * @throws IOException Thrown when the body cannot be compressed
+		 */
+		private Body finish() throws IOException {
+			if (truncated) {
+				for (int i = 0; i < TRUNCATION_MARKER.length(); i++)
+					put(TRUNCATION_MARKER.charAt(i));
+			}
+			if (gzip == null && compressThreshold >= 0 && bytes > compressThreshold)
+				startCompression();
+			if (gzip == null)
+				return new Body(new String(buffer, 0, count), null, truncated);
+			flushBuffer();
+			gzip.close();
+			gzip = null;
+			return new Body(Base64.getEncoder().encodeToString(compressed.toByteArray()), GZIP, truncated);
+		}
+
+		/**
+		 * Method to end a compression left open by a failed body and empty its
+		 * output
+		 */
+		private void discardCompression() {
+			if (gzip != null) {
+				try {
+					gzip.close();
+				} catch (IOException e) {
+					// only releases the deflater
+				}
+				gzip = null;
+			}
+			compressed.reset();
+		}
+
+		/**
+		 * Method to drop the buffers of a large body
+		 */
+		private void release() {
+			// measured before discardCompression() resets the size to zero
+			boolean largeOutput = compressed.size() > RETAINED_CAPACITY;
+			discardCompression();
+			if (buffer.length > RETAINED_CAPACITY)
+				buffer = new char[1024];
+			if (largeOutput)
+				compressed = new ByteArrayOutputStream();
+		}
+
+		@Override
+		public void flush() {
+			// completed by finish()
+		}
+
+		@Override
+		public void close() {
+			// reused, released by release()
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.utilities.interceptors;
+
+import lombok.Getter;
+
+/**
+ * References captured on the request thread for an audit, serialized later by
+ * an {@link AuditDispatcher} worker.
+ *
+ * <p>
+ * The request and response bodies are kept as the objects handled by the
+ * controller, so they must not be modified once the response is written. The
+ * {@link ReactiveAuditFilter} captures them as {@link CapturedBytes} instead,
+ * along with the request bytes the reference number is read from by the
+ * worker when the handler did not set it.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+@Getter
+final class AuditCapture {
+
+	/**
+	 * Private constructor to populate {@link AuditCapture}
+	 *
+	 * @param timeMillis   Epoch time of the response in milliseconds
+	 * @param uri          Path of the request
+	 * @param refNo        Reference number sent by user for a transaction
+	 * @param status       HTTP status of the response
+	 * @param requestBody  Request body read by {@link RequestInterceptor}
+	 * @param responseBody Body returned by the controller
+	 * @param refNoSource  JSON request bytes holding the reference number
+	 */
+	private AuditCapture(long timeMillis, String uri, Object refNo, Integer status, Object requestBody,
+			Object responseBody, CapturedBytes refNoSource) {
+		this.timeMillis = timeMillis;
+		this.uri = uri;
+		this.refNo = refNo;
+		this.status = status;
+		this.requestBody = requestBody;
+		this.responseBody = responseBody;
+		this.refNoSource = refNoSource;
+	}
+
+	private final long timeMillis;
+
+	private final String uri;
+
+	private final Object refNo;
+
+	private final Integer status;
+
+	private final Object requestBody;
+
+	private final Object responseBody;
+
+	/**
+	 * JSON request bytes the reference number is read from when {@code refNo}
+	 * is {@code null}, {@code null} when there is nothing to read
+	 */
+	private final CapturedBytes refNoSource;
+
+	/**
+	 * Method to get a new instance of {@link AuditCapture}
+	 *
+	 * @param timeMillis   Epoch time of the response in milliseconds
+	 * @param uri          Path of the request
+	 * @param refNo        Reference number sent by user for a transaction
+	 * @param status       HTTP status of the response, {@code null} if unknown
+	 * @param requestBody  Request body read by {@link RequestInterceptor}
+	 * @param responseBody Body returned by the controller
+	 * @return New instance of {@link AuditCapture}
+	 */
+	static AuditCapture getInstance(long timeMillis, String uri, Object refNo, Integer status, Object requestBody,
+			Object responseBody) {
+		return new AuditCapture(timeMillis, uri, refNo, status, requestBody, responseBody, null);
+	}
+
+	/**
+	 * Method to get a new instance of {@link AuditCapture} whose reference number
+	 * is read by the worker
+	 *
+	 * @param timeMillis   Epoch time of the response in milliseconds
+	 * @param uri          Path of the request
+	 * @param refNo        Reference number set by the handler, {@code null} to
+	 *                     read it from {@code refNoSource}
+	 * @param status       HTTP status of the response, {@code null} if unknown
+	 * @param requestBody  Request bytes, {@code null} to leave them out
+	 * @param responseBody Response bytes, {@code null} to leave them out
+	 * @param refNoSource  JSON request bytes holding the reference number
+	 * @return New instance of {@link AuditCapture}
+	 */
+	static AuditCapture getInstance(long timeMillis, String uri, Object refNo, Integer status,
+			CapturedBytes requestBody, CapturedBytes responseBody, CapturedBytes refNoSource) {
+		return new AuditCapture(timeMillis, uri, refNo, status, requestBody, responseBody, refNoSource);
+	}
+}
@@ -0,0 +1,152 @@
+package com.utilities.interceptors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.utilities.log.Log;
+import com.utilities.metrics.PipelineMetrics;
+
+/**
+ * Bounded pool of daemon workers serializing and shipping audits off the
+ * request threads.
+ *
+ * <p>
+ * {@link #offer(AuditCapture)} never blocks: when the queue is full the audit
+ * is dropped and counted, so a slow broker never shows up in response times.
+ * Each worker takes up to {@code batchSize} queued audits at once and hands
+ * them to the handler, which serializes and sends them.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class AuditDispatcher {
+
+	private final BlockingQueue<AuditCapture> queue;
+
+	private final int batchSize;
+
+	private final Consumer<List<AuditCapture>> handler;
+
+	private final Thread[] workers;
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to create the queue and start the workers
+	 *
+	 * @param queueCapacity Maximum number of audits waiting to be shipped
+	 * @param workerCount   Number of worker threads
+	 * @param batchSize     Maximum number of audits handed to the handler at once
+	 * @param handler       Handler serializing and sending a batch of audits
+	 * @param threadName    Prefix of the worker thread names
+	 */
+	private AuditDispatcher(int queueCapacity, int workerCount, int batchSize,
+			Consumer<List<AuditCapture>> handler, String threadName) {
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.batchSize = Math.max(1, batchSize);
+		this.handler = handler;
+		this.workers = new Thread[Math.max(1, workerCount)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(this::work, threadName + "-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Method to get a new started instance of {@link AuditDispatcher}
+	 *
+	 * @param queueCapacity Maximum number of audits waiting to be shipped
+	 * @param workerCount   Number of worker threads
+	 * @param batchSize     Maximum number of audits handed to the handler at once
+	 * @param handler       Handler serializing and sending a batch of audits
+	 * @param threadName    Prefix of the worker thread names
+	 * @return New instance of {@link AuditDispatcher}
+	 */
+	static AuditDispatcher getInstance(int queueCapacity, int workerCount, int batchSize,
+			Consumer<List<AuditCapture>> handler, String threadName) {
+		return new AuditDispatcher(queueCapacity, workerCount, batchSize, handler, threadName);
+	}
+
+	/**
+	 * Method to queue an audit without blocking the caller
+	 *
+	 * @param capture Captured audit
+	 * @return {@code true} if queued, {@code false} if dropped because the queue
+	 *         is full or the dispatcher is stopped
+	 */
+	boolean offer(AuditCapture capture) {
+		if (running && queue.offer(capture))
+			return true;
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Worker loop handing batches to the handler until the dispatcher is stopped
+	 * and the queue is empty
+	 */
+	private void work() {
+		List<AuditCapture> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				AuditCapture first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				handler.accept(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				failed.add(batch.size());
+				Log.error(this.getClass().getSimpleName(), "work", "unable to ship %d audits: %n%s", batch.size(),
+						ExceptionUtils.getStackTrace(e));
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Method to register the counters and queue depth of this dispatcher in
+	 * {@link PipelineMetrics}
+	 *
+	 * @param prefix Prefix of the metric names, e.g. {@code audit}
+	 */
+	void registerMetrics(String prefix) {
+		PipelineMetrics.registerCounter(prefix + ".dropped", dropped::sum);
+		PipelineMetrics.registerCounter(prefix + ".failed", failed::sum);
+		PipelineMetrics.registerGauge(prefix + ".queue-depth", queue::size);
+	}
+
+	/**
+	 * Method to stop accepting audits and wait for the queued ones to be shipped
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if every worker finished within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	boolean shutdown(long millis) throws InterruptedException {
+		running = false;
+		long deadline = System.currentTimeMillis() + millis;
+		for (Thread worker : workers) {
+			worker.join(Math.max(1L, deadline - System.currentTimeMillis()));
+			if (worker.isAlive())
+				return false;
+		}
+		return true;
+	}
+}
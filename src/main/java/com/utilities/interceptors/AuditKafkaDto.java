@@ -51,20 +51,25 @@ public class AuditKafkaDto {
 	/**
 	 * Private constructor to populate {@code Audit} class
 	 * 
-	 * @param date     Current time stamp
-	 * @param endPoint API end point
-	 * @param refNo    Reference number sent by user for a transaction
-	 * @param status   HTTP status
-	 * @param request  API request
-	 * @param response API response
+	 * @param date             Current time stamp
+	 * @param endPoint         API end point
+	 * @param refNo            Reference number sent by user for a transaction
+	 * @param status           HTTP status
+	 * @param request          API request
+	 * @param response         API response
+	 * @param requestEncoding  Compression of the request, {@code null} if plain
+	 * @param responseEncoding Compression of the response, {@code null} if plain
 	 */
-	private AuditKafkaDto(String date, String endPoint, Object refNo, Integer status, String request, String response) {
+	private AuditKafkaDto(String date, String endPoint, Object refNo, Integer status, String request, String response,
+			String requestEncoding, String responseEncoding) {
 		this.date = date;
 		this.api = endPoint;
 		this.refNo = refNo;
 		this.status = status;
 		this.request = request;
 		this.response = response;
+		this.requestEncoding = requestEncoding;
+		this.responseEncoding = responseEncoding;
 	}
 
 	/**
@@ -97,6 +102,18 @@ public class AuditKafkaDto {
 	 */
 	private String response;
 
+	/**
+	 * Compression of {@link #request}, e.g. {@code gzip} for a Base64 encoded
+	 * gzipped body, {@code null} when the request is plain JSON
+	 */
+	private String requestEncoding;
+
+	/**
+	 * Compression of {@link #response}, {@code null} when the response is plain
+	 * JSON
+	 */
+	private String responseEncoding;
+
 	/**
 	 * Method to get a new instance of {@code Audit} class
 	 * 
@@ -110,7 +127,25 @@ public class AuditKafkaDto {
 	 */
 	public static AuditKafkaDto getInstance(String date, String uri, Object object, Integer status, String request,
 			String response) {
-		return new AuditKafkaDto(date, uri, object, status, request, response);
+		return new AuditKafkaDto(date, uri, object, status, request, response, null, null);
+	}
+
+	/**
+	 * Method to get a new instance of {@code Audit} class with compressed bodies
+	 * 
+	 * @param date             Current time stamp
+	 * @param uri              API end point
+	 * @param object           Reference number sent by user for a transaction
+	 * @param status           HTTP status
+	 * @param request          API request
+	 * @param response         API response
+	 * @param requestEncoding  Compression of the request, {@code null} if plain
+	 * @param responseEncoding Compression of the response, {@code null} if plain
+	 * @return new instance of {@code Audit} class
+	 */
+	public static AuditKafkaDto getInstance(String date, String uri, Object object, Integer status, String request,
+			String response, String requestEncoding, String responseEncoding) {
+		return new AuditKafkaDto(date, uri, object, status, request, response, requestEncoding, responseEncoding);
 	}
 
 }
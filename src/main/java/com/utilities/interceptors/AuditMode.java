@@ -0,0 +1,30 @@
+package com.utilities.interceptors;
+
+/**
+ * Extent of the audit of an endpoint, set by an {@link AuditPolicy}.
+ *
+ * @author Kabir Akware
+ */
+public enum AuditMode {
+
+	/**
+	 * Audit with the request and response bodies
+	 */
+	FULL,
+
+	/**
+	 * Audit of the end point, reference number and status only, the request
+	 * body is not kept for it
+	 */
+	HEADERS_ONLY,
+
+	/**
+	 * Full audit of a percentage of the requests, the others not being audited
+	 */
+	SAMPLED,
+
+	/**
+	 * No audit
+	 */
+	OFF
+}
@@ -0,0 +1,246 @@
+package com.utilities.interceptors;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kafka.clients.producer.Producer;
+
+import com.google.gson.Gson;
+import com.utilities.codec.BinaryRecords;
+import com.utilities.codec.PayloadFormat;
+import com.utilities.exceptions.ConfigException;
+import com.utilities.kafka.KafkaProducerRegistry;
+import com.utilities.kafka.KafkaSpool;
+import com.utilities.kafka.KafkaUtility;
+import com.utilities.kafka.PartitionKeyStrategy;
+import com.utilities.kafka.ProducerProfile;
+import com.utilities.metrics.PipelineMetrics;
+import com.utilities.property.AppProperties;
+
+/**
+ * Shipping side of the audits, shared by the servlet
+ * {@link ResponseInterceptor} and the reactive {@link ReactiveAuditFilter}.
+ *
+ * <p>
+ * Captured audits are offered to an {@link AuditDispatcher}, whose workers
+ * serialize the bodies through an {@link AuditBodyWriter} and send the
+ * resulting {@link AuditKafkaDto}. Offering never blocks, so it is safe from
+ * request threads and event loops alike. Only {@link #shutdown(long)} is
+ * public, for the lifecycle hook to drain audits whichever web stack captured
+ * them.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class AuditPipeline {
+
+	/**
+	 * Format of the {@code date} field of an audit
+	 */
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+	private static Gson gson;
+
+	private static String topic;
+
+	private static volatile boolean enable;
+
+	private static Producer<String, String> producer;
+
+	/**
+	 * Producer of binary audit records, {@code null} when audits are sent as JSON
+	 */
+	private static Producer<String, byte[]> binaryProducer;
+
+	/**
+	 * Strategy choosing the key of an audit from its reference number
+	 */
+	private static PartitionKeyStrategy keyStrategy;
+
+	/**
+	 * Disk spool taking over while the producer is unhealthy, {@code null} when
+	 * spooling is disabled
+	 */
+	private static KafkaSpool spool;
+
+	/**
+	 * Workers serializing and shipping the captured audits
+	 */
+	private static AuditDispatcher dispatcher;
+
+	/**
+	 * Writer capping, redacting and compressing the bodies of an audit
+	 */
+	private static AuditBodyWriter bodyWriter;
+
+	/**
+	 * Private constructor to override the default constructor for this utility
+	 * class which contains static utility methods
+	 */
+	private AuditPipeline() {
+	}
+
+	/**
+	 * Method to configure the pipeline from the {@code config.kafka} and
+	 * {@code config.audit} properties injected into an interceptor
+	 *
+	 * @param enableKafka           Whether audits are sent
+	 * @param serverDetails         Kafka bootstrap servers
+	 * @param t                     Audit topic
+	 * @param producerProfile       {@link ProducerProfile} of the producer
+	 * @param auditKeyStrategy      {@link PartitionKeyStrategy} of the records
+	 * @param payloadFormat         {@link PayloadFormat} of the records
+	 * @param serviceName           Name of the service
+	 * @param queueCapacity         Maximum number of audits waiting to be shipped
+	 * @param workerCount           Number of dispatcher workers
+	 * @param batchSize             Maximum number of audits shipped at once
+	 * @param maxBodyBytes          Maximum UTF-8 bytes of a body
+	 * @param compressThreshold     Length in bytes above which a body is
+	 *                              compressed, never when negative
+	 * @param redactedFields        Comma separated names of the masked fields
+	 * @param auditPolicies         Comma separated {@code pattern=policy} entries
+	 * @param defaultAuditPolicy    Policy of the endpoints matched by no pattern
+	 * @param auditPoliciesProperty {@link AppProperties} key the policies are
+	 *                              reloaded from, empty to not reload them
+	 * @param enableSpool           Whether to spool audits while Kafka is down
+	 * @param spoolDirectory        Directory of the spool
+	 * @param spoolMaxBytes         Maximum size of the spool
+	 * @param spoolSegmentBytes     Size of a spool segment
+	 * @param spoolReplayRate       Records replayed per second once recovered
+	 * @param spoolFailureThreshold Failures before spooling
+	 * @throws ConfigException Thrown when the configuration is invalid
+	 */
+	static synchronized void configure(Boolean enableKafka, String serverDetails, String t, String producerProfile,
+			String auditKeyStrategy, String payloadFormat, String serviceName, Integer queueCapacity,
+			Integer workerCount, Integer batchSize, Long maxBodyBytes, Long compressThreshold, String redactedFields,
+			String auditPolicies, String defaultAuditPolicy, String auditPoliciesProperty, Boolean enableSpool,
+			String spoolDirectory, Long spoolMaxBytes, Long spoolSegmentBytes, Integer spoolReplayRate,
+			Integer spoolFailureThreshold) {
+		gson = new Gson().newBuilder().disableHtmlEscaping().serializeNulls().serializeSpecialFloatingPointValues()
+				.create();
+		bodyWriter = AuditBodyWriter.getInstance(gson, maxBodyBytes, compressThreshold,
+				Arrays.asList(redactedFields.split(",")));
+		if (enableKafka) {
+			try {
+				topic = t;
+				keyStrategy = PartitionKeyStrategy.from(auditKeyStrategy, serviceName);
+				ProducerProfile profile = ProducerProfile.from(producerProfile);
+				if (PayloadFormat.from(payloadFormat) == PayloadFormat.BINARY) {
+					if (enableSpool)
+						throw ConfigException.getInstance("the kafka spool only supports the json audit format");
+					binaryProducer = KafkaProducerRegistry.getBinaryProducer(serverDetails, profile);
+				} else if (producer == null) {
+					producer = enableSpool ? KafkaProducerRegistry.getSpoolingProducer(serverDetails, profile)
+							: KafkaProducerRegistry.getProducer(serverDetails, profile);
+					spool = enableSpool
+							? KafkaSpool.getInstance(producer, spoolDirectory + "/audit", spoolMaxBytes,
+									spoolSegmentBytes, spoolReplayRate, spoolFailureThreshold)
+							: null;
+					if (spool != null)
+						spool.registerMetrics("audit.spool");
+				}
+				AuditPolicies.configure(auditPolicies, defaultAuditPolicy);
+				if (!auditPoliciesProperty.isEmpty())
+					AuditPolicies.watch(auditPoliciesProperty, auditPoliciesProperty + ".default");
+				if (dispatcher == null) {
+					dispatcher = AuditDispatcher.getInstance(queueCapacity, workerCount, batchSize,
+							AuditPipeline::ship, "audit-dispatcher");
+					dispatcher.registerMetrics("audit");
+				}
+			} catch (ArrayIndexOutOfBoundsException e) {
+				throw ConfigException.getInstance(
+						"need to provide two additional params if param[1] is true. provide bootstrap server & topic details respectively");
+			}
+		}
+		enable = enableKafka;
+	}
+
+	/**
+	 * Method to check whether audits are sent
+	 *
+	 * @return {@code true} if the pipeline is configured with
+	 *         {@code config.kafka.enable-audit-kafka}
+	 */
+	static boolean isEnabled() {
+		return enable;
+	}
+
+	/**
+	 * Method to hand a captured audit to the dispatcher, without blocking
+	 *
+	 * @param capture Captured audit
+	 * @return {@code true} if queued, {@code false} if dropped
+	 */
+	static boolean offer(AuditCapture capture) {
+		AuditDispatcher current = dispatcher;
+		return current != null && current.offer(capture);
+	}
+
+	/**
+	 * Method invoked on a dispatcher worker to serialize and send a batch of
+	 * audits
+	 *
+	 * @param batch Captured audits
+	 */
+	private static void ship(List<AuditCapture> batch) {
+		for (AuditCapture capture : batch) {
+			long started = System.nanoTime();
+			AuditBodyWriter.Body request = bodyWriter.write(bytes(capture.getRequestBody()));
+			AuditBodyWriter.Body response = bodyWriter.write(bytes(capture.getResponseBody()));
+			Object refNo = capture.getRefNo() == null && capture.getRefNoSource() != null
+					? RefNoExtractor.extractJson(capture.getRefNoSource().toByteArray())
+					: capture.getRefNo();
+			AuditKafkaDto dto = AuditKafkaDto.getInstance(
+					LocalDateTime.ofInstant(Instant.ofEpochMilli(capture.getTimeMillis()), ZoneId.systemDefault())
+							.format(DATE_FORMATTER),
+					capture.getUri(), refNo, capture.getStatus(), text(request), text(response), encoding(request),
+					encoding(response));
+			String source = refNo == null ? null : refNo.toString();
+			if (binaryProducer != null) {
+				byte[] audit = BinaryRecords.encodeAudit(dto);
+				KafkaUtility.postToKafka(binaryProducer, keyStrategy.key(source, audit), audit, topic);
+			} else {
+				String audit = gson.toJson(dto);
+				String key = keyStrategy.key(source, audit);
+				if (spool != null)
+					spool.send(topic, key, audit, null);
+				else
+					KafkaUtility.postToKafka(producer, key, audit, topic);
+			}
+			PipelineMetrics.AUDIT_SHIP.recordSince(started);
+		}
+	}
+
+	/**
+	 * Method to turn the bytes teed by the {@link ReactiveAuditFilter} into an
+	 * array, other bodies being returned as they are
+	 */
+	private static Object bytes(Object body) {
+		return body instanceof CapturedBytes ? ((CapturedBytes) body).toByteArray() : body;
+	}
+
+	private static String text(AuditBodyWriter.Body body) {
+		return body == null ? null : body.getText();
+	}
+
+	private static String encoding(AuditBodyWriter.Body body) {
+		return body == null ? null : body.getEncoding();
+	}
+
+	/**
+	 * Method to stop capturing audits and wait for the captured ones to be
+	 * shipped
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if every audit was shipped within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	public static boolean shutdown(long millis) throws InterruptedException {
+		AuditDispatcher current = dispatcher;
+		return current == null || current.shutdown(millis);
+	}
+}
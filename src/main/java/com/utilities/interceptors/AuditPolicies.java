@@ -0,0 +1,136 @@
+package com.utilities.interceptors;
+
+import com.utilities.exceptions.ConfigException;
+import com.utilities.log.Log;
+import com.utilities.property.AppProperties;
+import com.utilities.property.PropertySubscription;
+
+import org.springframework.web.util.UrlPathHelper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Per endpoint audit policies applied by {@link RequestInterceptor} and
+ * {@link ResponseInterceptor}.
+ *
+ * <p>
+ * The policies are compiled into an {@link AuditPolicyMatcher} published as a
+ * whole, so a reload never blocks nor half-applies to a request. The audit of
+ * a request is decided once, by the first interceptor it reaches, and kept in
+ * the request attribute {@link #AUDIT_MODE_ATTRIBUTE} so that both
+ * interceptors, and the sample drawn, agree. Until configured every endpoint is
+ * audited in full.
+ * </p>
+ *
+ * <p>
+ * Example configuration:
+ * </p>
+ *
+ * <pre>
+ * config.audit.default-policy=full
+ * config.audit.policies=/actuator/**=off,/api/reports/**=sampled:5,/api/users/*=headers-only
+ * </pre>
+ *
+ * <p>
+ * With {@code config.audit.policies-property=audit.policies}, the policies are
+ * also reloaded from the {@link AppProperties} keys {@code audit.policies} and
+ * {@code audit.policies.default} whenever they change.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class AuditPolicies {
+
+	/**
+	 * Request attribute holding the {@link AuditMode} decided for the request
+	 */
+	static final String AUDIT_MODE_ATTRIBUTE = "main-audit-mode";
+
+	private static volatile AuditPolicyMatcher matcher = AuditPolicyMatcher.compile(null, AuditPolicy.FULL);
+
+	/**
+	 * Subscription reloading the policies from {@link AppProperties}, {@code null}
+	 * when not watched
+	 */
+	private static PropertySubscription subscription;
+
+	/**
+	 * Private constructor to override the default constructor for this utility
+	 * class which contains static utility methods
+	 */
+	private AuditPolicies() {
+	}
+
+	/**
+	 * Method to compile and apply new policies
+	 *
+	 * @param specification Comma separated {@code pattern=policy} entries
+	 * @param defaultPolicy Policy of the endpoints matched by no pattern
+	 * @throws ConfigException Thrown when an entry is invalid, the current
+	 *                         policies being kept
+	 */
+	public static void configure(String specification, String defaultPolicy) {
+		AuditPolicyMatcher compiled = AuditPolicyMatcher.compile(specification, AuditPolicy.from(defaultPolicy));
+		matcher = compiled;
+		Log.info(AuditPolicies.class.getSimpleName(), "configure", "applied %d audit policies, default %s",
+				compiled.size(), compiled.getDefaultPolicy());
+	}
+
+	/**
+	 * Method to reload the policies whenever the given keys change in
+	 * {@link AppProperties}. A key missing from the properties keeps its current
+	 * value.
+	 *
+	 * @param policiesKey      Key of the comma separated policies
+	 * @param defaultPolicyKey Key of the default policy
+	 */
+	public static synchronized void watch(String policiesKey, String defaultPolicyKey) {
+		if (subscription != null)
+			subscription.cancel();
+		subscription = AppProperties.subscribeKeys(changes -> reload(policiesKey, defaultPolicyKey), policiesKey,
+				defaultPolicyKey);
+		if (AppProperties.strProperty(policiesKey) != null || AppProperties.strProperty(defaultPolicyKey) != null)
+			reload(policiesKey, defaultPolicyKey);
+	}
+
+	private static void reload(String policiesKey, String defaultPolicyKey) {
+		AuditPolicyMatcher current = matcher;
+		String specification = AppProperties.strProperty(policiesKey);
+		String defaultPolicy = AppProperties.strProperty(defaultPolicyKey);
+		try {
+			configure(specification, defaultPolicy == null ? current.getDefaultPolicy().toString() : defaultPolicy);
+		} catch (ConfigException e) {
+			Log.error(AuditPolicies.class.getSimpleName(), "reload", "invalid audit policies, keeping the current: %s",
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to resolve the policy of a path
+	 *
+	 * @param path Decoded request path, without the context path nor {@code ;}
+	 *             parameters
+	 * @return Policy of the most specific matching pattern
+	 */
+	public static AuditPolicy resolve(String path) {
+		return matcher.match(path);
+	}
+
+	/**
+	 * Method to decide the audit of a request, once per request
+	 *
+	 * @param request Current request
+	 * @return {@link AuditMode#FULL}, {@link AuditMode#HEADERS_ONLY} or
+	 *         {@link AuditMode#OFF}
+	 */
+	static AuditMode decide(HttpServletRequest request) {
+		Object decided = request.getAttribute(AUDIT_MODE_ATTRIBUTE);
+		if (decided instanceof AuditMode)
+			return (AuditMode) decided;
+		// decoded and without ';' parameters, so that an encoded or parameterized
+		// path cannot escape its policy
+		AuditMode mode = resolve(UrlPathHelper.defaultInstance.getPathWithinApplication(request)).decide();
+		request.setAttribute(AUDIT_MODE_ATTRIBUTE, mode);
+		return mode;
+	}
+}
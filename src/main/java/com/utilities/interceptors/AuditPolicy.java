@@ -0,0 +1,110 @@
+package com.utilities.interceptors;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.utilities.exceptions.ConfigException;
+
+import lombok.Getter;
+
+/**
+ * Audit policy of an endpoint pattern, written in the configuration as
+ * {@code full}, {@code headers-only}, {@code off} or {@code sampled:N} where
+ * {@code N} is the percentage of requests audited in full, e.g.
+ * {@code sampled:5} or {@code sampled:0.5%}.
+ *
+ * @author Kabir Akware
+ */
+@Getter
+public final class AuditPolicy {
+
+	public static final AuditPolicy FULL = new AuditPolicy(AuditMode.FULL, 100d);
+
+	public static final AuditPolicy HEADERS_ONLY = new AuditPolicy(AuditMode.HEADERS_ONLY, 100d);
+
+	public static final AuditPolicy OFF = new AuditPolicy(AuditMode.OFF, 0d);
+
+	private final AuditMode mode;
+
+	/**
+	 * Percentage of the requests audited in full by a {@link AuditMode#SAMPLED}
+	 * policy
+	 */
+	private final double percent;
+
+	/**
+	 * Private constructor to set the policy
+	 *
+	 * @param mode    Extent of the audit
+	 * @param percent Percentage of sampled requests
+	 */
+	private AuditPolicy(AuditMode mode, double percent) {
+		this.mode = mode;
+		this.percent = percent;
+	}
+
+	/**
+	 * Method to get a policy auditing a percentage of the requests in full
+	 *
+	 * @param percent Percentage of the requests audited, from 0 to 100
+	 * @return New sampled instance of {@link AuditPolicy}
+	 * @throws ConfigException Thrown when the percentage is out of range
+	 */
+	public static AuditPolicy sampled(double percent) {
+		if (!(percent >= 0d && percent <= 100d))
+			throw ConfigException.getInstance("audit sampling percentage must be between 0 and 100: " + percent);
+		return new AuditPolicy(AuditMode.SAMPLED, percent);
+	}
+
+	/**
+	 * Method to parse a policy from the configuration
+	 *
+	 * @param value {@code full}, {@code headers-only}, {@code off} or
+	 *              {@code sampled:N}
+	 * @return Parsed policy
+	 * @throws ConfigException Thrown when the value is not a policy
+	 */
+	public static AuditPolicy from(String value) {
+		String policy = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+		switch (policy) {
+		case "full":
+			return FULL;
+		case "headers-only":
+		case "headers_only":
+			return HEADERS_ONLY;
+		case "off":
+			return OFF;
+		default:
+			if (policy.startsWith("sampled:")) {
+				String percent = policy.substring("sampled:".length()).trim();
+				if (percent.endsWith("%"))
+					percent = percent.substring(0, percent.length() - 1);
+				try {
+					return sampled(Double.parseDouble(percent));
+				} catch (NumberFormatException e) {
+					// reported below
+				}
+			}
+			throw ConfigException.getInstance(
+					"unknown audit policy: " + value + ", expected full, headers-only, off or sampled:N");
+		}
+	}
+
+	/**
+	 * Method to decide the audit of one request, drawing the sample of a
+	 * {@link AuditMode#SAMPLED} policy
+	 *
+	 * @return {@link AuditMode#FULL}, {@link AuditMode#HEADERS_ONLY} or
+	 *         {@link AuditMode#OFF}
+	 */
+	public AuditMode decide() {
+		if (mode != AuditMode.SAMPLED)
+			return mode;
+		return ThreadLocalRandom.current().nextDouble(100d) < percent ? AuditMode.FULL : AuditMode.OFF;
+	}
+
+	@Override
+	public String toString() {
+		return mode == AuditMode.SAMPLED ? "sampled:" + percent : mode.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+}
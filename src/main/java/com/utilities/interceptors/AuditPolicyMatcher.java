@@ -0,0 +1,149 @@
+package com.utilities.interceptors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Trie of the endpoint patterns of the audit policies, compiled once so that
+ * resolving the policy of a request walks its path segment by segment.
+ *
+ * <p>
+ * A pattern is a path whose segments are literals, {@code *} matching exactly
+ * one segment, or a final {@code **} matching the rest of the path, including
+ * nothing. A literal segment is preferred over {@code *}, and {@code *} over
+ * {@code **}, so {@code /api/reports/daily} wins over {@code /api/reports/*}
+ * which wins over {@code /api/**}. Paths matched by no pattern get the default
+ * policy.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class AuditPolicyMatcher {
+
+	private final Node root = new Node();
+
+	private final AuditPolicy defaultPolicy;
+
+	/**
+	 * Number of compiled patterns
+	 */
+	private int size;
+
+	private AuditPolicyMatcher(AuditPolicy defaultPolicy) {
+		this.defaultPolicy = defaultPolicy;
+	}
+
+	/**
+	 * Method to compile the policies of a specification
+	 *
+	 * @param specification Comma separated {@code pattern=policy} entries, e.g.
+	 *                      {@code /health=off,/api/reports/**=sampled:5}
+	 * @param defaultPolicy Policy of the paths matched by no pattern
+	 * @return Compiled instance of {@link AuditPolicyMatcher}
+	 * @throws ConfigException Thrown when an entry is invalid
+	 */
+	static AuditPolicyMatcher compile(String specification, AuditPolicy defaultPolicy) {
+		AuditPolicyMatcher matcher = new AuditPolicyMatcher(defaultPolicy);
+		if (specification == null)
+			return matcher;
+		for (String entry : specification.split(",")) {
+			if (entry.isBlank())
+				continue;
+			int separator = entry.lastIndexOf('=');
+			if (separator < 0)
+				throw ConfigException.getInstance("audit policy entry must be pattern=policy: " + entry.trim());
+			matcher.add(entry.substring(0, separator).trim(), AuditPolicy.from(entry.substring(separator + 1)));
+		}
+		return matcher;
+	}
+
+	private void add(String pattern, AuditPolicy policy) {
+		Node node = root;
+		String[] segments = pattern.split("/");
+		for (int i = 0; i < segments.length; i++) {
+			String segment = segments[i];
+			if (segment.isEmpty())
+				continue;
+			if ("**".equals(segment)) {
+				if (i != segments.length - 1)
+					throw ConfigException.getInstance("** must be the last segment of audit pattern " + pattern);
+				node.rest = policy;
+				size++;
+				return;
+			}
+			node = "*".equals(segment) ? node.star() : node.literal(segment);
+		}
+		node.exact = policy;
+		size++;
+	}
+
+	/**
+	 * Method to resolve the policy of a path
+	 *
+	 * @param path Request path, without the context path
+	 * @return Policy of the most specific pattern, or the default policy
+	 */
+	AuditPolicy match(String path) {
+		AuditPolicy policy = match(root, path, 0);
+		return policy == null ? defaultPolicy : policy;
+	}
+
+	private static AuditPolicy match(Node node, String path, int from) {
+		while (from < path.length() && path.charAt(from) == '/')
+			from++;
+		if (from == path.length())
+			return node.exact != null ? node.exact : node.rest;
+		int end = path.indexOf('/', from);
+		if (end < 0)
+			end = path.length();
+		AuditPolicy policy = null;
+		Node literal = node.literals == null ? null : node.literals.get(path.substring(from, end));
+		if (literal != null)
+			policy = match(literal, path, end);
+		if (policy == null && node.star != null)
+			policy = match(node.star, path, end);
+		return policy != null ? policy : node.rest;
+	}
+
+	AuditPolicy getDefaultPolicy() {
+		return defaultPolicy;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Segment of the trie
+	 */
+	private static final class Node {
+
+		private Map<String, Node> literals;
+
+		private Node star;
+
+		/**
+		 * Policy of a pattern ending at this segment
+		 */
+		private AuditPolicy exact;
+
+		/**
+		 * Policy of a pattern ending with {@code **} after this segment
+		 */
+		private AuditPolicy rest;
+
+		private Node literal(String segment) {
+			if (literals == null)
+				literals = new HashMap<>();
+			return literals.computeIfAbsent(segment, key -> new Node());
+		}
+
+		private Node star() {
+			if (star == null)
+				star = new Node();
+			return star;
+		}
+	}
+}
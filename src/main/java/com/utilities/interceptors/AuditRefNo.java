@@ -0,0 +1,30 @@
+package com.utilities.interceptors;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the field or no-argument method of a request body holding the
+ * reference number of a transaction, when it is not named {@code refNo}.
+ *
+ * <p>
+ * Example usage:
+ * </p>
+ *
+ * <pre>
+ * public class PaymentRequest {
+ * 	&#64;AuditRefNo
+ * 	private String transactionId;
+ * }
+ * </pre>
+ *
+ * @author Kabir Akware
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface AuditRefNo {
+}
@@ -0,0 +1,85 @@
+package com.utilities.interceptors;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Copy of the first bytes of a body teed by the {@link ReactiveAuditFilter}.
+ *
+ * <p>
+ * Bytes are appended on the event loop from the signals of one body and the
+ * copy is sealed there once the exchange completed. It is then handed to the
+ * {@link AuditPipeline} as is, so that turning it into an array and reading
+ * the reference number from it happen on a dispatcher worker.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class CapturedBytes {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int limit;
+
+	private byte[] bytes = EMPTY;
+
+	private int count;
+
+	/**
+	 * Set on the event loop once the exchange completed, after which late
+	 * signals of the body are not copied
+	 */
+	private boolean sealed;
+
+	/**
+	 * Private constructor to populate {@link CapturedBytes}
+	 *
+	 * @param limit Maximum number of bytes copied
+	 */
+	private CapturedBytes(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Method to get a new empty instance of {@link CapturedBytes}
+	 *
+	 * @param limit Maximum number of bytes copied
+	 * @return New instance of {@link CapturedBytes}
+	 */
+	static CapturedBytes getInstance(int limit) {
+		return new CapturedBytes(limit);
+	}
+
+	/**
+	 * Method to copy the remaining bytes of a buffer, up to the limit
+	 *
+	 * @param source Buffer flowing through, whose position is moved
+	 */
+	void append(ByteBuffer source) {
+		int length = Math.min(source.remaining(), limit - count);
+		if (sealed || length <= 0)
+			return;
+		if (count + length > bytes.length)
+			bytes = Arrays.copyOf(bytes, (int) Math.min(limit, Math.max(count + length, bytes.length * 2L)));
+		source.get(bytes, count, length);
+		count += length;
+	}
+
+	/**
+	 * Method to stop copying, before the bytes are handed to another thread
+	 */
+	void seal() {
+		sealed = true;
+	}
+
+	/**
+	 * Method to get the copied bytes
+	 *
+	 * @return Bytes of the body, or {@code null} if it was empty
+	 */
+	byte[] toByteArray() {
+		if (count == 0)
+			return null;
+		return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+	}
+}
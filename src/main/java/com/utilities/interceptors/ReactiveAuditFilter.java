@@ -0,0 +1,225 @@
+package com.utilities.interceptors;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.utilities.metrics.PipelineMetrics;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link RequestInterceptor} and
+ * {@link ResponseInterceptor} for WebFlux services, registered as a bean in
+ * place of them. It requires {@code spring-webflux}, an optional dependency
+ * of this library.
+ *
+ * <p>
+ * The request and response {@link DataBuffer}s are teed as they flow through:
+ * their bytes are copied up to {@code config.audit.max-body-bytes} and the
+ * buffers themselves are neither retained nor delayed, nor is demand changed.
+ * When the exchange completes, the copies are offered as they are to the shared
+ * {@link AuditPipeline}, which never blocks: a full queue drops the audit, and
+ * reading the reference number, serialization, redaction and sending happen on
+ * the dispatcher workers, whose in-flight limit towards Kafka holds the queue
+ * back. No event loop thread ever waits on the audit.
+ * </p>
+ *
+ * <p>
+ * The reference number is the {@code refNo} member of the JSON request body,
+ * unless the handler sets it through the Reactor context:
+ * </p>
+ *
+ * <pre>
+ * return ReactiveAuditFilter.refNo(request.getTransactionId()).then(service.pay(request));
+ * </pre>
+ *
+ * <p>
+ * The {@link AuditPolicies} apply as for servlet services: endpoints not
+ * audited are not teed at all, and headers-only endpoints only tee the first
+ * 8 KiB of the request, the reference number being looked up there unless the
+ * handler sets it.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public class ReactiveAuditFilter implements WebFilter {
+
+	/**
+	 * Key of the audit of the current exchange in the Reactor context
+	 */
+	public static final String CONTEXT_KEY = ReactiveAuditFilter.class.getName() + ".audit";
+
+	/**
+	 * Maximum bytes copied from a body, one more than the cap so that the
+	 * {@link AuditBodyWriter} marks the body truncated
+	 */
+	private final int captureLimit;
+
+	public ReactiveAuditFilter(@Value("${config.kafka.enable-audit-kafka}") Boolean enableKafka,
+			@Value("${config.kafka.server-details}") String serverDetails,
+			@Value("${config.kafka.audit-topic}") String t,
+			@Value("${config.kafka.audit-profile:default}") String producerProfile,
+			@Value("${config.kafka.audit-key-strategy:ref-no}") String auditKeyStrategy,
+			@Value("${config.kafka.audit-format:json}") String payloadFormat,
+			@Value("${spring.application.name:}") String serviceName,
+			@Value("${config.audit.queue-capacity:4096}") Integer queueCapacity,
+			@Value("${config.audit.workers:2}") Integer workerCount,
+			@Value("${config.audit.batch-size:100}") Integer batchSize,
+			@Value("${config.audit.max-body-bytes:262144}") Long maxBodyBytes,
+			@Value("${config.audit.compress-threshold-bytes:-1}") Long compressThreshold,
+			@Value("${config.audit.redacted-fields:}") String redactedFields,
+			@Value("${config.audit.policies:}") String auditPolicies,
+			@Value("${config.audit.default-policy:full}") String defaultAuditPolicy,
+			@Value("${config.audit.policies-property:}") String auditPoliciesProperty,
+			@Value("${config.kafka.spool.enabled:false}") Boolean enableSpool,
+			@Value("${config.kafka.spool.directory:${java.io.tmpdir}/kafka-spool}") String spoolDirectory,
+			@Value("${config.kafka.spool.max-bytes:1073741824}") Long spoolMaxBytes,
+			@Value("${config.kafka.spool.segment-bytes:67108864}") Long spoolSegmentBytes,
+			@Value("${config.kafka.spool.replay-rate:500}") Integer spoolReplayRate,
+			@Value("${config.kafka.spool.failure-threshold:3}") Integer spoolFailureThreshold) {
+		AuditPipeline.configure(enableKafka, serverDetails, t, producerProfile, auditKeyStrategy, payloadFormat,
+				serviceName, queueCapacity, workerCount, batchSize, maxBodyBytes, compressThreshold, redactedFields,
+				auditPolicies, defaultAuditPolicy, auditPoliciesProperty, enableSpool, spoolDirectory, spoolMaxBytes,
+				spoolSegmentBytes, spoolReplayRate, spoolFailureThreshold);
+		captureLimit = maxBodyBytes <= 0 || maxBodyBytes >= Integer.MAX_VALUE - 8 ? Integer.MAX_VALUE - 8
+				: (int) (maxBodyBytes + 1);
+	}
+
+	/**
+	 * Method to set the reference number of the audit of the current exchange
+	 *
+	 * @param refNo Reference number sent by user for a transaction
+	 * @return {@link Mono} completing once the reference number is set, empty
+	 *         and without effect outside of an audited exchange
+	 */
+	public static Mono<Void> refNo(Object refNo) {
+		return Mono.deferContextual(context -> {
+			context.<AuditTee>getOrEmpty(CONTEXT_KEY).ifPresent(tee -> tee.refNo = refNo);
+			return Mono.empty();
+		});
+	}
+
+	@Override
+	public @NonNull Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+		if (!AuditPipeline.isEnabled())
+			return chain.filter(exchange);
+		ServerHttpRequest request = exchange.getRequest();
+		AuditMode mode = AuditPolicies.resolve(decodedPath(request.getPath().pathWithinApplication())).decide();
+		if (mode == AuditMode.OFF)
+			return chain.filter(exchange);
+
+		AuditTee tee = new AuditTee(mode, captureLimit);
+		ServerWebExchange.Builder audited = exchange.mutate().request(new ServerHttpRequestDecorator(request) {
+			@Override
+			public @NonNull Flux<DataBuffer> getBody() {
+				return super.getBody().doOnNext(buffer -> copy(buffer, tee.request));
+			}
+		});
+		if (mode == AuditMode.FULL)
+			audited.response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+				@Override
+				public @NonNull Mono<Void> writeWith(@NonNull Publisher<? extends DataBuffer> body) {
+					return super.writeWith(Flux.from(body).doOnNext(buffer -> copy(buffer, tee.response)));
+				}
+
+				@Override
+				public @NonNull Mono<Void> writeAndFlushWith(
+						@NonNull Publisher<? extends Publisher<? extends DataBuffer>> body) {
+					return super.writeAndFlushWith(Flux.from(body)
+							.map(part -> Flux.from(part).doOnNext(buffer -> copy(buffer, tee.response))));
+				}
+			});
+		return chain.filter(audited.build()).contextWrite(context -> context.put(CONTEXT_KEY, tee))
+				.doFinally(signal -> capture(request, exchange.getResponse(), tee));
+	}
+
+	/**
+	 * Method to get a path decoded and without its {@code ;} parameters, as
+	 * matched by the {@link AuditPolicies}
+	 *
+	 * @param path Path within the application
+	 * @return Decoded path
+	 */
+	private static String decodedPath(PathContainer path) {
+		StringBuilder decoded = new StringBuilder(path.value().length());
+		for (PathContainer.Element element : path.elements())
+			decoded.append(element instanceof PathContainer.PathSegment
+					? ((PathContainer.PathSegment) element).valueToMatch()
+					: element.value());
+		return decoded.toString();
+	}
+
+	/**
+	 * Method to copy the readable bytes of a buffer flowing through, without
+	 * moving its read position
+	 *
+	 * @param buffer Buffer flowing through
+	 * @param target Copy of the body
+	 */
+	private static void copy(DataBuffer buffer, CapturedBytes target) {
+		try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+			while (buffers.hasNext())
+				target.append(buffers.next());
+		}
+	}
+
+	/**
+	 * Method to offer the audit of a completed exchange to the pipeline, leaving
+	 * the copied bytes to the dispatcher workers
+	 *
+	 * @param request  Request of the exchange
+	 * @param response Response of the exchange
+	 * @param tee      Bytes and reference number captured for the exchange
+	 */
+	private static void capture(ServerHttpRequest request, ServerHttpResponse response, AuditTee tee) {
+		long started = System.nanoTime();
+		try {
+			tee.request.seal();
+			tee.response.seal();
+			Object refNo = tee.refNo;
+			HttpStatusCode status = response.getStatusCode();
+			boolean full = tee.mode == AuditMode.FULL;
+			AuditPipeline.offer(AuditCapture.getInstance(System.currentTimeMillis(), request.getURI().getPath(),
+					refNo, status == null ? null : status.value(), full ? tee.request : null,
+					full ? tee.response : null, refNo == null ? tee.request : null));
+		} finally {
+			PipelineMetrics.AUDIT_REQUEST.recordSince(started);
+		}
+	}
+
+	/**
+	 * Audit state of one exchange, also held in the Reactor context
+	 */
+	private static final class AuditTee {
+
+		private final AuditMode mode;
+
+		private final CapturedBytes request;
+
+		private final CapturedBytes response;
+
+		/**
+		 * Reference number set through {@link ReactiveAuditFilter#refNo(Object)}
+		 */
+		private volatile Object refNo;
+
+		private AuditTee(AuditMode mode, int limit) {
+			this.mode = mode;
+			this.request = CapturedBytes.getInstance(
+					mode == AuditMode.FULL ? limit : Math.min(limit, RefNoExtractor.JSON_SCAN_BYTES));
+			this.response = CapturedBytes.getInstance(mode == AuditMode.FULL ? limit : 0);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.utilities.interceptors;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.utilities.log.Log;
+
+/**
+ * Reads the reference number of a transaction from a request body.
+ *
+ * <p>
+ * The member holding it is resolved once per body class and kept in a
+ * {@link ClassValue}, in this order:
+ * </p>
+ * <ol>
+ * <li>a no-argument method or a field annotated with {@link AuditRefNo}</li>
+ * <li>a public {@code getRefNo()} or record accessor {@code refNo()}</li>
+ * <li>a field named {@code refNo}</li>
+ * </ol>
+ *
+ * <p>
+ * The member is unreflected into a {@link MethodHandle}, so extracting is one
+ * direct call. Classes without such a member resolve to an extractor returning
+ * {@code null} without any work, and are reported once. {@link Map} bodies are
+ * read through their {@code refNo} key.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class RefNoExtractor {
+
+	private static final String NAME = "refNo";
+
+	/**
+	 * Bytes of a raw JSON body worth copying when only its reference number is
+	 * needed, which requests send near the start of the body
+	 */
+	static final int JSON_SCAN_BYTES = 8 * 1024;
+
+	private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final RefNoExtractor NONE = new RefNoExtractor(null);
+
+	private static final ClassValue<RefNoExtractor> EXTRACTORS = new ClassValue<>() {
+		@Override
+		protected RefNoExtractor computeValue(Class<?> type) {
+			return resolve(type);
+		}
+	};
+
+	/**
+	 * Accessor of type {@code (Object)Object}, {@code null} when the class has no
+	 * reference number
+	 */
+	private final MethodHandle accessor;
+
+	private RefNoExtractor(MethodHandle accessor) {
+		this.accessor = accessor;
+	}
+
+	/**
+	 * Method to read the reference number of a request body
+	 *
+	 * @param body Deserialized request body, may be {@code null}
+	 * @return Reference number as a string, or {@code null} if the body has none
+	 */
+	static String extract(Object body) {
+		if (body == null)
+			return null;
+		if (body instanceof Map) {
+			Object value = ((Map<?, ?>) body).get(NAME);
+			return value == null ? null : value.toString();
+		}
+		MethodHandle accessor = EXTRACTORS.get(body.getClass()).accessor;
+		if (accessor == null)
+			return null;
+		try {
+			Object value = (Object) accessor.invokeExact(body);
+			return value == null ? null : value.toString();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("unable to read the reference number of " + body.getClass().getName(),
+					e);
+		}
+	}
+
+	/**
+	 * Method to read the reference number of a raw JSON request body, the
+	 * {@code refNo} member of its top-level object. The body is streamed and
+	 * reading stops at the reference number.
+	 *
+	 * @param json UTF-8 JSON body, possibly cut, may be {@code null}
+	 * @return Reference number as a string, or {@code null} if the body is not a
+	 *         JSON object or has none before its end
+	 */
+	static String extractJson(byte[] json) {
+		if (json == null || json.length == 0)
+			return null;
+		try (JsonReader reader = new JsonReader(
+				new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8))) {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT)
+				return null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (NAME.equals(reader.nextName())) {
+					JsonToken token = reader.peek();
+					return token == JsonToken.STRING || token == JsonToken.NUMBER ? reader.nextString() : null;
+				}
+				reader.skipValue();
+			}
+		} catch (IOException | IllegalStateException e) {
+			// not JSON, or cut before the reference number
+		}
+		return null;
+	}
+
+	private static RefNoExtractor resolve(Class<?> type) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+			MethodHandle handle = annotated(type, lookup);
+			if (handle == null)
+				handle = getter(type, lookup);
+			if (handle == null)
+				handle = field(type, lookup, NAME);
+			if (handle != null)
+				return new RefNoExtractor(handle.asType(ACCESSOR_TYPE));
+		} catch (IllegalAccessException | RuntimeException e) {
+			Log.warn(RefNoExtractor.class.getSimpleName(), "resolve", "unable to access the reference number of %s: %s",
+					type.getName(), e.getMessage());
+			return NONE;
+		}
+		Log.warn(RefNoExtractor.class.getSimpleName(), "resolve",
+				"%s has no reference number, its audits are sent without one", type.getName());
+		return NONE;
+	}
+
+	private static MethodHandle annotated(Class<?> type, MethodHandles.Lookup lookup) throws IllegalAccessException {
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			for (Method method : current.getDeclaredMethods()) {
+				if (method.isAnnotationPresent(AuditRefNo.class) && method.getParameterCount() == 0
+						&& !Modifier.isStatic(method.getModifiers()))
+					return lookup.unreflect(method);
+			}
+			for (Field field : current.getDeclaredFields()) {
+				if (field.isAnnotationPresent(AuditRefNo.class) && !Modifier.isStatic(field.getModifiers()))
+					return lookup.unreflectGetter(field);
+			}
+		}
+		return null;
+	}
+
+	private static MethodHandle getter(Class<?> type, MethodHandles.Lookup lookup) throws IllegalAccessException {
+		for (String name : new String[] { "getRefNo", NAME }) {
+			try {
+				Method method = type.getMethod(name);
+				if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class)
+					return lookup.unreflect(method);
+			} catch (NoSuchMethodException e) {
+				// try the next convention
+			}
+		}
+		return null;
+	}
+
+	private static MethodHandle field(Class<?> type, MethodHandles.Lookup lookup, String name)
+			throws IllegalAccessException {
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			try {
+				Field field = current.getDeclaredField(name);
+				if (!Modifier.isStatic(field.getModifiers()))
+					return lookup.unreflectGetter(field);
+			} catch (NoSuchFieldException e) {
+				// look in the superclass
+			}
+		}
+		return null;
+	}
+}
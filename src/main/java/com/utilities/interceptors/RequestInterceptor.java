@@ -2,8 +2,6 @@ package com.utilities.interceptors;
 
 import java.lang.reflect.Type;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.MethodParameter;
 import org.springframework.http.HttpInputMessage;
@@ -12,8 +10,6 @@ import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
 
-import com.utilities.log.Log;
-
 import jakarta.servlet.http.HttpServletRequest;
 
 @RestControllerAdvice
@@ -35,26 +31,18 @@ public class RequestInterceptor extends RequestBodyAdviceAdapter {
 	@Override
 	public boolean supports(@NonNull MethodParameter methodParameter, @NonNull Type targetType,
 			@NonNull Class<? extends HttpMessageConverter<?>> converterType) {
-		return true;
+		return enable;
 	}
 
 	@Override
 	public @NonNull Object afterBodyRead(@NonNull Object body, @NonNull HttpInputMessage inputMessage,
 			@NonNull MethodParameter parameter, @NonNull Type targetType,
 			@NonNull Class<? extends HttpMessageConverter<?>> converterType) {
-		if (enable) {
-			String refNo = null;
-
-			try {
-				JSONObject obj = new JSONObject(body);
-				refNo = obj.getString("refNo");
-			} catch (JSONException e) {
-				Log.warn(this.getClass().getSimpleName(), "afetrBodyRead",
-						"Unable to fetch reference number.. setting value as null");
-			}
-			
-			request.setAttribute("main-ref-no", refNo);
-			request.setAttribute("main-cache-request", body);
+		AuditMode mode = AuditPolicies.decide(request);
+		if (mode != AuditMode.OFF) {
+			request.setAttribute("main-ref-no", RefNoExtractor.extract(body));
+			if (mode == AuditMode.FULL)
+				request.setAttribute("main-cache-request", body);
 		}
 		return body;
 	}
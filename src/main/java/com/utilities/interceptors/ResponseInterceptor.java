@@ -1,23 +1,17 @@
 package com.utilities.interceptors;
 
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
-import org.apache.kafka.clients.producer.KafkaProducer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.MethodParameter;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 
-import com.google.gson.Gson;
-import com.utilities.exceptions.ConfigException;
-import com.utilities.kafka.KafkaUtility;
+import com.utilities.metrics.PipelineMetrics;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -28,55 +22,70 @@ public class ResponseInterceptor implements ResponseBodyAdvice<Object> {
 	 */
 	private HttpServletRequest request;
 
-	private static Gson gson;
-
-	private static String topic;
-
-	private static boolean enable;
-
-	private static KafkaProducer<String, String> producer;
-
 	public ResponseInterceptor(@Value("${config.kafka.enable-audit-kafka}") Boolean enableKafka,
 			@Value("${config.kafka.server-details}") String serverDetails,
-			@Value("${config.kafka.audit-topic}") String t, HttpServletRequest req) {
-		gson = new Gson().newBuilder().disableHtmlEscaping().serializeNulls().serializeSpecialFloatingPointValues()
-				.setPrettyPrinting().create();
-		enable = enableKafka;
+			@Value("${config.kafka.audit-topic}") String t,
+			@Value("${config.kafka.audit-profile:default}") String producerProfile,
+			@Value("${config.kafka.audit-key-strategy:ref-no}") String auditKeyStrategy,
+			@Value("${config.kafka.audit-format:json}") String payloadFormat,
+			@Value("${spring.application.name:}") String serviceName,
+			@Value("${config.audit.queue-capacity:4096}") Integer queueCapacity,
+			@Value("${config.audit.workers:2}") Integer workerCount,
+			@Value("${config.audit.batch-size:100}") Integer batchSize,
+			@Value("${config.audit.max-body-bytes:262144}") Long maxBodyBytes,
+			@Value("${config.audit.compress-threshold-bytes:-1}") Long compressThreshold,
+			@Value("${config.audit.redacted-fields:}") String redactedFields,
+			@Value("${config.audit.policies:}") String auditPolicies,
+			@Value("${config.audit.default-policy:full}") String defaultAuditPolicy,
+			@Value("${config.audit.policies-property:}") String auditPoliciesProperty,
+			@Value("${config.kafka.spool.enabled:false}") Boolean enableSpool,
+			@Value("${config.kafka.spool.directory:${java.io.tmpdir}/kafka-spool}") String spoolDirectory,
+			@Value("${config.kafka.spool.max-bytes:1073741824}") Long spoolMaxBytes,
+			@Value("${config.kafka.spool.segment-bytes:67108864}") Long spoolSegmentBytes,
+			@Value("${config.kafka.spool.replay-rate:500}") Integer spoolReplayRate,
+			@Value("${config.kafka.spool.failure-threshold:3}") Integer spoolFailureThreshold,
+			HttpServletRequest req) {
+		AuditPipeline.configure(enableKafka, serverDetails, t, producerProfile, auditKeyStrategy, payloadFormat,
+				serviceName, queueCapacity, workerCount, batchSize, maxBodyBytes, compressThreshold, redactedFields,
+				auditPolicies, defaultAuditPolicy, auditPoliciesProperty, enableSpool, spoolDirectory, spoolMaxBytes,
+				spoolSegmentBytes, spoolReplayRate, spoolFailureThreshold);
 		request = req;
-		if (enableKafka) {
-			try {
-				topic = t;
-				producer = KafkaUtility.kafkaProps(serverDetails);
-			} catch (ArrayIndexOutOfBoundsException e) {
-				throw ConfigException.getInstance(
-						"need to provide two additional params if param[1] is true. provide bootstrap server & topic details respectively");
-			}
-		}
 	}
 
 	@Override
 	public boolean supports(@NonNull MethodParameter returnType,
 			@NonNull Class<? extends HttpMessageConverter<?>> converterType) {
-		return true;
+		return AuditPipeline.isEnabled();
 	}
 
+	/**
+	 * Method to capture the audit of a response. Only references to the
+	 * request, already read by {@link RequestInterceptor}, and to the body are
+	 * kept, serialization and shipping being left to the
+	 * {@link AuditPipeline}. Bodies are left out unless the
+	 * {@link AuditPolicies policy} of the endpoint audits them in full.
+	 */
 	@Override
 	@Nullable
 	public Object beforeBodyWrite(@Nullable Object body, @NonNull MethodParameter returnType,
 			@NonNull MediaType selectedContentType,
 			@NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType, @NonNull ServerHttpRequest request,
 			@NonNull ServerHttpResponse response) {
-		if (enable)
+		AuditMode mode = AuditPipeline.isEnabled() ? AuditPolicies.decide(this.request) : AuditMode.OFF;
+		if (mode != AuditMode.OFF) {
+			long started = System.nanoTime();
 			try {
-				KafkaUtility.postToKafka(producer,
-						gson.toJson(
-								AuditKafkaDto.getInstance(LocalDateTime.now().format(DateTimeFormatter.ofPattern("")),
-										request.getURI().getPath(), this.request.getAttribute("main-ref-no"), 0,
-										gson.toJson(request.getBody()), gson.toJson(response.getBody()))),
-						topic);
-			} catch (IOException e) {
-				e.printStackTrace();
+				Integer status = response instanceof ServletServerHttpResponse
+						? ((ServletServerHttpResponse) response).getServletResponse().getStatus()
+						: null;
+				AuditPipeline.offer(AuditCapture.getInstance(System.currentTimeMillis(), request.getURI().getPath(),
+						this.request.getAttribute("main-ref-no"), status,
+						mode == AuditMode.FULL ? this.request.getAttribute("main-cache-request") : null,
+						mode == AuditMode.FULL ? body : null));
+			} finally {
+				PipelineMetrics.AUDIT_REQUEST.recordSince(started);
 			}
+		}
 
 		return body;
 	}
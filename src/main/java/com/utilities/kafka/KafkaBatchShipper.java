@@ -0,0 +1,523 @@
+package com.utilities.kafka;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import com.utilities.codec.BinaryRecords;
+import com.utilities.metrics.PipelineMetrics;
+
+/**
+ * Dedicated shipping stage draining formatted payloads to a Kafka topic in
+ * batches on its own thread.
+ *
+ * <p>
+ * Payloads are queued with {@link #offer(String)}, which never blocks: when the
+ * queue is full the payload is dropped and counted. The shipping thread sends a
+ * batch as soon as {@code batchSize} payloads are queued or the oldest payload
+ * has waited {@code maxLatencyMs}. Depending on the configuration a batch is
+ * either packed into a single newline separated record, or sent as one record
+ * per payload sharing a single callback per batch.
+ * </p>
+ *
+ * <p>
+ * Record keys are chosen by a {@link PartitionKeyStrategy} from the source
+ * given with each payload. Packed records hold the payloads of one source
+ * only, so that a batch is split into one record per source and their order is
+ * kept whatever the strategy. The payloads of a source are split over several
+ * records whenever packing them together would exceed the
+ * {@code max.request.size} of the producer, so that one oversized record does
+ * not fail the whole batch with a {@code RecordTooLargeException}.
+ * </p>
+ *
+ * <p>
+ * Records are sent through {@link KafkaUtility}, so that the shipping thread
+ * waits for an in-flight permit and the records are awaited on shutdown. When
+ * a {@link KafkaSpool} is given, records are sent through it so that they
+ * are spooled to disk instead of lost or blocked while the broker is
+ * unreachable.
+ * </p>
+ *
+ * <p>
+ * Payloads are either JSON lines, packed by joining them with newlines, or
+ * binary records of {@link BinaryRecords}, packed into a batch record. The
+ * spool only stores JSON lines.
+ * </p>
+ *
+ * <p>
+ * Outcomes are reported as counters only. Nothing is logged through
+ * {@link com.utilities.log.Log}, so shipping logs never produces more logs.
+ * </p>
+ *
+ * @param <V> Type of the payloads, {@code String} or {@code byte[]}
+ * @author Kabir Akware
+ */
+public class KafkaBatchShipper<V> {
+
+	/**
+	 * Separator between JSON lines packed into one record
+	 */
+	private static final String PACK_SEPARATOR = "\n";
+
+	/**
+	 * Capacity above which the reused pack buffer is released after a record,
+	 * so that one burst of large lines does not pin its memory
+	 */
+	private static final int PACK_RETAINED_CAPACITY = 1024 * 1024;
+
+	/**
+	 * Maximum encoded size of a packed record, leaving room within
+	 * {@code max.request.size} for the key and the record batch overhead
+	 */
+	private static final int MAX_PACK_BYTES = KafkaProducerRegistry.MAX_REQUEST_BYTES - 16 * 1024;
+
+	private final Producer<String, V> producer;
+
+	private final String topic;
+
+	private final int batchSize;
+
+	private final long maxLatencyNanos;
+
+	private final boolean packRecords;
+
+	private final PartitionKeyStrategy keyStrategy;
+
+	/**
+	 * Function packing the payloads of one source into one record
+	 */
+	private final Function<List<V>, V> packer;
+
+	/**
+	 * Function giving the size a payload adds to a packed record
+	 */
+	private final ToIntFunction<V> packedSize;
+
+	private final BlockingQueue<Pending<V>> queue;
+
+	/**
+	 * Payloads of the batch being packed grouped by source, reused by the
+	 * shipping thread from one batch to the next
+	 */
+	private final Map<String, List<V>> bySource = new LinkedHashMap<>();
+
+	/**
+	 * Emptied lists of {@link #bySource} waiting to be reused
+	 */
+	private final Deque<List<V>> freeLists = new ArrayDeque<>();
+
+	/**
+	 * Disk spool taking over while the producer is unhealthy, may be {@code null}
+	 */
+	private final KafkaSpool spool;
+
+	private final LongAdder sent = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final LongAdder batches = new LongAdder();
+
+	private final Thread shipperThread;
+
+	private volatile Exception lastError;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to create the queue and start the shipping thread
+	 *
+	 * @param producer      Producer used to send the batches
+	 * @param topic         Target topic
+	 * @param queueCapacity Maximum number of payloads waiting to be shipped
+	 * @param batchSize     Maximum number of payloads per batch
+	 * @param maxLatencyMs  Maximum time a payload waits for its batch to fill
+	 * @param packRecords   Whether a batch is packed into a single record
+	 * @param keyStrategy   Strategy choosing the key of each record
+	 * @param packer        Function packing payloads into one record
+	 * @param packedSize    Function giving the size a payload adds to a packed
+	 *                      record
+	 * @param spool         Disk spool used while the producer is unhealthy, may be
+	 *                      {@code null}
+	 * @param threadName    Name of the shipping thread
+	 */
+	private KafkaBatchShipper(Producer<String, V> producer, String topic, int queueCapacity, int batchSize,
+			long maxLatencyMs, boolean packRecords, PartitionKeyStrategy keyStrategy, Function<List<V>, V> packer,
+			ToIntFunction<V> packedSize, KafkaSpool spool, String threadName) {
+		this.producer = producer;
+		this.topic = topic;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxLatencyMs));
+		this.packRecords = packRecords;
+		this.keyStrategy = keyStrategy;
+		this.packer = packer;
+		this.packedSize = packedSize;
+		this.spool = spool;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.shipperThread = new Thread(this::ship, threadName);
+		this.shipperThread.setDaemon(true);
+		this.shipperThread.start();
+	}
+
+	/**
+	 * Method to get a new started instance of {@link KafkaBatchShipper}
+	 *
+	 * @param producer      Producer used to send the batches
+	 * @param topic         Target topic
+	 * @param queueCapacity Maximum number of payloads waiting to be shipped
+	 * @param batchSize     Maximum number of payloads per batch
+	 * @param maxLatencyMs  Maximum time a payload waits for its batch to fill
+	 * @param packRecords   Whether a batch is packed into a single record
+	 * @param keyStrategy   Strategy choosing the key of each record
+	 * @param spool         Disk spool used while the producer is unhealthy, may be
+	 *                      {@code null}
+	 * @param threadName    Name of the shipping thread
+	 * @return New instance of {@link KafkaBatchShipper}
+	 */
+	public static KafkaBatchShipper<String> getInstance(Producer<String, String> producer, String topic,
+			int queueCapacity, int batchSize, long maxLatencyMs, boolean packRecords,
+			PartitionKeyStrategy keyStrategy, KafkaSpool spool, String threadName) {
+		StringBuilder buffer = new StringBuilder();
+		return new KafkaBatchShipper<>(producer, topic, queueCapacity, batchSize, maxLatencyMs, packRecords,
+				keyStrategy, payloads -> packLines(buffer, payloads), KafkaBatchShipper::lineSize, spool, threadName);
+	}
+
+	/**
+	 * Method to join JSON lines into one record through a buffer reused by the
+	 * shipping thread, grown to the exact length of the record when too small
+	 *
+	 * @param buffer   Buffer of the shipping thread
+	 * @param payloads JSON lines of one source
+	 * @return Newline separated record
+	 */
+	private static String packLines(StringBuilder buffer, List<String> payloads) {
+		int length = payloads.size() - 1;
+		for (String payload : payloads)
+			length += payload.length();
+		buffer.setLength(0);
+		buffer.ensureCapacity(length);
+		buffer.append(payloads.get(0));
+		for (int i = 1; i < payloads.size(); i++)
+			buffer.append(PACK_SEPARATOR).append(payloads.get(i));
+		String record = buffer.toString();
+		buffer.setLength(0);
+		if (buffer.capacity() > PACK_RETAINED_CAPACITY)
+			buffer.trimToSize();
+		return record;
+	}
+
+	/**
+	 * Method to get the UTF-8 length of a JSON line and its separator, without
+	 * encoding it
+	 *
+	 * @param payload JSON line
+	 * @return Bytes the line adds to a packed record
+	 */
+	private static int lineSize(String payload) {
+		int length = payload.length() + PACK_SEPARATOR.length();
+		for (int i = 0; i < payload.length(); i++) {
+			char c = payload.charAt(i);
+			if (c >= 0x800 && !Character.isSurrogate(c))
+				length += 2;
+			else if (c >= 0x80)
+				length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Method to get a new started instance of {@link KafkaBatchShipper} for
+	 * binary records, packed into batch records of {@link BinaryRecords}
+	 *
+	 * @param producer      Producer used to send the batches
+	 * @param topic         Target topic
+	 * @param queueCapacity Maximum number of payloads waiting to be shipped
+	 * @param batchSize     Maximum number of payloads per batch
+	 * @param maxLatencyMs  Maximum time a payload waits for its batch to fill
+	 * @param packRecords   Whether a batch is packed into a single record
+	 * @param keyStrategy   Strategy choosing the key of each record
+	 * @param threadName    Name of the shipping thread
+	 * @return New instance of {@link KafkaBatchShipper}
+	 */
+	public static KafkaBatchShipper<byte[]> getBinaryInstance(Producer<String, byte[]> producer, String topic,
+			int queueCapacity, int batchSize, long maxLatencyMs, boolean packRecords,
+			PartitionKeyStrategy keyStrategy, String threadName) {
+		return new KafkaBatchShipper<>(producer, topic, queueCapacity, batchSize, maxLatencyMs, packRecords,
+				keyStrategy, BinaryRecords::pack, BinaryRecords::packedSize, null, threadName);
+	}
+
+	/**
+	 * Method to queue a payload without source for shipping without blocking the
+	 * caller
+	 *
+	 * @param payload Formatted payload
+	 * @return {@code true} if queued, {@code false} if dropped because the queue
+	 *         is full or the shipper is stopped
+	 */
+	public boolean offer(V payload) {
+		return offer(null, payload);
+	}
+
+	/**
+	 * Method to queue a payload for shipping without blocking the caller
+	 *
+	 * @param source  Source passed to the {@link PartitionKeyStrategy}, e.g. the
+	 *                id of the logging thread, may be {@code null}
+	 * @param payload Formatted payload
+	 * @return {@code true} if queued, {@code false} if dropped because the queue
+	 *         is full or the shipper is stopped
+	 */
+	public boolean offer(String source, V payload) {
+		if (running && queue.offer(new Pending<>(source, payload)))
+			return true;
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Shipping loop collecting batches until the shipper is stopped and the queue
+	 * is empty
+	 */
+	private void ship() {
+		List<Pending<V>> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending<V> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				long deadline = System.nanoTime() + maxLatencyNanos;
+				while (batch.size() < batchSize) {
+					if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+						continue;
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || !running)
+						break;
+					Pending<V> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+				send(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			} catch (RuntimeException e) {
+				count(batch.size(), e);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Method to send one batch
+	 *
+	 * @param batch Payloads of the batch
+	 */
+	private void send(List<Pending<V>> batch) {
+		batches.increment();
+		long started = System.nanoTime();
+		if (!packRecords) {
+			Callback batchCallback = (metadata, exception) -> {
+				PipelineMetrics.KAFKA_ACK.recordSince(started);
+				count(1, exception);
+			};
+			for (Pending<V> pending : batch)
+				send(pending.source, pending.payload, batchCallback);
+			return;
+		}
+		try {
+			for (Pending<V> pending : batch)
+				bySource.computeIfAbsent(pending.source, source -> newList()).add(pending.payload);
+			for (Map.Entry<String, List<V>> entry : bySource.entrySet()) {
+				List<V> payloads = entry.getValue();
+				int from = 0;
+				long bytes = 0L;
+				for (int i = 0; i < payloads.size(); i++) {
+					int size = packedSize.applyAsInt(payloads.get(i));
+					if (i > from && bytes + size > MAX_PACK_BYTES) {
+						sendPacked(entry.getKey(), payloads.subList(from, i), started);
+						from = i;
+						bytes = 0L;
+					}
+					bytes += size;
+				}
+				sendPacked(entry.getKey(), payloads.subList(from, payloads.size()), started);
+			}
+		} finally {
+			for (List<V> payloads : bySource.values()) {
+				payloads.clear();
+				freeLists.push(payloads);
+			}
+			bySource.clear();
+		}
+	}
+
+	/**
+	 * Method to pack and send payloads of one source fitting in one record
+	 *
+	 * @param source   Source of the payloads
+	 * @param payloads Payloads of the record
+	 * @param started  Time the batch started being sent
+	 */
+	private void sendPacked(String source, List<V> payloads, long started) {
+		int size = payloads.size();
+		V record = size == 1 ? payloads.get(0) : packer.apply(payloads);
+		send(source, record, (RecordMetadata metadata, Exception exception) -> {
+			PipelineMetrics.KAFKA_ACK.recordSince(started);
+			count(size, exception);
+		});
+	}
+
+	private List<V> newList() {
+		List<V> payloads = freeLists.poll();
+		return payloads != null ? payloads : new ArrayList<>();
+	}
+
+	/**
+	 * Method to send one record, through the spool when there is one
+	 *
+	 * @param source   Source of the payloads of the record
+	 * @param payload  Record value
+	 * @param callback Callback counting the outcome
+	 */
+	private void send(String source, V payload, Callback callback) {
+		String key = keyStrategy.key(source, payload);
+		if (spool != null)
+			spool.send(topic, key, (String) payload, callback);
+		else
+			KafkaUtility.postToKafka(producer, key, payload, topic, callback);
+	}
+
+	/**
+	 * Method to record the outcome of a send
+	 *
+	 * @param events    Number of payloads covered by the send
+	 * @param exception Failure or {@code null} on success
+	 */
+	private void count(int events, Exception exception) {
+		if (exception == null) {
+			sent.add(events);
+		} else {
+			failed.add(events);
+			lastError = exception;
+		}
+	}
+
+	/**
+	 * Method to register the counters and queue depth of this shipper in
+	 * {@link PipelineMetrics}
+	 *
+	 * @param prefix Prefix of the metric names, e.g. {@code log.kafka}
+	 */
+	public void registerMetrics(String prefix) {
+		PipelineMetrics.registerCounter(prefix + ".sent", this::getSentCount);
+		PipelineMetrics.registerCounter(prefix + ".failed", this::getFailedCount);
+		PipelineMetrics.registerCounter(prefix + ".dropped", this::getDroppedCount);
+		PipelineMetrics.registerCounter(prefix + ".batches", this::getBatchCount);
+		PipelineMetrics.registerGauge(prefix + ".queue-depth", this::getQueueDepth);
+	}
+
+	/**
+	 * Method to stop accepting payloads and ship what is already queued
+	 */
+	public void shutdown() {
+		running = false;
+	}
+
+	/**
+	 * Method to wait for the queue to be shipped after {@link #shutdown()}
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if the shipping thread finished within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	public boolean awaitTermination(long millis) throws InterruptedException {
+		shipperThread.join(Math.max(1L, millis));
+		return !shipperThread.isAlive();
+	}
+
+	/**
+	 * Method to get the number of payloads acknowledged by the broker
+	 * 
+	 * @return Number of payloads acknowledged by the broker
+	 */
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	/**
+	 * Method to get the number of payloads whose send failed
+	 * 
+	 * @return Number of payloads whose send failed
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * Method to get the number of payloads dropped because the queue was full
+	 * 
+	 * @return Number of payloads dropped because the queue was full
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Method to get the number of batches sent
+	 * 
+	 * @return Number of batches sent
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * Method to get the number of payloads waiting to be shipped
+	 * 
+	 * @return Number of payloads waiting to be shipped
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Method to get the last send failure
+	 * 
+	 * @return Last send failure or {@code null} if no send failed
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Payload waiting in the queue with its source
+	 */
+	private static final class Pending<V> {
+
+		private final String source;
+
+		private final V payload;
+
+		private Pending(String source, V payload) {
+			this.source = source;
+			this.payload = payload;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.utilities.kafka;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.utilities.interceptors.AuditPipeline;
+import com.utilities.log.Log;
+
+/**
+ * Lifecycle hook applying the in-flight limit of {@link KafkaUtility} and
+ * draining logs and audits when the application context shuts down.
+ *
+ * <p>
+ * On stop, within {@code config.kafka.shutdown-timeout-ms}:
+ * </p>
+ * <ol>
+ * <li>audits captured by the servlet or reactive interceptors are shipped
+ * through the {@link AuditPipeline}</li>
+ * <li>the {@link Log} pipeline and its Kafka shipping stage are drained</li>
+ * <li>records sent through {@link KafkaUtility} are awaited</li>
+ * <li>every {@link KafkaSpool} flushes its active segment, records still
+ * spooled being replayed by the next instance</li>
+ * <li>every producer of the {@link KafkaProducerRegistry} sends its buffered
+ * records and is closed</li>
+ * </ol>
+ *
+ * <p>
+ * The hook stops in a phase after the embedded web server, so that the audits
+ * of the last requests served are shipped as well.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+@Component
+public class KafkaLifecycle implements SmartLifecycle {
+
+	/**
+	 * Phase of the hook, below the phases in which the web server shuts down
+	 */
+	private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+	/**
+	 * Logger used directly, {@link Log} being stopped first
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(KafkaLifecycle.class);
+
+	private final long shutdownTimeoutMillis;
+
+	private volatile boolean running;
+
+	public KafkaLifecycle(@Value("${config.kafka.shutdown-timeout-ms:10000}") Long shutdownTimeout,
+			@Value("${config.kafka.max-in-flight:10000}") Integer maxInFlight,
+			@Value("${config.kafka.max-in-flight-wait-ms:5000}") Long maxInFlightWait) {
+		this.shutdownTimeoutMillis = shutdownTimeout;
+		KafkaUtility.configureInFlight(maxInFlight, maxInFlightWait);
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+		try {
+			if (!AuditPipeline.shutdown(shutdownTimeoutMillis))
+				LOGGER.warn("audits not shipped within {} ms", shutdownTimeoutMillis);
+			if (!Log.shutdown(remaining(deadline)))
+				LOGGER.warn("log pipeline not drained within {} ms", shutdownTimeoutMillis);
+			if (!KafkaUtility.awaitInFlight(remaining(deadline)))
+				LOGGER.warn("{} kafka records still in flight on shutdown", KafkaUtility.getInFlightCount());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			KafkaSpool.shutdownAll();
+			KafkaProducerRegistry.closeAll(Duration.ofMillis(remaining(deadline)));
+			running = false;
+		}
+	}
+
+	private static long remaining(long deadline) {
+		return Math.max(0L, deadline - System.currentTimeMillis());
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+}
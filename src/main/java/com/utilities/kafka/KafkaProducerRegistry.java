@@ -0,0 +1,191 @@
+package com.utilities.kafka;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+/**
+ * Registry sharing one producer per bootstrap address, tuning profile and value
+ * type across every component of the application, so that the log shipper and
+ * the audit interceptor of a service use the same network threads, buffer pool
+ * and metadata connections when they use the same profile.
+ * 
+ * @author Kabir Akware
+ */
+public final class KafkaProducerRegistry {
+
+	private static final Map<ProducerKey, Producer<String, ?>> PRODUCERS = new ConcurrentHashMap<>();
+
+	/**
+	 * {@code max.block.ms} of the producers backed by a {@link KafkaSpool}, short
+	 * enough for an unreachable cluster to be detected by {@code send} instead of
+	 * after the delivery timeout
+	 */
+	static final int SPOOLING_MAX_BLOCK_MS = 1_000;
+
+	/**
+	 * {@code max.request.size} of every producer, set explicitly so that the
+	 * {@link KafkaBatchShipper} can keep packed records below it
+	 */
+	static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+	private KafkaProducerRegistry() {
+	}
+
+	/**
+	 * Method to get the shared producer of String records for a bootstrap
+	 * address and profile, creating it on first use
+	 * 
+	 * @param bootstrapServers Comma separated bootstrap servers
+	 * @param profile          Tuning profile
+	 * @return Shared producer, which must not be closed by the caller
+	 */
+	public static Producer<String, String> getProducer(String bootstrapServers, ProducerProfile profile) {
+		return getProducer(bootstrapServers, profile, StringSerializer.class);
+	}
+
+	/**
+	 * Method to get the shared producer of binary records for a bootstrap address
+	 * and profile, creating it on first use
+	 * 
+	 * @param bootstrapServers Comma separated bootstrap servers
+	 * @param profile          Tuning profile
+	 * @return Shared producer, which must not be closed by the caller
+	 */
+	public static Producer<String, byte[]> getBinaryProducer(String bootstrapServers, ProducerProfile profile) {
+		return getProducer(bootstrapServers, profile, ByteArraySerializer.class);
+	}
+
+	/**
+	 * Method to get the shared producer of String records to be used through a
+	 * {@link KafkaSpool}, creating it on first use. It differs from
+	 * {@link #getProducer(String, ProducerProfile)} by a short
+	 * {@code max.block.ms}, so that {@code send} fails fast and the record is
+	 * spooled while the cluster cannot be reached.
+	 * 
+	 * @param bootstrapServers Comma separated bootstrap servers
+	 * @param profile          Tuning profile
+	 * @return Shared producer, which must not be closed by the caller
+	 */
+	@SuppressWarnings("unchecked")
+	public static Producer<String, String> getSpoolingProducer(String bootstrapServers, ProducerProfile profile) {
+		ProducerKey key = new ProducerKey(normalize(bootstrapServers), profile, StringSerializer.class, true);
+		return (Producer<String, String>) PRODUCERS.computeIfAbsent(key, KafkaProducerRegistry::create);
+	}
+
+	/**
+	 * Method to get the shared producer for a bootstrap address, profile and value
+	 * serializer, creating it on first use
+	 * 
+	 * @param <V>              Value type
+	 * @param bootstrapServers Comma separated bootstrap servers
+	 * @param profile          Tuning profile
+	 * @param valueSerializer  Serializer of the record values
+	 * @return Shared producer, which must not be closed by the caller
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> Producer<String, V> getProducer(String bootstrapServers, ProducerProfile profile,
+			Class<? extends Serializer<V>> valueSerializer) {
+		ProducerKey key = new ProducerKey(normalize(bootstrapServers), profile, valueSerializer, false);
+		return (Producer<String, V>) PRODUCERS.computeIfAbsent(key, KafkaProducerRegistry::create);
+	}
+
+	private static Producer<String, ?> create(ProducerKey key) {
+		Properties props = new Properties();
+		props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, key.bootstrapServers);
+		props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, key.valueSerializer.getName());
+		props.put(ProducerConfig.CLIENT_ID_CONFIG,
+				"utilities-" + key.profile.name().toLowerCase(Locale.ROOT) + "-" + Integer.toHexString(key.hashCode()));
+		props.put(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, MAX_REQUEST_BYTES);
+		key.profile.apply(props);
+		if (key.spooling)
+			props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, SPOOLING_MAX_BLOCK_MS);
+		return new KafkaProducer<>(props);
+	}
+
+	/**
+	 * Method to sort and trim the servers so that the same address written in a
+	 * different order shares the producer
+	 */
+	private static String normalize(String bootstrapServers) {
+		List<String> servers = new ArrayList<>();
+		for (String server : bootstrapServers.split(","))
+			if (!server.isBlank())
+				servers.add(server.trim());
+		servers.sort(null);
+		return String.join(",", servers);
+	}
+
+	/**
+	 * Method to get every producer created so far
+	 * 
+	 * @return Snapshot of the shared producers
+	 */
+	public static List<Producer<String, ?>> getProducers() {
+		return new ArrayList<>(PRODUCERS.values());
+	}
+
+	/**
+	 * Method to flush and close every shared producer and forget them
+	 * 
+	 * @param timeout Maximum time to wait for each producer to close
+	 */
+	public static void closeAll(Duration timeout) {
+		for (ProducerKey key : new ArrayList<>(PRODUCERS.keySet())) {
+			Producer<String, ?> producer = PRODUCERS.remove(key);
+			if (producer != null)
+				producer.close(timeout);
+		}
+	}
+
+	/**
+	 * Identity of a shared producer
+	 */
+	private static final class ProducerKey {
+
+		private final String bootstrapServers;
+
+		private final ProducerProfile profile;
+
+		private final Class<?> valueSerializer;
+
+		private final boolean spooling;
+
+		private ProducerKey(String bootstrapServers, ProducerProfile profile, Class<?> valueSerializer,
+				boolean spooling) {
+			this.bootstrapServers = bootstrapServers;
+			this.profile = profile;
+			this.valueSerializer = valueSerializer;
+			this.spooling = spooling;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(bootstrapServers, profile, valueSerializer, spooling);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ProducerKey))
+				return false;
+			ProducerKey other = (ProducerKey) obj;
+			return bootstrapServers.equals(other.bootstrapServers) && profile == other.profile
+					&& valueSerializer == other.valueSerializer && spooling == other.spooling;
+		}
+	}
+}
@@ -0,0 +1,653 @@
+package com.utilities.kafka;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+
+import com.utilities.exceptions.ConfigException;
+import com.utilities.log.Log;
+import com.utilities.metrics.PipelineMetrics;
+
+/**
+ * Append-only disk spool used as a fallback when the Kafka producer is
+ * unhealthy.
+ *
+ * <p>
+ * Records are sent through {@link #send(String, String, String, Callback)}.
+ * While the producer is healthy they go straight to Kafka, and a record whose
+ * send fails is appended to the spool instead of being lost. The send callback
+ * only queues the failed record for a spool writer thread, so the I/O thread
+ * of the producer, shared by every user of the registry, never writes to disk,
+ * and records are dropped and counted once the queue is full. After
+ * {@code failureThreshold} consecutive failures the producer is considered
+ * unhealthy and records are appended to the spool without touching the
+ * producer, so callers never block on an exhausted producer buffer. A
+ * {@link TimeoutException}, thrown by {@code send} once {@code max.block.ms}
+ * elapsed without metadata or buffer space, marks the producer unhealthy at
+ * once, so the producer should be obtained through
+ * {@link KafkaProducerRegistry#getSpoolingProducer(String, ProducerProfile)}.
+ * </p>
+ *
+ * <p>
+ * The spool is a directory of segment files written through a
+ * {@link FileChannel}. A segment is sealed once it reaches
+ * {@code segmentBytes}, and records are dropped and counted once the spool
+ * holds {@code maxBytes}. A background replayer reads sealed segments through a
+ * memory map, in order, and sends them to Kafka at no more than
+ * {@code replayRate} records per second. Its sends double as the health probe:
+ * the first successful replay marks the producer healthy again. A segment is
+ * deleted once fully replayed, so records of a partly replayed segment are sent
+ * again after a restart.
+ * </p>
+ *
+ * <p>
+ * Segments are kept in a per-instance subdirectory named after the host, held
+ * through an exclusive lock on its {@code .lock} file. A second process on the
+ * same host and base directory locks the next free subdirectory, suffixed
+ * {@code -1}, {@code -2} and so on, instead of replaying and deleting the
+ * segments of the first one.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public class KafkaSpool {
+
+	private static final String SEGMENT_PREFIX = "spool-";
+
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	/**
+	 * Body length, CRC32 of the body, topic length and key length
+	 */
+	private static final int HEADER_BYTES = 4 + 4 + 2 + 2;
+
+	private static final long IDLE_SLEEP_MILLIS = 1_000L;
+
+	private static final long RETRY_SLEEP_MILLIS = 5_000L;
+
+	private static final long REPLAY_TIMEOUT_SECONDS = 30L;
+
+	private static final String LOCK_FILE = ".lock";
+
+	/**
+	 * Number of instance subdirectories tried before giving up
+	 */
+	private static final int MAX_INSTANCES = 16;
+
+	/**
+	 * Number of failed records waiting for the spool writer
+	 */
+	private static final int FAILED_QUEUE_CAPACITY = 8_192;
+
+	/**
+	 * Spools not shut down yet, stopped together by {@link #shutdownAll()}
+	 */
+	private static final Set<KafkaSpool> OPEN = ConcurrentHashMap.newKeySet();
+
+	private final Producer<String, String> producer;
+
+	private final Path directory;
+
+	private final long maxBytes;
+
+	private final long segmentBytes;
+
+	private final long replayIntervalNanos;
+
+	private final int failureThreshold;
+
+	/**
+	 * Sealed segments waiting to be replayed, oldest first
+	 */
+	private final Deque<Path> sealed = new ArrayDeque<>();
+
+	/**
+	 * Records whose send failed, queued by the producer callback and appended by
+	 * the spool writer
+	 */
+	private final BlockingQueue<ProducerRecord<String, String>> failed = new ArrayBlockingQueue<>(
+			FAILED_QUEUE_CAPACITY);
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	private final LongAdder spooled = new LongAdder();
+
+	private final LongAdder replayed = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final Thread replayerThread;
+
+	private final Thread writerThread;
+
+	private FileChannel lockChannel;
+
+	private FileLock lock;
+
+	private FileChannel active;
+
+	private long activeSize;
+
+	private long nextSegmentId;
+
+	private long totalBytes;
+
+	private volatile boolean healthy = true;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to recover the existing segments and start the replayer
+	 * and the spool writer
+	 *
+	 * @param producer         Producer used for live sends and replay
+	 * @param directory        Base directory of the instance subdirectories
+	 * @param maxBytes         Maximum size of all segments together
+	 * @param segmentBytes     Size after which a segment is sealed
+	 * @param replayRate       Maximum number of records replayed per second
+	 * @param failureThreshold Consecutive failures after which the producer is
+	 *                         considered unhealthy
+	 */
+	private KafkaSpool(Producer<String, String> producer, String directory, long maxBytes, long segmentBytes,
+			int replayRate, int failureThreshold) {
+		this.producer = producer;
+		this.directory = lock(Paths.get(directory));
+		this.maxBytes = maxBytes;
+		this.segmentBytes = segmentBytes;
+		this.replayIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, replayRate);
+		this.failureThreshold = Math.max(1, failureThreshold);
+		recover();
+		this.replayerThread = new Thread(this::replay, "kafka-spool-replayer");
+		this.replayerThread.setDaemon(true);
+		this.replayerThread.start();
+		this.writerThread = new Thread(this::writeFailed, "kafka-spool-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Method to get a new started instance of {@link KafkaSpool}
+	 *
+	 * @param producer         Producer used for live sends and replay
+	 * @param directory        Base directory of the instance subdirectories
+	 * @param maxBytes         Maximum size of all segments together
+	 * @param segmentBytes     Size after which a segment is sealed
+	 * @param replayRate       Maximum number of records replayed per second
+	 * @param failureThreshold Consecutive failures after which the producer is
+	 *                         considered unhealthy
+	 * @return New instance of {@link KafkaSpool}
+	 * @throws ConfigException Thrown when the spool directory cannot be used or
+	 *                         every instance subdirectory is locked
+	 */
+	public static KafkaSpool getInstance(Producer<String, String> producer, String directory, long maxBytes,
+			long segmentBytes, int replayRate, int failureThreshold) {
+		KafkaSpool spool = new KafkaSpool(producer, directory, maxBytes, segmentBytes, replayRate, failureThreshold);
+		OPEN.add(spool);
+		return spool;
+	}
+
+	/**
+	 * Method to send a record through {@link KafkaUtility}, or spool it when the
+	 * producer is unhealthy, the send fails or no in-flight permit is released in
+	 * time
+	 *
+	 * @param topic    Target topic
+	 * @param key      Record key, may be {@code null}
+	 * @param payload  Record value
+	 * @param callback Callback invoked when a send to Kafka completes, may be
+	 *                 {@code null}. It is not invoked for records spooled without
+	 *                 being sent.
+	 */
+	public void send(String topic, String key, String payload, Callback callback) {
+		if (!healthy) {
+			append(topic, key, payload);
+			return;
+		}
+		KafkaUtility.postToKafka(producer, key, payload, topic, (metadata, exception) -> {
+			if (exception == null) {
+				consecutiveFailures.set(0);
+			} else {
+				recordFailure(exception);
+				// runs on the producer I/O thread, which must not wait for the disk
+				if (!failed.offer(new ProducerRecord<>(topic, key, payload)))
+					dropped.increment();
+			}
+			if (callback != null)
+				callback.onCompletion(metadata, exception);
+		});
+	}
+
+	/**
+	 * Method to count a failed send. A timeout means the brokers cannot be
+	 * reached, so it marks the producer unhealthy without waiting for the
+	 * threshold.
+	 *
+	 * @param exception Failure of the send
+	 */
+	private void recordFailure(Exception exception) {
+		if (exception instanceof TimeoutException || consecutiveFailures.incrementAndGet() >= failureThreshold)
+			healthy = false;
+	}
+
+	/**
+	 * Spool writer loop appending the records whose send failed
+	 */
+	private void writeFailed() {
+		while (running) {
+			try {
+				ProducerRecord<String, String> record = failed.poll(IDLE_SLEEP_MILLIS, TimeUnit.MILLISECONDS);
+				if (record != null)
+					append(record.topic(), record.key(), record.value());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Method to append a record to the active segment
+	 *
+	 * @param topic   Target topic
+	 * @param key     Record key, may be {@code null}
+	 * @param payload Record value
+	 * @return {@code true} if spooled, {@code false} if dropped because the spool
+	 *         is full or cannot be written
+	 */
+	public boolean append(String topic, String key, String payload) {
+		byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+		byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		int keyLength = keyBytes == null ? 0 : keyBytes.length;
+		int bodyLength = topicBytes.length + keyLength + payloadBytes.length;
+
+		ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+		record.putInt(bodyLength).putInt(0).putShort((short) topicBytes.length)
+				.putShort((short) (keyBytes == null ? -1 : keyLength)).put(topicBytes);
+		if (keyBytes != null)
+			record.put(keyBytes);
+		record.put(payloadBytes);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, record.capacity() - 8);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+
+		synchronized (this) {
+			if (totalBytes + record.remaining() > maxBytes) {
+				dropped.increment();
+				return false;
+			}
+			try {
+				if (active == null || activeSize >= segmentBytes)
+					rotate();
+				int size = record.remaining();
+				while (record.hasRemaining())
+					active.write(record);
+				activeSize += size;
+				totalBytes += size;
+				spooled.increment();
+				return true;
+			} catch (IOException e) {
+				dropped.increment();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Method to seal the active segment, if it holds records, and open a new one.
+	 * Must be called holding the monitor of this spool.
+	 *
+	 * @throws IOException Thrown when the segment files cannot be written
+	 */
+	private void rotate() throws IOException {
+		if (active != null) {
+			active.force(false);
+			active.close();
+			active = null;
+		}
+		Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+		active = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		activeSize = 0;
+		sealed.addLast(path);
+	}
+
+	/**
+	 * Method to lock the first free instance subdirectory of the base directory
+	 *
+	 * @param base Base directory of the instance subdirectories
+	 * @return Locked instance subdirectory
+	 * @throws ConfigException Thrown when the directory cannot be used or every
+	 *                         instance subdirectory is locked
+	 */
+	private Path lock(Path base) {
+		String instance = instanceName();
+		for (int i = 0; i < MAX_INSTANCES; i++) {
+			Path candidate = base.resolve(i == 0 ? instance : instance + "-" + i);
+			FileChannel channel = null;
+			try {
+				channel = FileChannel.open(Files.createDirectories(candidate).resolve(LOCK_FILE),
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock acquired = channel.tryLock();
+				if (acquired != null) {
+					lockChannel = channel;
+					lock = acquired;
+					return candidate;
+				}
+				channel.close();
+			} catch (OverlappingFileLockException e) {
+				closeQuietly(channel);
+			} catch (IOException e) {
+				closeQuietly(channel);
+				throw ConfigException.getInstance(e.getMessage() + ": unable to use kafka spool directory " + candidate);
+			}
+		}
+		throw ConfigException.getInstance("every kafka spool directory under " + base + " is locked");
+	}
+
+	/**
+	 * Method to get the name of the instance subdirectory, which is the host name
+	 * so that a restarted instance replays the segments of its previous run
+	 */
+	private static String instanceName() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (IOException e) {
+			host = "localhost";
+		}
+		return host.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		try {
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			// the channel is abandoned either way
+		}
+	}
+
+	/**
+	 * Method to pick up segments left by a previous run
+	 *
+	 * @throws ConfigException Thrown when the spool directory cannot be used
+	 */
+	private void recover() {
+		try (Stream<Path> files = Files.list(Files.createDirectories(directory))) {
+			files.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+			}).sorted().forEach(path -> {
+				sealed.addLast(path);
+				totalBytes += path.toFile().length();
+				String name = path.getFileName().toString();
+				long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+				nextSegmentId = Math.max(nextSegmentId, id + 1);
+			});
+		} catch (IOException | NumberFormatException e) {
+			throw ConfigException.getInstance(e.getMessage() + ": unable to use kafka spool directory " + directory);
+		}
+	}
+
+	/**
+	 * Method to get the oldest segment which is ready to be replayed, sealing the
+	 * active segment if it is the oldest one
+	 *
+	 * @return Path of the segment or {@code null} if the spool is empty
+	 * @throws IOException Thrown when the active segment cannot be sealed
+	 */
+	private synchronized Path nextSegment() throws IOException {
+		Path oldest = sealed.peekFirst();
+		if (oldest == null)
+			return null;
+		if (active != null && sealed.size() == 1) {
+			if (activeSize == 0)
+				return null;
+			active.force(false);
+			active.close();
+			active = null;
+		}
+		return oldest;
+	}
+
+	private synchronized void deleteSegment(Path segment) throws IOException {
+		totalBytes -= Files.size(segment);
+		Files.deleteIfExists(segment);
+		sealed.remove(segment);
+	}
+
+	/**
+	 * Replayer loop draining the sealed segments in order
+	 */
+	private void replay() {
+		while (running) {
+			try {
+				Path segment = nextSegment();
+				if (segment == null) {
+					Thread.sleep(IDLE_SLEEP_MILLIS);
+					continue;
+				}
+				replaySegment(segment);
+				deleteSegment(segment);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (IOException e) {
+				Log.error(this.getClass().getSimpleName(), "replay", "unable to replay spool %s, retrying: %n%s",
+						directory, ExceptionUtils.getStackTrace(e));
+				sleepQuietly(RETRY_SLEEP_MILLIS);
+			}
+		}
+	}
+
+	/**
+	 * Method to replay every intact record of a segment. A record failing its
+	 * length or CRC check marks the torn end of a segment written during a crash
+	 * and ends the segment.
+	 *
+	 * @param segment Segment to replay
+	 * @throws IOException          Thrown when the segment cannot be read
+	 * @throws InterruptedException Thrown when the replayer is interrupted
+	 */
+	private void replaySegment(Path segment) throws IOException, InterruptedException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			CRC32 crc = new CRC32();
+			while (running && buffer.remaining() >= HEADER_BYTES) {
+				int start = buffer.position();
+				int bodyLength = buffer.getInt();
+				int checksum = buffer.getInt();
+				short topicLength = buffer.getShort();
+				short keyLength = buffer.getShort();
+				if (bodyLength < 0 || bodyLength > buffer.remaining())
+					return;
+				crc.reset();
+				ByteBuffer checked = buffer.duplicate();
+				checked.position(start + 8).limit(start + HEADER_BYTES + bodyLength);
+				crc.update(checked);
+				if ((int) crc.getValue() != checksum)
+					return;
+
+				String topic = readString(buffer, topicLength);
+				String key = keyLength < 0 ? null : readString(buffer, keyLength);
+				String payload = readString(buffer,
+						bodyLength - topicLength - Math.max(0, (int) keyLength));
+				replayRecord(new ProducerRecord<>(topic, key, payload));
+			}
+		}
+	}
+
+	/**
+	 * Method to send one spooled record, retrying until it is acknowledged
+	 *
+	 * @param record Record to send
+	 * @throws InterruptedException Thrown when the replayer is interrupted
+	 */
+	private void replayRecord(ProducerRecord<String, String> record) throws InterruptedException {
+		while (running) {
+			long started = System.nanoTime();
+			try {
+				producer.send(record).get(REPLAY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				replayed.increment();
+				consecutiveFailures.set(0);
+				healthy = true;
+				long remaining = replayIntervalNanos - (System.nanoTime() - started);
+				if (remaining > 0)
+					TimeUnit.NANOSECONDS.sleep(remaining);
+				return;
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				healthy = false;
+				Thread.sleep(RETRY_SLEEP_MILLIS);
+			}
+		}
+	}
+
+	private static String readString(ByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void sleepQuietly(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Method to stop the replayer and the spool writer, append the failed records
+	 * still queued, flush the active segment to disk and release the directory
+	 * lock. Records still spooled are replayed by the next instance using the same
+	 * directory.
+	 */
+	public void shutdown() {
+		OPEN.remove(this);
+		running = false;
+		replayerThread.interrupt();
+		try {
+			// not interrupted, which would close the active segment in the middle of a
+			// write
+			writerThread.join(2 * IDLE_SLEEP_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			for (ProducerRecord<String, String> record; (record = failed.poll()) != null;)
+				append(record.topic(), record.key(), record.value());
+			try {
+				if (active != null) {
+					active.force(false);
+					active.close();
+					active = null;
+				}
+			} catch (IOException e) {
+				Log.error(this.getClass().getSimpleName(), "shutdown", "unable to flush spool %s: %n%s", directory,
+						ExceptionUtils.getStackTrace(e));
+			}
+			if (lock != null) {
+				closeQuietly(lockChannel);
+				lock = null;
+			}
+		}
+	}
+
+	/**
+	 * Method to shut down every spool still open, before the producers they use
+	 * are closed
+	 */
+	public static void shutdownAll() {
+		for (KafkaSpool spool : OPEN)
+			spool.shutdown();
+	}
+
+	/**
+	 * Method to register the counters and size of this spool in
+	 * {@link PipelineMetrics}
+	 *
+	 * @param prefix Prefix of the metric names, e.g. {@code log.spool}
+	 */
+	public void registerMetrics(String prefix) {
+		PipelineMetrics.registerCounter(prefix + ".spooled", this::getSpooledCount);
+		PipelineMetrics.registerCounter(prefix + ".replayed", this::getReplayedCount);
+		PipelineMetrics.registerCounter(prefix + ".dropped", this::getDroppedCount);
+		PipelineMetrics.registerGauge(prefix + ".bytes", this::getSpoolBytes);
+		PipelineMetrics.registerGauge(prefix + ".healthy", () -> healthy ? 1L : 0L);
+	}
+
+	/**
+	 * Method to check whether live records are currently sent to Kafka
+	 *
+	 * @return {@code false} while records are spooled instead of sent
+	 */
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	/**
+	 * Method to get the number of records written to the spool
+	 *
+	 * @return Spooled record count
+	 */
+	public long getSpooledCount() {
+		return spooled.sum();
+	}
+
+	/**
+	 * Method to get the number of spooled records replayed to Kafka
+	 *
+	 * @return Replayed record count
+	 */
+	public long getReplayedCount() {
+		return replayed.sum();
+	}
+
+	/**
+	 * Method to get the number of records dropped because the spool was full or
+	 * could not be written
+	 *
+	 * @return Dropped record count
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Method to get the size of all segments waiting to be replayed
+	 *
+	 * @return Spool size in bytes
+	 */
+	public synchronized long getSpoolBytes() {
+		return totalBytes;
+	}
+}
@@ -1,8 +1,15 @@
 package com.utilities.kafka;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
@@ -12,28 +19,353 @@ import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 import com.utilities.log.Log;
+import com.utilities.metrics.PipelineMetrics;
 
+/**
+ * Helpers to send records to Kafka.
+ *
+ * <p>
+ * Every record sent through this class holds a permit until the broker
+ * acknowledges it or the send fails. When all permits are taken, senders wait
+ * up to a configured time for one to be released and then fail the send with a
+ * {@link TimeoutException}, so that a slow broker pushes back on the callers
+ * instead of filling the producer buffers. {@link #postToKafkaAsync} never
+ * waits: its future fails at once when no permit is free, so that asynchronous
+ * callers are not blocked. The limit is set with
+ * {@link #configureInFlight(int, long)}.
+ * </p>
+ *
+ * <p>
+ * The {@link KafkaBatchShipper} and the live sends of the {@link KafkaSpool}
+ * go through this class as well, so that {@link #awaitInFlight(long)} also
+ * covers log and audit traffic. Only the spool replayer sends directly, one
+ * record at a time awaited before the next.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
 public class KafkaUtility {
 
+	/**
+	 * Default maximum number of records awaiting acknowledgement
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+	/**
+	 * Default maximum time a sender waits for a permit in milliseconds
+	 */
+	public static final long DEFAULT_IN_FLIGHT_WAIT_MILLIS = 5_000L;
+
+	/**
+	 * Current in-flight limit, replaced as a whole so that records release their
+	 * permit to the limit they acquired it from
+	 */
+	private static volatile InFlightLimit inFlight = new InFlightLimit(DEFAULT_MAX_IN_FLIGHT,
+			DEFAULT_IN_FLIGHT_WAIT_MILLIS);
+
+	/**
+	 * Number of records acknowledged by the broker
+	 */
+	private static final LongAdder sent = new LongAdder();
+
+	/**
+	 * Number of records whose send failed
+	 */
+	private static final LongAdder failed = new LongAdder();
+
+	/**
+	 * Minimum time between two reports of failed sends
+	 */
+	private static final long FAILURE_REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * Time of the last report of failed sends
+	 */
+	private static final AtomicLong failureReportedAt = new AtomicLong(
+			System.nanoTime() - FAILURE_REPORT_INTERVAL_NANOS);
+
+	/**
+	 * Number of failed sends already reported, written by the report winning
+	 * {@link #failureReportedAt}
+	 */
+	private static volatile long failuresReported;
+
+	static {
+		PipelineMetrics.registerCounter("kafka.sent", KafkaUtility::getSentCount);
+		PipelineMetrics.registerCounter("kafka.failed", KafkaUtility::getFailedCount);
+		PipelineMetrics.registerGauge("kafka.in-flight", KafkaUtility::getInFlightCount);
+	}
+
+	/**
+	 * Method to set the in-flight limit of the records sent afterwards
+	 * 
+	 * @param maxInFlight Maximum number of records awaiting acknowledgement
+	 * @param waitMillis  Maximum time a sender waits for a permit in milliseconds
+	 */
+	public static void configureInFlight(int maxInFlight, long waitMillis) {
+		inFlight = new InFlightLimit(Math.max(1, maxInFlight), Math.max(0L, waitMillis));
+	}
+
+	/**
+	 * Method to send a message without key to a topic, leaving its partition to
+	 * the sticky partitioner of the producer. Sends are only counted, so that
+	 * shipping a log line does not produce another log line, and failures are
+	 * reported at most once a minute.
+	 * 
+	 * @param producer   Kafka producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 */
 	public static void postToKafka(Producer<String, String> producer, String logMessage, String topic) {
-		String key = "";
-		ProducerRecord<String, String> record = new ProducerRecord<>(topic, key, logMessage);
+		postToKafka(producer, null, logMessage, topic);
+	}
 
-		producer.send(record, new Callback() {
+	/**
+	 * Method to send a message to a topic with a key, usually chosen by a
+	 * {@link PartitionKeyStrategy}. Sends are only counted, and failures are
+	 * reported at most once a minute, so that a broker outage does not turn every
+	 * audit or log record into an error with a stack trace.
+	 * 
+	 * @param <V>        Type of the message, {@code String} for JSON or
+	 *                   {@code byte[]} for binary records
+	 * @param producer   Kafka producer
+	 * @param key        Record key, {@code null} to leave the partition to the
+	 *                   producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 */
+	public static <V> void postToKafka(Producer<String, V> producer, String key, V logMessage, String topic) {
+		long started = System.nanoTime();
+		postToKafka(producer, key, logMessage, topic, new Callback() {
 			@Override
 			public void onCompletion(RecordMetadata metadata, Exception exception) {
+				PipelineMetrics.KAFKA_ACK.recordSince(started);
 				if (exception != null) {
-					Log.error(Log.class.getSimpleName(), "postToKafka", "Failed to send message with key=%s%n%s", key,
-							ExceptionUtils.getStackTrace(exception));
+					failed.increment();
+					reportFailures(exception);
 				} else {
-					Log.info(Log.class.getSimpleName(), "postToKafka",
-							"Message sent to topic=%s partition=%d offset=%d", metadata.topic(), metadata.partition(),
-							metadata.offset());
+					sent.increment();
 				}
 			}
 		});
 	}
 
+	/**
+	 * Method to log the number of failed sends since the previous report, unless
+	 * the previous report is less than a minute old
+	 *
+	 * @param exception Failure of the latest send
+	 */
+	private static void reportFailures(Exception exception) {
+		long last = failureReportedAt.get();
+		long now = System.nanoTime();
+		if (now - last < FAILURE_REPORT_INTERVAL_NANOS || !failureReportedAt.compareAndSet(last, now))
+			return;
+		long total = failed.sum();
+		long count = total - failuresReported;
+		failuresReported = total;
+		Log.warn(KafkaUtility.class.getSimpleName(), "postToKafka", "%s sends failed since the last report, latest: %s",
+				count, exception);
+	}
+
+	/**
+	 * Method to send a message without key to a topic and get its outcome
+	 * 
+	 * @param producer   Kafka producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 * @return Future completed with the metadata of the acknowledged record, or
+	 *         exceptionally when the send fails
+	 */
+	public static CompletableFuture<RecordMetadata> postToKafkaAsync(Producer<String, String> producer,
+			String logMessage, String topic) {
+		return postToKafkaAsync(producer, null, logMessage, topic);
+	}
+
+	/**
+	 * Method to send a message to a topic with a key and get its outcome.
+	 * Outcomes are counted like the ones of {@link #postToKafka}, but failures
+	 * are left to the caller.
+	 * 
+	 * @param <V>        Type of the message, {@code String} for JSON or
+	 *                   {@code byte[]} for binary records
+	 * @param producer   Kafka producer
+	 * @param key        Record key, {@code null} to leave the partition to the
+	 *                   producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 * @return Future completed with the metadata of the acknowledged record, or
+	 *         exceptionally when the send fails or no permit is free
+	 */
+	public static <V> CompletableFuture<RecordMetadata> postToKafkaAsync(Producer<String, V> producer, String key,
+			V logMessage, String topic) {
+		CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+		long started = System.nanoTime();
+		send(producer, key, logMessage, topic, false, (metadata, exception) -> {
+			PipelineMetrics.KAFKA_ACK.recordSince(started);
+			if (exception != null) {
+				failed.increment();
+				future.completeExceptionally(exception);
+			} else {
+				sent.increment();
+				future.complete(metadata);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Method to send records and flush the producer, so that they are sent
+	 * right away instead of after the linger time. The call blocks until every
+	 * record buffered by the producer, including records of other callers, has
+	 * been sent.
+	 * 
+	 * @param <V>      Type of the messages
+	 * @param producer Kafka producer
+	 * @param records  Records to send
+	 * @return Future completed once every record is acknowledged, or
+	 *         exceptionally with the first failure
+	 */
+	public static <V> CompletableFuture<Void> postBatchToKafka(Producer<String, V> producer,
+			List<ProducerRecord<String, V>> records) {
+		List<CompletableFuture<RecordMetadata>> futures = new ArrayList<>(records.size());
+		for (ProducerRecord<String, V> record : records)
+			futures.add(postToKafkaAsync(producer, record.key(), record.value(), record.topic()));
+		producer.flush();
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Method to send a message without key to a topic with a caller supplied
+	 * callback
+	 * 
+	 * @param producer   Kafka producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 * @param callback   Callback invoked when the send completes
+	 */
+	public static void postToKafka(Producer<String, String> producer, String logMessage, String topic,
+			Callback callback) {
+		postToKafka(producer, null, logMessage, topic, callback);
+	}
+
+	/**
+	 * Method to send a message to a topic with a key and a caller supplied
+	 * callback
+	 * 
+	 * @param <V>        Type of the message, {@code String} for JSON or
+	 *                   {@code byte[]} for binary records
+	 * @param producer   Kafka producer
+	 * @param key        Record key, {@code null} to leave the partition to the
+	 *                   producer
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 * @param callback   Callback invoked when the send completes
+	 */
+	public static <V> void postToKafka(Producer<String, V> producer, String key, V logMessage, String topic,
+			Callback callback) {
+		send(producer, key, logMessage, topic, true, callback);
+	}
+
+	/**
+	 * Method to send a message once an in-flight permit is acquired
+	 * 
+	 * @param <V>        Type of the message
+	 * @param producer   Kafka producer
+	 * @param key        Record key, may be {@code null}
+	 * @param logMessage Message to send
+	 * @param topic      Target topic
+	 * @param wait       Whether to wait for a permit up to the configured time,
+	 *                   or fail at once when none is free
+	 * @param callback   Callback invoked when the send completes
+	 */
+	private static <V> void send(Producer<String, V> producer, String key, V logMessage, String topic, boolean wait,
+			Callback callback) {
+		InFlightLimit limit = inFlight;
+		long started = System.nanoTime();
+		try {
+			if (!(wait ? limit.permits.tryAcquire(limit.waitMillis, TimeUnit.MILLISECONDS)
+					: limit.permits.tryAcquire())) {
+				callback.onCompletion(null,
+						new TimeoutException(wait ? "no in-flight permit released within " + limit.waitMillis + " ms"
+								: "no in-flight permit free"));
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			callback.onCompletion(null, e);
+			return;
+		}
+		try {
+			producer.send(new ProducerRecord<>(topic, key, logMessage), (metadata, exception) -> {
+				limit.permits.release();
+				callback.onCompletion(metadata, exception);
+			});
+		} catch (RuntimeException e) {
+			limit.permits.release();
+			callback.onCompletion(null, e);
+		} finally {
+			PipelineMetrics.KAFKA_SEND.recordSince(started);
+		}
+	}
+
+	/**
+	 * Method to wait until every record sent through this class is acknowledged
+	 * or failed
+	 * 
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if no record is in flight anymore
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	public static boolean awaitInFlight(long millis) throws InterruptedException {
+		InFlightLimit limit = inFlight;
+		if (!limit.permits.tryAcquire(limit.max, Math.max(0L, millis), TimeUnit.MILLISECONDS))
+			return false;
+		limit.permits.release(limit.max);
+		return true;
+	}
+
+	/**
+	 * Method to get the number of records sent through this class awaiting
+	 * acknowledgement
+	 * 
+	 * @return In-flight record count
+	 */
+	public static int getInFlightCount() {
+		InFlightLimit limit = inFlight;
+		return limit.max - limit.permits.availablePermits();
+	}
+
+	/**
+	 * Method to get the number of records sent through {@link #postToKafka}
+	 * which were acknowledged by the broker
+	 * 
+	 * @return Acknowledged record count
+	 */
+	public static long getSentCount() {
+		return sent.sum();
+	}
+
+	/**
+	 * Method to get the number of records sent through {@link #postToKafka}
+	 * whose send failed
+	 * 
+	 * @return Failed record count
+	 */
+	public static long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * Method to create a new, unshared producer with the settings of
+	 * {@link ProducerProfile#DEFAULT}
+	 * 
+	 * @param bootstrapServers Comma separated bootstrap servers
+	 * @return New producer, to be closed by the caller
+	 * @deprecated Use {@link KafkaProducerRegistry#getProducer} to share one
+	 *             producer per bootstrap address and profile
+	 */
+	@Deprecated
 	public static KafkaProducer<String, String> kafkaProps(String bootstrapServers) {
 		Properties props = new Properties();
 		props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -46,4 +378,21 @@ public class KafkaUtility {
 		return new KafkaProducer<>(props);
 	}
 
+	/**
+	 * Permits of an in-flight limit with its configuration
+	 */
+	private static final class InFlightLimit {
+
+		private final int max;
+
+		private final long waitMillis;
+
+		private final Semaphore permits;
+
+		private InFlightLimit(int max, long waitMillis) {
+			this.max = max;
+			this.waitMillis = waitMillis;
+			this.permits = new Semaphore(max);
+		}
+	}
 }
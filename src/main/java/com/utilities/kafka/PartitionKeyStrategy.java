@@ -0,0 +1,110 @@
+package com.utilities.kafka;
+
+import java.util.Locale;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Strategy choosing the key, and therefore the partition, of a record sent to
+ * Kafka.
+ *
+ * <p>
+ * Records with the same key land on the same partition and keep their order,
+ * records without key are spread by the producer's sticky partitioner, which
+ * fills a batch for one partition before moving on to the next. The strategy
+ * receives the source of the record as chosen by the sender, the reference
+ * number of an audit or the id of the thread which logged an event, and the
+ * payload.
+ * </p>
+ *
+ * <p>
+ * Strategies are selected in the configuration through {@link #from}, e.g.
+ * {@code config.kafka.log-key-strategy=thread} or
+ * {@code config.kafka.audit-key-strategy=ref-no}.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+@FunctionalInterface
+public interface PartitionKeyStrategy {
+
+	/**
+	 * Method to get the key of a record
+	 * 
+	 * @param source  Source of the record chosen by the sender, may be
+	 *                {@code null}
+	 * @param payload Record value, a JSON {@code String} or a binary
+	 *                {@code byte[]} record depending on the payload format
+	 * @return Record key, {@code null} to leave the partition to the producer
+	 */
+	String key(String source, Object payload);
+
+	/**
+	 * Method to get the strategy sending records without key, ordered only
+	 * within a producer batch
+	 * 
+	 * @return Strategy always returning {@code null}
+	 */
+	static PartitionKeyStrategy sticky() {
+		return (source, payload) -> null;
+	}
+
+	/**
+	 * Method to get the strategy keying every record by its source, keeping the
+	 * records of one audit reference or one logging thread in order
+	 * 
+	 * @return Strategy returning the source, {@code null} when there is none
+	 */
+	static PartitionKeyStrategy bySource() {
+		return (source, payload) -> source;
+	}
+
+	/**
+	 * Method to get the strategy giving every record the same key, e.g. the
+	 * service name, keeping all of them in order on a single partition
+	 * 
+	 * @param key Key of every record
+	 * @return Strategy returning the key
+	 */
+	static PartitionKeyStrategy fixed(String key) {
+		return (source, payload) -> key;
+	}
+
+	/**
+	 * Method to resolve a {@link PartitionKeyStrategy} from its configured name:
+	 * {@code sticky} (or {@code none}), {@code source} (or {@code ref-no} and
+	 * {@code thread}), {@code service}, or the fully qualified name of a custom
+	 * implementation with a public no-argument constructor
+	 * 
+	 * @param name    Strategy name
+	 * @param service Service name used as key by {@code service}
+	 * @return Matching {@link PartitionKeyStrategy}
+	 * @throws ConfigException Thrown when the name matches no strategy, or is
+	 *                         {@code service} without a service name
+	 */
+	static PartitionKeyStrategy from(String name, String service) {
+		if (name == null)
+			throw ConfigException.getInstance("invalid partition key strategy: null");
+		switch (name.trim().toLowerCase(Locale.ROOT)) {
+		case "sticky":
+		case "none":
+			return sticky();
+		case "source":
+		case "ref-no":
+		case "thread":
+			return bySource();
+		case "service":
+			if (service == null || service.isBlank())
+				throw ConfigException.getInstance(
+						"partition key strategy service needs spring.application.name to be set");
+			return fixed(service);
+		default:
+			try {
+				return Class.forName(name.trim()).asSubclass(PartitionKeyStrategy.class).getConstructor()
+						.newInstance();
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw ConfigException.getInstance("invalid partition key strategy: " + name);
+			}
+		}
+	}
+}
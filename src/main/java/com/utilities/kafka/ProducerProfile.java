@@ -0,0 +1,88 @@
+package com.utilities.kafka;
+
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Tuning profiles of the producers shared through {@link KafkaProducerRegistry},
+ * selected per topic in the configuration, e.g.
+ * {@code config.kafka.log-profile=throughput}.
+ * 
+ * @author Kabir Akware
+ */
+public enum ProducerProfile {
+
+	/**
+	 * Settings of {@link KafkaUtility#kafkaProps}: {@code acks=all}, 3 retries
+	 * and 5 ms linger.
+	 */
+	DEFAULT {
+		@Override
+		void apply(Properties props) {
+			props.put(ProducerConfig.ACKS_CONFIG, "all");
+			props.put(ProducerConfig.RETRIES_CONFIG, 3);
+			props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+		}
+	},
+
+	/**
+	 * Large lz4 compressed batches filled for up to 50 ms and acknowledged by the
+	 * leader only, for high volume streams such as logs which tolerate the loss
+	 * of a few records on a broker failure.
+	 */
+	THROUGHPUT {
+		@Override
+		void apply(Properties props) {
+			props.put(ProducerConfig.ACKS_CONFIG, "1");
+			props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+			props.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+			props.put(ProducerConfig.LINGER_MS_CONFIG, 50);
+			props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 64L * 1024 * 1024);
+			props.put(ProducerConfig.RETRIES_CONFIG, 3);
+		}
+	},
+
+	/**
+	 * Idempotent producer acknowledged by every in-sync replica and retrying
+	 * until the delivery timeout, for records which must neither be lost nor
+	 * duplicated, such as audits.
+	 */
+	DURABILITY {
+		@Override
+		void apply(Properties props) {
+			props.put(ProducerConfig.ACKS_CONFIG, "all");
+			props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+			props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+			props.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+			props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 120_000);
+			props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+			props.put(ProducerConfig.LINGER_MS_CONFIG, 10);
+		}
+	};
+
+	/**
+	 * Method to add the settings of the profile to producer properties
+	 * 
+	 * @param props Producer properties
+	 */
+	abstract void apply(Properties props);
+
+	/**
+	 * Method to resolve a {@link ProducerProfile} from its configured name
+	 * 
+	 * @param name Profile name, case insensitive
+	 * @return Matching {@link ProducerProfile}
+	 * @throws ConfigException Thrown when the name does not match any profile
+	 */
+	public static ProducerProfile from(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw ConfigException.getInstance("invalid kafka producer profile: " + name);
+		}
+	}
+}
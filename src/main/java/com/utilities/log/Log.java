@@ -1,18 +1,27 @@
 package com.utilities.log;
 
-import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
-import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
-import com.google.gson.Gson;
+import com.utilities.codec.BinaryRecordWriter;
+import com.utilities.codec.BinaryRecords;
+import com.utilities.codec.PayloadFormat;
 import com.utilities.exceptions.ConfigException;
-import com.utilities.kafka.KafkaUtility;
+import com.utilities.kafka.KafkaBatchShipper;
+import com.utilities.kafka.KafkaProducerRegistry;
+import com.utilities.kafka.KafkaSpool;
+import com.utilities.kafka.PartitionKeyStrategy;
+import com.utilities.kafka.ProducerProfile;
+import com.utilities.metrics.PipelineMetrics;
 
 /**
  * Custom class to log information in the application with different log level
@@ -24,36 +33,99 @@ import com.utilities.kafka.KafkaUtility;
 @Component
 public class Log {
 
-	private static Gson gson;
-
-	private static String topic;
+	private static final String LOGBACK_CONTEXT_CLASS = "ch.qos.logback.classic.LoggerContext";
 
 	private static String service;
 
 	private static boolean enable;
 
-	private static KafkaProducer<String, String> producer;
+	/**
+	 * Stage shipping the formatted events to Kafka in batches, {@code null} when
+	 * events are shipped as binary records
+	 */
+	private static KafkaBatchShipper<String> shipper;
+
+	/**
+	 * Stage shipping the events to Kafka as binary records, {@code null} when
+	 * they are shipped as JSON
+	 */
+	private static volatile KafkaBatchShipper<byte[]> binaryShipper;
 
 	public Log(@Value("apring.application.name") String serviceName,
 			@Value("config.property.package") String appPackage,
 			@Value("${config.kafka.enable-log-kafka}") Boolean enableKafka,
 			@Value("${config.kafka.server-details}") String serverDetails,
-			@Value("${config.kafka.log-topic}") String t) {
+			@Value("${config.kafka.log-topic}") String t,
+			@Value("${config.kafka.log-profile:default}") String producerProfile,
+			@Value("${config.kafka.log-key-strategy:thread}") String keyStrategy,
+			@Value("${config.kafka.log-format:json}") String payloadFormat,
+			@Value("${config.log.buffer-capacity:8192}") Integer bufferCapacity,
+			@Value("${config.log.overflow-policy:block}") String overflowPolicy,
+			@Value("${config.log.overflow-drop-below:warn}") String dropBelow,
+			@Value("${config.log.overflow-sample-rate:10}") Integer sampleRate,
+			@Value("${config.log.level-refresh-interval-ms:5000}") Long levelRefreshInterval,
+			@Value("${config.log.lanes:1}") Integer laneCount,
+			@Value("${config.log.global-order:false}") Boolean globalOrder,
+			@Value("${config.kafka.log-queue-capacity:16384}") Integer shipQueueCapacity,
+			@Value("${config.kafka.log-batch-size:500}") Integer batchSize,
+			@Value("${config.kafka.log-batch-max-latency-ms:50}") Long batchMaxLatency,
+			@Value("${config.kafka.log-pack-records:false}") Boolean packRecords,
+			@Value("${config.kafka.spool.enabled:false}") Boolean enableSpool,
+			@Value("${config.kafka.spool.directory:${java.io.tmpdir}/kafka-spool}") String spoolDirectory,
+			@Value("${config.kafka.spool.max-bytes:1073741824}") Long spoolMaxBytes,
+			@Value("${config.kafka.spool.segment-bytes:67108864}") Long spoolSegmentBytes,
+			@Value("${config.kafka.spool.replay-rate:500}") Integer spoolReplayRate,
+			@Value("${config.kafka.spool.failure-threshold:3}") Integer spoolFailureThreshold,
+			@Value("${config.log.rate-limit.events-per-second:0}") Double rateLimit,
+			@Value("${config.log.rate-limit.burst:10}") Integer rateLimitBurst,
+			@Value("${config.log.adaptive-sampling.start:0.5}") Double samplingStart,
+			@Value("${config.log.adaptive-sampling.max-rate:1}") Integer maxSampleRate) {
+		configurePipeline(laneCount, bufferCapacity, OverflowPolicy.from(overflowPolicy), LogLevel.from(dropBelow),
+				sampleRate, globalOrder);
 		service = serviceName;
 		logger = LoggerFactory.getLogger(appPackage);
-		gson = new Gson().newBuilder().disableHtmlEscaping().serializeNulls().serializeSpecialFloatingPointValues()
-				.setPrettyPrinting().create();
+		limiter = rateLimit > 0 || maxSampleRate > 1
+				? LogRateLimiter.getInstance(rateLimit, rateLimitBurst, samplingStart, maxSampleRate)
+				: null;
+		refreshLevels();
+		boolean pushed = ClassUtils.isPresent(LOGBACK_CONTEXT_CLASS, Log.class.getClassLoader())
+				&& LogbackLevelListener.register(Log::refreshLevels);
+		scheduleMaintenance(pushed ? 0L : levelRefreshInterval);
+		PipelineMetrics.registerGauge("log.backlog", () -> pipeline.getBacklog());
+		PipelineMetrics.registerCounter("log.dropped", Log::getDroppedCount);
+		PipelineMetrics.registerCounter("log.sampled-out", Log::getSampledOutCount);
 		info(Log.class.getSimpleName(), "constructor", "logger initialized..");
-		enable = enableKafka;
 		if (enableKafka) {
 			try {
-				topic = t;
-				producer = KafkaUtility.kafkaProps(serverDetails);
+				ProducerProfile profile = ProducerProfile.from(producerProfile);
+				PartitionKeyStrategy keys = PartitionKeyStrategy.from(keyStrategy, serviceName);
+				if (PayloadFormat.from(payloadFormat) == PayloadFormat.BINARY) {
+					if (enableSpool)
+						throw ConfigException.getInstance("the kafka spool only supports the json log format");
+					binaryShipper = KafkaBatchShipper.getBinaryInstance(
+							KafkaProducerRegistry.getBinaryProducer(serverDetails, profile), t, shipQueueCapacity,
+							batchSize, batchMaxLatency, packRecords, keys, "log-kafka-shipper");
+					binaryShipper.registerMetrics("log.kafka");
+				} else {
+					Producer<String, String> producer = enableSpool
+							? KafkaProducerRegistry.getSpoolingProducer(serverDetails, profile)
+							: KafkaProducerRegistry.getProducer(serverDetails, profile);
+					KafkaSpool spool = enableSpool
+							? KafkaSpool.getInstance(producer, spoolDirectory + "/log", spoolMaxBytes,
+									spoolSegmentBytes, spoolReplayRate, spoolFailureThreshold)
+							: null;
+					shipper = KafkaBatchShipper.getInstance(producer, t, shipQueueCapacity, batchSize,
+							batchMaxLatency, packRecords, keys, spool, "log-kafka-shipper");
+					shipper.registerMetrics("log.kafka");
+					if (spool != null)
+						spool.registerMetrics("log.spool");
+				}
 			} catch (ArrayIndexOutOfBoundsException e) {
 				throw ConfigException.getInstance(
 						"need to provide two additional params if param[1] is true. provide bootstrap server & topic details respectively");
 			}
 		}
+		enable = enableKafka;
 	}
 
 	/**
@@ -62,9 +134,210 @@ public class Log {
 	private static Logger logger;
 
 	/**
-	 * Single-threaded executor to ensure logs are processed in order
+	 * Default number of slots in the ring buffer until the bean is configured
+	 */
+	private static final int DEFAULT_BUFFER_CAPACITY = 8192;
+
+	/**
+	 * Lanes of bounded ring buffers, each drained by its own consumer thread.
+	 * Events of one thread always use the same lane to ensure they are
+	 * processed in order.
+	 */
+	private static volatile LogPipeline pipeline = LogPipeline.getInstance(1, DEFAULT_BUFFER_CAPACITY,
+			OverflowPolicy.BLOCK, LogLevel.WARN, 1, false, Log::format, Log::emit);
+
+	/**
+	 * Method to replace the default pipeline with one using the configured lanes,
+	 * capacity and overflow policy. Events already queued in the previous
+	 * pipeline are still written by its consumers before they exit.
+	 * 
+	 * @param laneCount   Number of lanes formatting events in parallel
+	 * @param capacity    Total number of slots, shared by the lanes
+	 * @param policy      Policy applied when a lane is full
+	 * @param dropBelow   Threshold used by {@link OverflowPolicy#DROP_BELOW_LEVEL}
+	 * @param sampleRate  One in how many events is kept by
+	 *                    {@link OverflowPolicy#SAMPLE}
+	 * @param globalOrder Whether events are written in global order through a
+	 *                    merge stage instead of directly by each lane
+	 */
+	private static void configurePipeline(int laneCount, int capacity, OverflowPolicy policy, LogLevel dropBelow,
+			int sampleRate, boolean globalOrder) {
+		LogPipeline previous = pipeline;
+		pipeline = LogPipeline.getInstance(laneCount, capacity, policy, dropBelow, sampleRate, globalOrder,
+				Log::format, Log::emit);
+		previous.shutdown();
+	}
+
+	/**
+	 * Bit mask of the levels enabled on {@link #logger}, indexed by
+	 * {@link LogLevel#ordinal()}. Every level is enabled until the logger is
+	 * initialized.
 	 */
-	private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private static volatile int enabledLevels = ~0;
+
+	/**
+	 * Daemon thread periodically refreshing {@link #enabledLevels} and feeding
+	 * the {@link #limiter}
+	 */
+	private static ScheduledExecutorService maintenance;
+
+	/**
+	 * Interval at which the rate limiter's sampling rate is adapted to the
+	 * pipeline's backlog
+	 */
+	private static final long PRESSURE_INTERVAL_MILLIS = 100L;
+
+	/**
+	 * Interval at which events suppressed at quiet call sites are reported
+	 */
+	private static final long SUPPRESSION_REPORT_INTERVAL_MILLIS = 1_000L;
+
+	/**
+	 * Message of the event reporting suppressed events of a call site
+	 */
+	private static final String SUPPRESSED_MESSAGE = "previous message repeated %d times: %s";
+
+	/**
+	 * Per call site rate limiter and adaptive sampler, {@code null} when
+	 * disabled
+	 */
+	private static volatile LogRateLimiter limiter;
+
+	/**
+	 * Method to check whether events of the given level would be written by the
+	 * underlying {@link Logger}. Disabled events are discarded before anything is
+	 * captured or queued.
+	 * 
+	 * @param level Log level
+	 * @return {@code true} if the level is enabled
+	 */
+	public static boolean isEnabled(LogLevel level) {
+		return (enabledLevels & (1 << level.ordinal())) != 0;
+	}
+
+	/**
+	 * Method to re-read the enabled levels from the underlying {@link Logger}.
+	 * Level changes are pushed here as they happen when SLF4J is bound to
+	 * Logback. With other backends the levels are refreshed every
+	 * {@code config.log.level-refresh-interval-ms}, and applications changing
+	 * levels at runtime can call this method to apply the change immediately.
+	 */
+	public static void refreshLevels() {
+		Logger current = logger;
+		if (current == null)
+			return;
+		int mask = 0;
+		if (current.isTraceEnabled())
+			mask |= 1 << LogLevel.TRACE.ordinal();
+		if (current.isDebugEnabled())
+			mask |= 1 << LogLevel.DEBUG.ordinal();
+		if (current.isInfoEnabled())
+			mask |= 1 << LogLevel.INFO.ordinal();
+		if (current.isWarnEnabled())
+			mask |= 1 << LogLevel.WARN.ordinal();
+		if (current.isErrorEnabled())
+			mask |= 1 << LogLevel.ERROR.ordinal();
+		enabledLevels = mask;
+	}
+
+	/**
+	 * Method to start the periodic refresh of the enabled levels and, when rate
+	 * limiting or sampling is enabled, the periodic limiter maintenance
+	 * 
+	 * @param intervalMillis Level refresh interval in milliseconds, {@code 0} or
+	 *                       less disables the periodic refresh
+	 */
+	private static synchronized void scheduleMaintenance(long intervalMillis) {
+		if (maintenance != null)
+			maintenance.shutdownNow();
+		maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "log-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (intervalMillis > 0)
+			maintenance.scheduleWithFixedDelay(Log::refreshLevels, intervalMillis, intervalMillis,
+					TimeUnit.MILLISECONDS);
+		if (limiter != null) {
+			maintenance.scheduleWithFixedDelay(() -> limiter.updatePressure(
+					(double) pipeline.getBacklog() / pipeline.getCapacity()), PRESSURE_INTERVAL_MILLIS,
+					PRESSURE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			maintenance.scheduleWithFixedDelay(() -> limiter.drainSuppressed(Log::reportSuppressed),
+					SUPPRESSION_REPORT_INTERVAL_MILLIS, SUPPRESSION_REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Method to stop logging, on application shutdown, once every event already
+	 * published has been written and shipped. The maintenance thread is stopped
+	 * first and a last report of suppressed events is published, then the
+	 * pipeline and the Kafka shipping stage are drained. Events published
+	 * afterwards are discarded.
+	 * 
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if everything was drained within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	public static boolean shutdown(long millis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		synchronized (Log.class) {
+			if (maintenance != null) {
+				maintenance.shutdown();
+				maintenance.awaitTermination(Math.max(0L, deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+			}
+		}
+		LogRateLimiter current = limiter;
+		if (current != null)
+			current.drainSuppressed(Log::reportSuppressed);
+		LogPipeline drained = pipeline;
+		drained.shutdown();
+		boolean complete = drained.awaitTermination(Math.max(1L, deadline - System.currentTimeMillis()));
+		KafkaBatchShipper<String> json = shipper;
+		if (json != null) {
+			json.shutdown();
+			complete &= json.awaitTermination(Math.max(1L, deadline - System.currentTimeMillis()));
+		}
+		KafkaBatchShipper<byte[]> binary = binaryShipper;
+		if (binary != null) {
+			binary.shutdown();
+			complete &= binary.awaitTermination(Math.max(1L, deadline - System.currentTimeMillis()));
+		}
+		return complete;
+	}
+
+	/**
+	 * Method to publish the number of events suppressed at a call site
+	 * 
+	 * @param level      Level of the call site
+	 * @param className  Class name of the call site
+	 * @param methodName Method name of the call site
+	 * @param message    Message template of the call site
+	 * @param suppressed Number of suppressed events
+	 */
+	private static void reportSuppressed(LogLevel level, String className, String methodName, String message,
+			long suppressed) {
+		enqueue(level, className, methodName, SUPPRESSED_MESSAGE, new Object[] { suppressed, message });
+	}
+
+	/**
+	 * Method to get the number of log events discarded by the overflow policy
+	 * 
+	 * @return Dropped event count of the active pipeline
+	 */
+	public static long getDroppedCount() {
+		return pipeline.getDroppedCount();
+	}
+
+	/**
+	 * Method to get the number of log events discarded by adaptive sampling
+	 * 
+	 * @return Sampled out event count, {@code 0} when sampling is disabled
+	 */
+	public static long getSampledOutCount() {
+		LogRateLimiter current = limiter;
+		return current == null ? 0L : current.getSampledOutCount();
+	}
 
 	/**
 	 * Method to log informational messages asynchronously
@@ -72,13 +345,25 @@ public class Log {
 	 * @param className  Class name for logging
 	 * @param methodName Method name for logging
 	 * @param message    Log message
-	 * @param arguments  Arguments passed
+	 * @param arguments  Arguments passed, {@link Supplier} arguments are
+	 *                   resolved on the consumer thread
 	 */
 	public static void info(String className, String methodName, String message, Object... arguments) {
-		long id = Thread.currentThread().getId();
-		executor.submit(() -> {
-			logger.info(formatLogMessage(service, className, methodName, id, "info", message, arguments));
-		});
+		if (isEnabled(LogLevel.INFO))
+			publish(LogLevel.INFO, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to log informational messages asynchronously, the message is
+	 * rendered on the consumer thread and only if the level is enabled
+	 * 
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Supplier of the log message
+	 */
+	public static void info(String className, String methodName, Supplier<String> message) {
+		if (isEnabled(LogLevel.INFO))
+			publish(LogLevel.INFO, className, methodName, "%s", new Object[] { message });
 	}
 
 	/**
@@ -87,13 +372,25 @@ public class Log {
 	 * @param className  Class name for logging
 	 * @param methodName Method name for logging
 	 * @param message    Log message
-	 * @param arguments  Arguments passed
+	 * @param arguments  Arguments passed, {@link Supplier} arguments are
+	 *                   resolved on the consumer thread
 	 */
 	public static void debug(String className, String methodName, String message, Object... arguments) {
-		long id = Thread.currentThread().getId();
-		executor.submit(() -> {
-			logger.debug(formatLogMessage(service, className, methodName, id, "debug", message, arguments));
-		});
+		if (isEnabled(LogLevel.DEBUG))
+			publish(LogLevel.DEBUG, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to log debugger messages asynchronously, the message is
+	 * rendered on the consumer thread and only if the level is enabled
+	 * 
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Supplier of the log message
+	 */
+	public static void debug(String className, String methodName, Supplier<String> message) {
+		if (isEnabled(LogLevel.DEBUG))
+			publish(LogLevel.DEBUG, className, methodName, "%s", new Object[] { message });
 	}
 
 	/**
@@ -102,13 +399,25 @@ public class Log {
 	 * @param className  Class name for logging
 	 * @param methodName Method name for logging
 	 * @param message    Log message
-	 * @param arguments  Arguments passed
+	 * @param arguments  Arguments passed, {@link Supplier} arguments are
+	 *                   resolved on the consumer thread
 	 */
 	public static void error(String className, String methodName, String message, Object... arguments) {
-		long id = Thread.currentThread().getId();
-		executor.submit(() -> {
-			logger.error(formatLogMessage(service, className, methodName, id, "error", message, arguments));
-		});
+		if (isEnabled(LogLevel.ERROR))
+			publish(LogLevel.ERROR, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to log error messages asynchronously, the message is
+	 * rendered on the consumer thread and only if the level is enabled
+	 * 
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Supplier of the log message
+	 */
+	public static void error(String className, String methodName, Supplier<String> message) {
+		if (isEnabled(LogLevel.ERROR))
+			publish(LogLevel.ERROR, className, methodName, "%s", new Object[] { message });
 	}
 
 	/**
@@ -117,13 +426,25 @@ public class Log {
 	 * @param className  Class name for logging
 	 * @param methodName Method name for logging
 	 * @param message    Log message
-	 * @param arguments  Arguments passed
+	 * @param arguments  Arguments passed, {@link Supplier} arguments are
+	 *                   resolved on the consumer thread
 	 */
 	public static void warn(String className, String methodName, String message, Object... arguments) {
-		long id = Thread.currentThread().getId();
-		executor.submit(() -> {
-			logger.warn(formatLogMessage(service, className, methodName, id, "warn", message, arguments));
-		});
+		if (isEnabled(LogLevel.WARN))
+			publish(LogLevel.WARN, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to log warning messages asynchronously, the message is
+	 * rendered on the consumer thread and only if the level is enabled
+	 * 
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Supplier of the log message
+	 */
+	public static void warn(String className, String methodName, Supplier<String> message) {
+		if (isEnabled(LogLevel.WARN))
+			publish(LogLevel.WARN, className, methodName, "%s", new Object[] { message });
 	}
 
 	/**
@@ -132,17 +453,130 @@ public class Log {
 	 * @param className  Class name for logging
 	 * @param methodName Method name for logging
 	 * @param message    Log message
-	 * @param arguments  Arguments passed
+	 * @param arguments  Arguments passed, {@link Supplier} arguments are
+	 *                   resolved on the consumer thread
 	 */
 	public static void trace(String className, String methodName, String message, Object... arguments) {
-		long id = Thread.currentThread().getId();
-		executor.submit(() -> {
-			logger.trace(formatLogMessage(service, className, methodName, id, "trace", message, arguments));
-		});
+		if (isEnabled(LogLevel.TRACE))
+			publish(LogLevel.TRACE, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to log trace messages asynchronously, the message is
+	 * rendered on the consumer thread and only if the level is enabled
+	 * 
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Supplier of the log message
+	 */
+	public static void trace(String className, String methodName, Supplier<String> message) {
+		if (isEnabled(LogLevel.TRACE))
+			publish(LogLevel.TRACE, className, methodName, "%s", new Object[] { message });
+	}
+
+	/**
+	 * Method to hand an enabled event to the pipeline, unless the rate limiter
+	 * suppresses or samples it out
+	 * 
+	 * @param level      Log level
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Log message
+	 * @param arguments  Arguments passed
+	 */
+	private static void publish(LogLevel level, String className, String methodName, String message,
+			Object[] arguments) {
+		LogRateLimiter current = limiter;
+		if (current != null) {
+			long suppressed = current.admit(level, className, methodName, message);
+			if (suppressed == LogRateLimiter.REJECTED)
+				return;
+			if (suppressed > 0)
+				reportSuppressed(level, className, methodName, message, suppressed);
+		}
+		enqueue(level, className, methodName, message, arguments);
+	}
+
+	/**
+	 * Method to put an event into the current pipeline, again into the new one
+	 * when {@link #configurePipeline} replaced it while the event was published
+	 * 
+	 * @param level      Log level
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Log message
+	 * @param arguments  Arguments passed
+	 */
+	private static void enqueue(LogLevel level, String className, String methodName, String message,
+			Object[] arguments) {
+		long threadId = Thread.currentThread().getId();
+		LogPipeline current = pipeline;
+		if (!current.publish(level, className, methodName, threadId, message, arguments) && current != pipeline)
+			pipeline.publish(level, className, methodName, threadId, message, arguments);
+	}
+
+	/**
+	 * Method invoked on a lane's consumer thread to format an event
+	 * 
+	 * @param event Event read from the lane
+	 * @return Formatted log message, {@code null} if its level was disabled since
+	 *         it was published
+	 */
+	private static String format(LogEvent event) {
+		// the level may have been disabled since the event was published: skip it
+		// before its suppliers are called
+		if (!isEnabled(event.getLevel()))
+			return null;
+		KafkaBatchShipper<byte[]> binary = binaryShipper;
+		if (binary == null)
+			return formatLogMessage(service, event.getClassName(), event.getMethodName(), event.getThreadId(),
+					event.getLevel().getLabel(), event.getMessage(), event.getArguments());
+		// binary records are queued here, in the order of the logging thread
+		BinaryRecordWriter writer = BinaryRecords.localWriter();
+		String formatted = LogEncoder.encode(service, event.getClassName(), event.getMethodName(),
+				event.getThreadId(), event.getLevel().getLabel(), event.getMessage(), event.getArguments(), writer);
+		binary.offer(Long.toString(event.getThreadId()), writer.toByteArray());
+		return formatted;
+	}
+
+	/**
+	 * Method to write a formatted event to the logger and, when enabled, queue it
+	 * for the Kafka shipping stage. Invoked by the lane which formatted the event
+	 * or by the merge stage when global ordering is enabled. The id of the logging
+	 * thread is the source passed to the partition key strategy of the shipping
+	 * stage.
+	 * 
+	 * @param level      Log level
+	 * @param threadId   Id of the thread which logged the event
+	 * @param logMessage Formatted log message, {@code null} to skip the event
+	 */
+	private static void emit(LogLevel level, long threadId, String logMessage) {
+		if (logMessage == null)
+			return;
+		if (enable && shipper != null)
+			shipper.offer(Long.toString(threadId), logMessage);
+		long started = System.nanoTime();
+		switch (level) {
+		case TRACE:
+			logger.trace(logMessage);
+			break;
+		case DEBUG:
+			logger.debug(logMessage);
+			break;
+		case INFO:
+			logger.info(logMessage);
+			break;
+		case WARN:
+			logger.warn(logMessage);
+			break;
+		default:
+			logger.error(logMessage);
+		}
+		PipelineMetrics.LOG_WRITE.recordSince(started);
 	}
 
 	/**
-	 * Formats the log message.
+	 * Formats the log message as a compact JSON line using {@link LogEncoder}.
 	 * 
 	 * @param serviceName Service name
 	 * @param className   Class name for logging
@@ -155,17 +589,6 @@ public class Log {
 	 */
 	private static String formatLogMessage(String serviceName, String className, String methodName, long threadId,
 			String logLevel, String message, Object... arguments) {
-		String logMessage = gson.toJson(LogDto.getInstance(serviceName, className, methodName, threadId, logLevel,
-				String.format(message, Arrays.stream(arguments).map(arg -> {
-					if (arg instanceof Object[])
-						return String.join(", ", (CharSequence) Arrays.asList((Object[]) arg));
-					if (arg == null)
-						return "";
-					return arg;
-				}).toArray())));
-
-		if (enable)
-			KafkaUtility.postToKafka(producer, logMessage, topic);
-		return logMessage;
+		return LogEncoder.encode(serviceName, className, methodName, threadId, logLevel, message, arguments);
 	}
 }
@@ -1,6 +1,8 @@
 package com.utilities.log;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 import lombok.Getter;
@@ -8,6 +10,8 @@ import lombok.Getter;
 @Getter
 public class LogDto {
 
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MMM-dd hh:mm:ss.SSS");
+
 	private LogDto(String service, String clazz, String method, long threadId, String logLevel, String time,
 			String message) {
 		this.service = service;
@@ -30,6 +34,13 @@ public class LogDto {
 	public static LogDto getInstance(String service, String clazz, String method, long threadId, String logLevel,
 			String message) {
 		return new LogDto(service, clazz, method, threadId, logLevel,
-				LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MMM-dd hh:mm:ss.SSS")), message);
+				LocalDateTime.now().format(TIME_FORMATTER), message);
+	}
+
+	public static LogDto getInstance(String service, String clazz, String method, long threadId, String logLevel,
+			long timeMillis, String message) {
+		return new LogDto(service, clazz, method, threadId, logLevel,
+				LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault()).format(TIME_FORMATTER),
+				message);
 	}
 }
@@ -0,0 +1,393 @@
+package com.utilities.log;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.IllegalFormatException;
+import java.util.function.Supplier;
+
+import com.utilities.codec.BinaryRecordWriter;
+import com.utilities.codec.BinaryRecords;
+
+/**
+ * Garbage-free encoder writing log events as compact, single-line JSON with
+ * the same fields as {@link LogDto} ({@code service}, {@code clazz},
+ * {@code method}, {@code threadId}, {@code logLevel}, {@code time},
+ * {@code message}).
+ *
+ * <p>
+ * Each thread reuses its own {@link StringBuilder}, the timestamp prefix is
+ * formatted once per second and only the milliseconds are appended per event,
+ * and {@code %s}, {@code %d}, {@code %n} and {@code %%} placeholders are
+ * substituted directly without going through {@link String#format}. Messages
+ * using any other conversion fall back to {@link String#format}. Arguments
+ * passed as {@link Supplier} are resolved here, on the consumer thread, once
+ * per event.
+ * </p>
+ *
+ * <p>
+ * Formatting errors never lose the event: a {@code %d} given anything but an
+ * integer is written as {@code [not an integer: value]}, and a message
+ * {@link String#format} rejects is written as its template followed by the
+ * arguments and the reason.
+ * </p>
+ *
+ * <p>
+ * When a {@link BinaryRecordWriter} is given, the same event is also written
+ * as a binary log record of {@link BinaryRecords}, substituting the message
+ * only once for both encodings.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LogEncoder {
+
+	/**
+	 * Pattern of the {@code time} field up to the seconds, the milliseconds are
+	 * appended separately
+	 */
+	private static final DateTimeFormatter SECOND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MMM-dd hh:mm:ss");
+
+	/**
+	 * Builders grown beyond this size are discarded instead of being reused
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+	/**
+	 * Builder of the unescaped message when encoding a binary record as well
+	 */
+	private static final ThreadLocal<StringBuilder> RAW_BUILDER = ThreadLocal
+			.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * Timestamp prefix of the last formatted second
+	 */
+	private static volatile CachedSecond cachedSecond = new CachedSecond(Long.MIN_VALUE, "");
+
+	/**
+	 * Private constructor to override the default constructor for this utility
+	 * class which contains static utility methods
+	 */
+	private LogEncoder() {
+	}
+
+	/**
+	 * Method to encode a log event as a JSON line
+	 *
+	 * @param service    Service name
+	 * @param clazz      Class name for logging
+	 * @param method     Method name for logging
+	 * @param threadId   Thread id
+	 * @param logLevel   Log level label
+	 * @param message    Log message, possibly containing placeholders
+	 * @param arguments  Arguments substituted into the placeholders
+	 * @return Encoded JSON line
+	 */
+	static String encode(String service, String clazz, String method, long threadId, String logLevel,
+			String message, Object[] arguments) {
+		return encode(service, clazz, method, threadId, logLevel, message, arguments, null);
+	}
+
+	/**
+	 * Method to encode a log event as a JSON line and, optionally, as a binary
+	 * record
+	 *
+	 * @param service    Service name
+	 * @param clazz      Class name for logging
+	 * @param method     Method name for logging
+	 * @param threadId   Thread id
+	 * @param logLevel   Log level label
+	 * @param message    Log message, possibly containing placeholders
+	 * @param arguments  Arguments substituted into the placeholders
+	 * @param binary     Reset writer receiving the binary record, or {@code null}
+	 * @return Encoded JSON line
+	 */
+	static String encode(String service, String clazz, String method, long threadId, String logLevel,
+			String message, Object[] arguments, BinaryRecordWriter binary) {
+		long millis = System.currentTimeMillis();
+		StringBuilder raw = null;
+		if (binary != null) {
+			if (message != null) {
+				raw = RAW_BUILDER.get();
+				raw.setLength(0);
+				appendMessage(raw, message, arguments, false);
+			}
+			BinaryRecords.writeLog(binary, service, clazz, method, threadId, logLevel, millis, raw);
+		}
+		StringBuilder sb = BUILDER.get();
+		sb.setLength(0);
+		sb.append("{\"service\":");
+		appendString(sb, service);
+		sb.append(",\"clazz\":");
+		appendString(sb, clazz);
+		sb.append(",\"method\":");
+		appendString(sb, method);
+		sb.append(",\"threadId\":").append(threadId);
+		sb.append(",\"logLevel\":");
+		appendString(sb, logLevel);
+		sb.append(",\"time\":\"");
+		appendTime(sb, millis);
+		sb.append("\",\"message\":");
+		if (message == null) {
+			sb.append("null");
+		} else {
+			sb.append('"');
+			if (raw != null)
+				appendEscaped(sb, raw);
+			else
+				appendMessage(sb, message, arguments, true);
+			sb.append('"');
+		}
+		sb.append('}');
+
+		String encoded = sb.toString();
+		if (sb.capacity() > MAX_RETAINED_CAPACITY)
+			BUILDER.remove();
+		if (raw != null && raw.capacity() > MAX_RETAINED_CAPACITY)
+			RAW_BUILDER.remove();
+		return encoded;
+	}
+
+	/**
+	 * Method to append a JSON string literal, or {@code null}
+	 *
+	 * @param sb    Target builder
+	 * @param value Value to append
+	 */
+	private static void appendString(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		appendEscaped(sb, value);
+		sb.append('"');
+	}
+
+	/**
+	 * Method to append the time stamp using the cached second prefix
+	 *
+	 * @param sb     Target builder
+	 * @param millis Epoch time in milliseconds
+	 */
+	private static void appendTime(StringBuilder sb, long millis) {
+		long second = Math.floorDiv(millis, 1000L);
+		CachedSecond cached = cachedSecond;
+		if (cached.second != second) {
+			cached = new CachedSecond(second, LocalDateTime
+					.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault()).format(SECOND_FORMATTER));
+			cachedSecond = cached;
+		}
+		int ms = (int) Math.floorMod(millis, 1000L);
+		sb.append(cached.prefix).append('.');
+		if (ms < 100)
+			sb.append('0');
+		if (ms < 10)
+			sb.append('0');
+		sb.append(ms);
+	}
+
+	/**
+	 * Method to substitute the arguments into the message
+	 *
+	 * @param sb        Target builder
+	 * @param message   Log message
+	 * @param arguments Arguments passed
+	 * @param escape    Whether the message is escaped for a JSON string
+	 */
+	private static void appendMessage(StringBuilder sb, String message, Object[] arguments, boolean escape) {
+		arguments = resolve(arguments);
+		int start = sb.length();
+		int argIndex = 0;
+		int length = message.length();
+		for (int i = 0; i < length; i++) {
+			char c = message.charAt(i);
+			if (c != '%') {
+				append(sb, c, escape);
+				continue;
+			}
+			char conversion = i + 1 < length ? message.charAt(i + 1) : 0;
+			switch (conversion) {
+			case 's':
+			case 'd':
+				if (arguments == null || argIndex >= arguments.length) {
+					fallback(sb, start, message, arguments, escape);
+					return;
+				}
+				Object arg = arguments[argIndex++];
+				if (conversion == 'd' && arg != null && !isInteger(arg))
+					append(sb, "[not an integer: " + render(arg) + "]", escape);
+				else
+					append(sb, render(arg), escape);
+				i++;
+				break;
+			case 'n':
+				append(sb, System.lineSeparator(), escape);
+				i++;
+				break;
+			case '%':
+				sb.append('%');
+				i++;
+				break;
+			default:
+				fallback(sb, start, message, arguments, escape);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Method to resolve the {@link Supplier} arguments of an event, so that each
+	 * is called once even when the message is substituted twice
+	 *
+	 * @param arguments Arguments passed
+	 * @return The same array if it holds no supplier, otherwise a resolved copy
+	 */
+	private static Object[] resolve(Object[] arguments) {
+		if (arguments == null)
+			return null;
+		Object[] resolved = arguments;
+		for (int i = 0; i < arguments.length; i++) {
+			if (arguments[i] instanceof Supplier) {
+				if (resolved == arguments)
+					resolved = arguments.clone();
+				resolved[i] = ((Supplier<?>) arguments[i]).get();
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Method to check whether an argument is accepted by a {@code %d} conversion
+	 *
+	 * @param arg Resolved argument
+	 * @return {@code true} for the integral types of {@link String#format}
+	 */
+	private static boolean isInteger(Object arg) {
+		return arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte
+				|| arg instanceof BigInteger;
+	}
+
+	/**
+	 * Method to format the message with {@link String#format} when it uses
+	 * conversions not handled by the fast path, or to write the template with
+	 * its arguments when the conversions do not match them
+	 *
+	 * @param sb        Target builder
+	 * @param start     Position at which the message starts in the builder
+	 * @param message   Log message
+	 * @param arguments Resolved arguments
+	 * @param escape    Whether the message is escaped for a JSON string
+	 */
+	private static void fallback(StringBuilder sb, int start, String message, Object[] arguments,
+			boolean escape) {
+		sb.setLength(start);
+		Object[] rendered = arguments == null ? new Object[0] : new Object[arguments.length];
+		for (int i = 0; i < rendered.length; i++)
+			rendered[i] = arguments[i] == null ? "" : arguments[i] instanceof Object[] ? render(arguments[i])
+					: arguments[i];
+		String formatted;
+		try {
+			formatted = String.format(message, rendered);
+		} catch (IllegalFormatException e) {
+			formatted = message + " " + render(rendered) + " [invalid format: " + e + "]";
+		}
+		append(sb, formatted, escape);
+	}
+
+	/**
+	 * Method to render an argument the same way the previous formatter did:
+	 * {@code null} as an empty string and arrays as comma separated values
+	 *
+	 * @param arg Resolved argument to render
+	 * @return Rendered argument
+	 */
+	private static String render(Object arg) {
+		if (arg == null)
+			return "";
+		if (arg instanceof Object[]) {
+			Object[] values = (Object[]) arg;
+			StringBuilder joined = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					joined.append(", ");
+				joined.append(values[i]);
+			}
+			return joined.toString();
+		}
+		return String.valueOf(arg);
+	}
+
+	private static void append(StringBuilder sb, String value, boolean escape) {
+		if (escape)
+			appendEscaped(sb, value);
+		else
+			sb.append(value);
+	}
+
+	private static void append(StringBuilder sb, char c, boolean escape) {
+		if (escape)
+			appendEscaped(sb, c);
+		else
+			sb.append(c);
+	}
+
+	private static void appendEscaped(StringBuilder sb, CharSequence value) {
+		for (int i = 0, n = value.length(); i < n; i++)
+			appendEscaped(sb, value.charAt(i));
+	}
+
+	private static void appendEscaped(StringBuilder sb, char c) {
+		switch (c) {
+		case '"':
+			sb.append("\\\"");
+			break;
+		case '\\':
+			sb.append("\\\\");
+			break;
+		case '\n':
+			sb.append("\\n");
+			break;
+		case '\r':
+			sb.append("\\r");
+			break;
+		case '\t':
+			sb.append("\\t");
+			break;
+		case '\b':
+			sb.append("\\b");
+			break;
+		case '\f':
+			sb.append("\\f");
+			break;
+		default:
+			if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+				sb.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF]).append(HEX[(c >> 4) & 0xF])
+						.append(HEX[c & 0xF]);
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Formatted time stamp prefix for a given epoch second
+	 */
+	private static final class CachedSecond {
+
+		private final long second;
+
+		private final String prefix;
+
+		private CachedSecond(long second, String prefix) {
+			this.second = second;
+			this.prefix = prefix;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.utilities.log;
+
+import lombok.Getter;
+
+/**
+ * Mutable log event held in a preallocated slot of {@link LogRingBuffer}.
+ * Producers fill the slot in place and the consumer clears it after use, so no
+ * event object is allocated per log call.
+ * 
+ * @author Kabir Akware
+ */
+@Getter
+final class LogEvent {
+
+	private LogLevel level;
+	private String className;
+	private String methodName;
+	private long threadId;
+	private String message;
+	private Object[] arguments;
+
+	/**
+	 * Position of the event in the global order, {@code -1} when the pipeline
+	 * does not merge its lanes
+	 */
+	private long sequence = -1L;
+
+	/**
+	 * {@link System#nanoTime()} at which the event was published
+	 */
+	private long publishNanos;
+
+	/**
+	 * Method to populate the slot with a new event
+	 * 
+	 * @param level      Log level
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param threadId   Id of the thread which produced the event
+	 * @param message    Log message
+	 * @param arguments  Arguments passed
+	 */
+	void set(LogLevel level, String className, String methodName, long threadId, String message,
+			Object[] arguments) {
+		this.publishNanos = level == null ? 0L : System.nanoTime();
+		this.level = level;
+		this.className = className;
+		this.methodName = methodName;
+		this.threadId = threadId;
+		this.message = message;
+		this.arguments = arguments;
+	}
+
+	/**
+	 * Method to assign the position of the event in the global order
+	 * 
+	 * @param sequence Global sequence number
+	 */
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Method to release the references held by the slot so that they can be
+	 * garbage collected while the slot waits to be reused
+	 */
+	void clear() {
+		set(null, null, null, 0L, null, null);
+		sequence = -1L;
+	}
+}
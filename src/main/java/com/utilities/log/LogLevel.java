@@ -0,0 +1,53 @@
+package com.utilities.log;
+
+import java.util.Locale;
+
+import com.utilities.exceptions.ConfigException;
+
+import lombok.Getter;
+
+/**
+ * Log levels supported by {@link Log}, ordered from the least to the most
+ * severe so that levels can be compared using {@link #ordinal()}.
+ * 
+ * @author Kabir Akware
+ */
+@Getter
+public enum LogLevel {
+
+	TRACE("trace"), DEBUG("debug"), INFO("info"), WARN("warn"), ERROR("error");
+
+	/**
+	 * Lower case label written in the {@code logLevel} field of {@link LogDto}
+	 */
+	private final String label;
+
+	private LogLevel(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Method to check whether this level is less severe than the given level
+	 * 
+	 * @param level Level to compare against
+	 * @return {@code true} if this level is less severe than {@code level}
+	 */
+	public boolean isBelow(LogLevel level) {
+		return ordinal() < level.ordinal();
+	}
+
+	/**
+	 * Method to resolve a {@link LogLevel} from its configured name
+	 * 
+	 * @param name Level name, case insensitive
+	 * @return Matching {@link LogLevel}
+	 * @throws ConfigException Thrown when the name does not match any level
+	 */
+	public static LogLevel from(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw ConfigException.getInstance("invalid log level: " + name);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.utilities.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional merge stage of {@link LogPipeline} which restores the global order
+ * of events formatted in parallel by several lanes before handing them to
+ * sinks that need it.
+ *
+ * <p>
+ * Lanes deposit formatted events into a reorder window indexed by their global
+ * sequence, and a single thread emits them in sequence order. A lane whose
+ * event is further ahead than the window waits until the emitter catches up.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LogMerger {
+
+	private static final long PARK_NANOS = 1_000L;
+
+	private static final long IDLE_PARK_NANOS = 100_000L;
+
+	private static final long MAX_IDLE_PARK_NANOS = 5_000_000L;
+
+	private final LogLevel[] levels;
+
+	private final long[] threadIds;
+
+	private final String[] messages;
+
+	/**
+	 * Sequence last deposited into each slot, {@code -1} while never used
+	 */
+	private final AtomicLongArray ready;
+
+	private final int mask;
+
+	private final int window;
+
+	/**
+	 * Highest sequence emitted to the sink
+	 */
+	private final AtomicLong emitted = new AtomicLong(-1L);
+
+	private final LogSink sink;
+
+	private final Thread emitterThread;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to allocate the reorder window and start the emitter
+	 *
+	 * @param window     Size of the reorder window, rounded up to a power of two
+	 * @param sink       Sink receiving the events in global order
+	 * @param threadName Name of the emitter thread
+	 */
+	private LogMerger(int window, LogSink sink, String threadName) {
+		this.window = Integer.highestOneBit(Math.max(2, window - 1)) << 1;
+		this.mask = this.window - 1;
+		this.levels = new LogLevel[this.window];
+		this.threadIds = new long[this.window];
+		this.messages = new String[this.window];
+		this.ready = new AtomicLongArray(this.window);
+		for (int i = 0; i < this.window; i++)
+			ready.set(i, -1L);
+		this.sink = sink;
+		this.emitterThread = new Thread(this::emit, threadName);
+		this.emitterThread.setDaemon(true);
+		this.emitterThread.start();
+	}
+
+	/**
+	 * Method to get a new started instance of {@link LogMerger}
+	 *
+	 * @param window     Size of the reorder window, rounded up to a power of two
+	 * @param sink       Sink receiving the events in global order
+	 * @param threadName Name of the emitter thread
+	 * @return New instance of {@link LogMerger}
+	 */
+	static LogMerger getInstance(int window, LogSink sink, String threadName) {
+		return new LogMerger(window, sink, threadName);
+	}
+
+	/**
+	 * Method to deposit a formatted event. Every sequence stamped by the
+	 * pipeline must be offered exactly once, with a {@code null} message when the
+	 * event could not be formatted, otherwise the emitter stalls.
+	 *
+	 * @param sequence Global sequence of the event
+	 * @param level    Log level
+	 * @param threadId Id of the thread which produced the event
+	 * @param message  Formatted event or {@code null} to skip it
+	 */
+	void offer(long sequence, LogLevel level, long threadId, String message) {
+		while (sequence - emitted.get() > window)
+			LockSupport.parkNanos(PARK_NANOS);
+		int index = (int) (sequence & mask);
+		levels[index] = level;
+		threadIds[index] = threadId;
+		messages[index] = message;
+		ready.lazySet(index, sequence);
+	}
+
+	/**
+	 * Emitter loop writing the deposited events in sequence order
+	 */
+	private void emit() {
+		long next = emitted.get() + 1;
+		long park = IDLE_PARK_NANOS;
+		while (true) {
+			int index = (int) (next & mask);
+			if (ready.get(index) == next) {
+				String message = messages[index];
+				LogLevel level = levels[index];
+				messages[index] = null;
+				try {
+					if (message != null)
+						sink.accept(level, threadIds[index], message);
+				} catch (RuntimeException e) {
+					// a failing sink must not stall the events queued behind it
+				} finally {
+					emitted.lazySet(next);
+				}
+				next++;
+				park = IDLE_PARK_NANOS;
+			} else if (!running) {
+				// checked again after reading the flag, an event deposited just before the
+				// shutdown may have been missed above, and the loop drains it and the
+				// following ones before returning
+				if (ready.get(index) != next)
+					return;
+			} else {
+				LockSupport.parkNanos(park);
+				park = Math.min(park << 1, MAX_IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Method to stop the emitter once the lanes feeding it have terminated
+	 */
+	void shutdown() {
+		running = false;
+	}
+
+	/**
+	 * Method to wait for the emitter to exit after {@link #shutdown()}
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if the emitter finished within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	boolean awaitTermination(long millis) throws InterruptedException {
+		emitterThread.join(Math.max(1L, millis));
+		return !emitterThread.isAlive();
+	}
+}
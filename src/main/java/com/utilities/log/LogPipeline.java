@@ -0,0 +1,213 @@
+package com.utilities.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.utilities.metrics.PipelineMetrics;
+
+/**
+ * Lane-sharded consumer stage of {@link Log}.
+ *
+ * <p>
+ * Events are routed to one of {@code N} {@link LogRingBuffer} lanes by the id
+ * of the thread which produced them, and every lane formats and writes its
+ * events on its own consumer thread. Events of one thread therefore always go
+ * through the same lane and keep their order, while the formatting cost is
+ * spread over as many cores as there are lanes.
+ * </p>
+ *
+ * <p>
+ * When global ordering is enabled every event is stamped with a global
+ * sequence and the formatted events are passed through a {@link LogMerger},
+ * which writes them to the sink in that order on a single thread. Formatting
+ * still runs in parallel.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LogPipeline {
+
+	/**
+	 * Minimum number of slots allocated to every lane
+	 */
+	private static final int MIN_LANE_CAPACITY = 64;
+
+	private final LogRingBuffer[] lanes;
+
+	private final LogMerger merger;
+
+	private final Function<LogEvent, String> formatter;
+
+	private final LogSink sink;
+
+	/**
+	 * Private constructor to create and start the lanes
+	 *
+	 * @param laneCount   Number of lanes
+	 * @param capacity    Total number of slots, shared evenly by the lanes
+	 * @param policy      Policy applied when a lane is full
+	 * @param dropBelow   Threshold used by
+	 *                    {@link OverflowPolicy#DROP_BELOW_LEVEL}
+	 * @param sampleRate  One in how many events is kept by
+	 *                    {@link OverflowPolicy#SAMPLE}
+	 * @param globalOrder Whether the sink needs the events in global order
+	 * @param formatter   Function formatting an event on its lane
+	 * @param sink        Sink writing the formatted events
+	 */
+	private LogPipeline(int laneCount, int capacity, OverflowPolicy policy, LogLevel dropBelow, int sampleRate,
+			boolean globalOrder, Function<LogEvent, String> formatter, LogSink sink) {
+		this.formatter = formatter;
+		this.sink = sink;
+		int count = Math.max(1, laneCount);
+		int laneCapacity = Math.max(MIN_LANE_CAPACITY, capacity / count);
+		AtomicLong orderSequence = globalOrder ? new AtomicLong() : null;
+		this.merger = globalOrder ? LogMerger.getInstance(capacity, sink, "log-merger") : null;
+		this.lanes = new LogRingBuffer[count];
+		for (int i = 0; i < count; i++)
+			lanes[i] = LogRingBuffer.getInstance(laneCapacity, policy, dropBelow, sampleRate, this::handle,
+					orderSequence, "log-lane-" + i);
+	}
+
+	/**
+	 * Method to get a new started instance of {@link LogPipeline}
+	 *
+	 * @param laneCount   Number of lanes
+	 * @param capacity    Total number of slots, shared evenly by the lanes
+	 * @param policy      Policy applied when a lane is full
+	 * @param dropBelow   Threshold used by
+	 *                    {@link OverflowPolicy#DROP_BELOW_LEVEL}
+	 * @param sampleRate  One in how many events is kept by
+	 *                    {@link OverflowPolicy#SAMPLE}
+	 * @param globalOrder Whether the sink needs the events in global order
+	 * @param formatter   Function formatting an event on its lane
+	 * @param sink        Sink writing the formatted events
+	 * @return New instance of {@link LogPipeline}
+	 */
+	static LogPipeline getInstance(int laneCount, int capacity, OverflowPolicy policy, LogLevel dropBelow,
+			int sampleRate, boolean globalOrder, Function<LogEvent, String> formatter,
+			LogSink sink) {
+		return new LogPipeline(laneCount, capacity, policy, dropBelow, sampleRate, globalOrder, formatter, sink);
+	}
+
+	/**
+	 * Method to publish an event to the lane owning the producing thread
+	 *
+	 * @param level       Log level
+	 * @param className   Class name for logging
+	 * @param methodName Method name for logging
+	 * @param threadId    Id of the thread which produced the event
+	 * @param message     Log message
+	 * @param arguments   Arguments passed
+	 * @return {@code true} if the event was accepted, {@code false} if it was
+	 *         dropped by the overflow policy
+	 */
+	boolean publish(LogLevel level, String className, String methodName, long threadId, String message,
+			Object[] arguments) {
+		return lanes[(int) Math.floorMod(threadId, (long) lanes.length)].publish(level, className, methodName,
+				threadId, message, arguments);
+	}
+
+	/**
+	 * Method invoked on a lane's consumer thread for each event
+	 *
+	 * @param event Event read from the lane
+	 */
+	private void handle(LogEvent event) {
+		long started = System.nanoTime();
+		if (merger == null || event.getSequence() < 0) {
+			String formatted = formatter.apply(event);
+			PipelineMetrics.LOG_FORMAT.recordSince(started);
+			sink.accept(event.getLevel(), event.getThreadId(), formatted);
+			PipelineMetrics.LOG_QUEUE_LATENCY.recordSince(event.getPublishNanos());
+			return;
+		}
+		String formatted = null;
+		try {
+			formatted = formatter.apply(event);
+			PipelineMetrics.LOG_FORMAT.recordSince(started);
+		} finally {
+			merger.offer(event.getSequence(), event.getLevel(), event.getThreadId(), formatted);
+			PipelineMetrics.LOG_QUEUE_LATENCY.recordSince(event.getPublishNanos());
+		}
+	}
+
+	/**
+	 * Method to stop the lanes once their queued events are written
+	 */
+	void shutdown() {
+		for (LogRingBuffer lane : lanes)
+			lane.shutdown();
+		if (merger != null) {
+			Thread stopper = new Thread(() -> {
+				try {
+					while (!awaitLanes(1_000L))
+						Thread.onSpinWait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				merger.shutdown();
+			}, "log-merger-stopper");
+			stopper.setDaemon(true);
+			stopper.start();
+		}
+	}
+
+	/**
+	 * Method to wait for the pipeline to drain after {@link #shutdown()}
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if every lane, and the merge stage if any, finished
+	 *         within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	boolean awaitTermination(long millis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		if (!awaitLanes(millis))
+			return false;
+		return merger == null || merger.awaitTermination(deadline - System.currentTimeMillis());
+	}
+
+	private boolean awaitLanes(long millis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		for (LogRingBuffer lane : lanes)
+			if (!lane.awaitTermination(deadline - System.currentTimeMillis()))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Method to get the number of events waiting in all lanes
+	 *
+	 * @return Current backlog
+	 */
+	long getBacklog() {
+		long backlog = 0;
+		for (LogRingBuffer lane : lanes)
+			backlog += lane.getBacklog();
+		return backlog;
+	}
+
+	/**
+	 * Method to get the total number of slots of all lanes
+	 *
+	 * @return Capacity of the pipeline
+	 */
+	long getCapacity() {
+		long capacity = 0;
+		for (LogRingBuffer lane : lanes)
+			capacity += lane.getCapacity();
+		return capacity;
+	}
+
+	/**
+	 * Method to get the number of events dropped by the overflow policy
+	 *
+	 * @return Dropped event count of all lanes
+	 */
+	long getDroppedCount() {
+		long dropped = 0;
+		for (LogRingBuffer lane : lanes)
+			dropped += lane.getDroppedCount();
+		return dropped;
+	}
+}
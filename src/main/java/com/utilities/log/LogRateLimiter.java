@@ -0,0 +1,312 @@
+package com.utilities.log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Producer side filter of {@link Log} limiting how often a single call site can
+ * log, and sampling low severity events while the pipeline is backed up.
+ *
+ * <p>
+ * A call site is identified by its class name, method name and message
+ * template. Each site has a token bucket, implemented as a single
+ * compare-and-set on its theoretical arrival time (GCRA), allowing
+ * {@code eventsPerSecond} events with bursts of {@code burst}. Events over the
+ * limit are suppressed and counted, and the count is reported with the next
+ * admitted event of the site, or by {@link #drainSuppressed}, as a
+ * "repeated N times" event.
+ * </p>
+ *
+ * <p>
+ * Looking a site up allocates nothing once the site is known, the key being
+ * probed through a per-thread instance. At most {@value #MAX_SITES} sites are
+ * tracked, and sites idle for {@value #SITE_IDLE_SECONDS} seconds are evicted
+ * by {@link #drainSuppressed} once their suppressions are reported, so that
+ * call sites logging distinct templates do not grow the map forever.
+ * </p>
+ *
+ * <p>
+ * Independently, {@link #updatePressure(double)} is fed with the fill ratio of
+ * the pipeline. Once it crosses {@code samplingStart}, events below
+ * {@link LogLevel#WARN} are sampled with a rate growing linearly up to one in
+ * {@code maxSampleRate} when the pipeline is full.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LogRateLimiter {
+
+	/**
+	 * Returned by {@link #admit} for events which must not be published
+	 */
+	static final long REJECTED = -1L;
+
+	/**
+	 * Maximum number of call sites tracked, events of further sites are always
+	 * admitted
+	 */
+	private static final int MAX_SITES = 10_000;
+
+	/**
+	 * Seconds without events after which a site is evicted
+	 */
+	private static final long SITE_IDLE_SECONDS = 60L;
+
+	/**
+	 * Reusable key of each thread, used to look sites up without allocating
+	 */
+	private static final ThreadLocal<CallSite> PROBE = ThreadLocal.withInitial(CallSite::new);
+
+	private final Map<CallSite, SiteState> sites = new ConcurrentHashMap<>();
+
+	/**
+	 * Nanoseconds between two events of a site, {@code 0} disables rate limiting
+	 */
+	private final long emissionIntervalNanos;
+
+	/**
+	 * How far ahead of real time a site's arrival time may run, derived from the
+	 * burst size
+	 */
+	private final long burstToleranceNanos;
+
+	private final double samplingStart;
+
+	private final int maxSampleRate;
+
+	private final LongAdder sampledOut = new LongAdder();
+
+	/**
+	 * One in how many events below {@link LogLevel#WARN} is currently admitted
+	 */
+	private volatile int sampleRate = 1;
+
+	/**
+	 * Private constructor to set the limits
+	 *
+	 * @param eventsPerSecond Events admitted per second and call site, {@code 0}
+	 *                        or less disables rate limiting
+	 * @param burst           Events a call site may log back to back
+	 * @param samplingStart   Pipeline fill ratio at which sampling starts
+	 * @param maxSampleRate   Sampling rate when the pipeline is full,
+	 *                        {@code 1} or less disables sampling
+	 */
+	private LogRateLimiter(double eventsPerSecond, int burst, double samplingStart, int maxSampleRate) {
+		this.emissionIntervalNanos = eventsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond) : 0L;
+		this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+		this.samplingStart = Math.min(Math.max(samplingStart, 0d), 0.99d);
+		this.maxSampleRate = Math.max(1, maxSampleRate);
+	}
+
+	/**
+	 * Method to get a new instance of {@link LogRateLimiter}
+	 *
+	 * @param eventsPerSecond Events admitted per second and call site, {@code 0}
+	 *                        or less disables rate limiting
+	 * @param burst           Events a call site may log back to back
+	 * @param samplingStart   Pipeline fill ratio at which sampling starts
+	 * @param maxSampleRate   Sampling rate when the pipeline is full,
+	 *                        {@code 1} or less disables sampling
+	 * @return New instance of {@link LogRateLimiter}
+	 */
+	static LogRateLimiter getInstance(double eventsPerSecond, int burst, double samplingStart, int maxSampleRate) {
+		return new LogRateLimiter(eventsPerSecond, burst, samplingStart, maxSampleRate);
+	}
+
+	/**
+	 * Method to decide whether an event is published
+	 *
+	 * @param level      Log level
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param message    Message template
+	 * @return {@link #REJECTED} if the event is suppressed or sampled out,
+	 *         otherwise the number of events of the same call site suppressed
+	 *         since the last report
+	 */
+	long admit(LogLevel level, String className, String methodName, String message) {
+		int rate = sampleRate;
+		if (rate > 1 && level.isBelow(LogLevel.WARN) && ThreadLocalRandom.current().nextInt(rate) != 0) {
+			sampledOut.increment();
+			return REJECTED;
+		}
+		if (emissionIntervalNanos == 0L)
+			return 0L;
+
+		SiteState site = site(level, className, methodName, message);
+		if (site == null)
+			return 0L;
+		long now = System.nanoTime();
+		while (true) {
+			long arrival = site.arrival.get();
+			long start = arrival - now < 0 ? now : arrival;
+			if (start - now > burstToleranceNanos) {
+				site.suppressed.increment();
+				return REJECTED;
+			}
+			if (site.arrival.compareAndSet(arrival, start + emissionIntervalNanos))
+				return site.unreported();
+		}
+	}
+
+	private SiteState site(LogLevel level, String className, String methodName, String message) {
+		SiteState site = sites.get(PROBE.get().set(className, methodName, message));
+		if (site != null || sites.size() >= MAX_SITES)
+			return site;
+		return sites.computeIfAbsent(new CallSite().set(className, methodName, message),
+				k -> new SiteState(level, System.nanoTime()));
+	}
+
+	/**
+	 * Method to adapt the sampling rate to the fill ratio of the pipeline
+	 *
+	 * @param fill Backlog divided by capacity
+	 */
+	void updatePressure(double fill) {
+		if (maxSampleRate <= 1 || fill <= samplingStart) {
+			sampleRate = 1;
+			return;
+		}
+		double pressure = Math.min(1d, (fill - samplingStart) / (1d - samplingStart));
+		sampleRate = 1 + (int) Math.round(pressure * (maxSampleRate - 1));
+	}
+
+	/**
+	 * Method to report the events suppressed at call sites which did not log
+	 * again since
+	 *
+	 * @param reporter Receives the call site and the number of suppressed events
+	 */
+	void drainSuppressed(SuppressionReporter reporter) {
+		long idleBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(SITE_IDLE_SECONDS);
+		sites.forEach((site, state) -> {
+			long suppressed = state.unreported();
+			if (suppressed > 0)
+				reporter.report(state.level, site.className, site.methodName, site.message, suppressed);
+			else if (state.arrival.get() - idleBefore < 0)
+				sites.remove(site, state);
+		});
+	}
+
+	/**
+	 * Method to get the number of events discarded by adaptive sampling
+	 *
+	 * @return Sampled out event count
+	 */
+	long getSampledOutCount() {
+		return sampledOut.sum();
+	}
+
+	/**
+	 * Receiver of suppression reports
+	 */
+	@FunctionalInterface
+	interface SuppressionReporter {
+
+		/**
+		 * Method receiving the events suppressed at one call site
+		 * 
+		 * @param level      Level of the call site
+		 * @param className  Class name of the call site
+		 * @param methodName Method name of the call site
+		 * @param message    Message template of the call site
+		 * @param suppressed Number of suppressed events
+		 */
+		void report(LogLevel level, String className, String methodName, String message, long suppressed);
+	}
+
+	/**
+	 * Identity of a call site. Only the per-thread {@link #PROBE} is ever set
+	 * again, the keys of the map are set once before being inserted.
+	 */
+	private static final class CallSite {
+
+		private String className;
+
+		private String methodName;
+
+		private String message;
+
+		private int hash;
+
+		private CallSite set(String className, String methodName, String message) {
+			this.className = className;
+			this.methodName = methodName;
+			this.message = message;
+			int h = className == null ? 0 : className.hashCode();
+			h = 31 * h + (methodName == null ? 0 : methodName.hashCode());
+			this.hash = 31 * h + (message == null ? 0 : message.hashCode());
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CallSite))
+				return false;
+			CallSite other = (CallSite) obj;
+			return hash == other.hash && equal(className, other.className) && equal(methodName, other.methodName)
+					&& equal(message, other.message);
+		}
+
+		private static boolean equal(String a, String b) {
+			return a == b || (a != null && a.equals(b));
+		}
+	}
+
+	/**
+	 * Token bucket state of a call site
+	 */
+	private static final class SiteState {
+
+		/**
+		 * Theoretical arrival time of the next conforming event
+		 */
+		private final AtomicLong arrival;
+
+		private final LongAdder suppressed = new LongAdder();
+
+		/**
+		 * Value of {@link #suppressed} when last reported. The adder itself is never
+		 * reset, as {@code sumThenReset} loses increments racing with it.
+		 */
+		private final AtomicLong reported = new AtomicLong();
+
+		/**
+		 * Level of the first event seen at the site, used for its reports
+		 */
+		private final LogLevel level;
+
+		private SiteState(LogLevel level, long now) {
+			this.level = level;
+			this.arrival = new AtomicLong(now);
+		}
+
+		/**
+		 * Method to take the events suppressed since the last report, each event
+		 * being reported once whichever thread reports it
+		 *
+		 * @return Number of events suppressed since the last report
+		 */
+		private long unreported() {
+			long total = suppressed.sum();
+			while (true) {
+				long last = reported.get();
+				if (total <= last)
+					return 0L;
+				if (reported.compareAndSet(last, total))
+					return total - last;
+			}
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package com.utilities.log;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import com.utilities.metrics.PipelineMetrics;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer ring buffer used by
+ * {@link Log} to hand events to its consumer thread.
+ *
+ * <p>
+ * All slots are allocated up front. A producer claims a sequence with a single
+ * CAS on the cursor, fills the slot in place and publishes it with an ordered
+ * write of the sequence into the slot's availability marker. The consumer
+ * reads the slots strictly in sequence order, which keeps the ordering
+ * guarantee of the previous single-threaded executor.
+ * </p>
+ *
+ * <p>
+ * When the buffer is full the configured {@link OverflowPolicy} decides
+ * whether the producer waits or the event is dropped. Dropped events are
+ * counted and can be read through {@link #getDroppedCount()}.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LogRingBuffer {
+
+	/**
+	 * Time a blocked producer parks before checking for a free slot again
+	 */
+	private static final long PRODUCER_PARK_NANOS = 1_000L;
+
+	/**
+	 * Time an idle consumer first parks once spinning and yielding did not find
+	 * work, doubled with every further idle park
+	 */
+	private static final long CONSUMER_PARK_NANOS = 100_000L;
+
+	/**
+	 * Longest park of an idle consumer, bounding the latency of the first event
+	 * after a quiet period
+	 */
+	private static final long CONSUMER_MAX_PARK_NANOS = 5_000_000L;
+
+	/**
+	 * Value of {@link #cursor} once the consumer exited, failing every later
+	 * claim
+	 */
+	private static final long CLOSED = Long.MAX_VALUE;
+
+	private static final int SPIN_TRIES = 100;
+
+	private static final int YIELD_TRIES = 200;
+
+	private final LogEvent[] entries;
+
+	/**
+	 * Sequence last published into each slot, {@code -1} while never used
+	 */
+	private final AtomicLongArray published;
+
+	private final int mask;
+
+	private final int capacity;
+
+	/**
+	 * Highest sequence claimed by a producer
+	 */
+	private final AtomicLong cursor = new AtomicLong(-1L);
+
+	/**
+	 * Highest sequence fully processed by the consumer
+	 */
+	private final AtomicLong consumed = new AtomicLong(-1L);
+
+	private final OverflowPolicy policy;
+
+	private final LogLevel dropBelow;
+
+	private final int sampleRate;
+
+	private final int highWaterMark;
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final Consumer<LogEvent> handler;
+
+	/**
+	 * Counter shared by all lanes of a pipeline to stamp events with their
+	 * global order, {@code null} when no global order is needed
+	 */
+	private final AtomicLong orderSequence;
+
+	private final Thread consumerThread;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to allocate the slots and start the consumer thread
+	 *
+	 * @param capacity      Requested capacity, rounded up to a power of two
+	 * @param policy        Policy applied when the buffer is full
+	 * @param dropBelow     Threshold used by
+	 *                      {@link OverflowPolicy#DROP_BELOW_LEVEL}
+	 * @param sampleRate    One in how many events is kept by
+	 *                      {@link OverflowPolicy#SAMPLE}
+	 * @param handler       Callback invoked on the consumer thread for each event
+	 * @param orderSequence Counter stamping events with their global order, may
+	 *                      be {@code null}
+	 * @param threadName    Name of the consumer thread
+	 */
+	private LogRingBuffer(int capacity, OverflowPolicy policy, LogLevel dropBelow, int sampleRate,
+			Consumer<LogEvent> handler, AtomicLong orderSequence, String threadName) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = this.capacity - 1;
+		this.entries = new LogEvent[this.capacity];
+		this.published = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			entries[i] = new LogEvent();
+			published.set(i, -1L);
+		}
+		this.policy = policy;
+		this.dropBelow = dropBelow;
+		this.sampleRate = Math.max(1, sampleRate);
+		this.highWaterMark = this.capacity - (this.capacity >> 2);
+		this.handler = handler;
+		this.orderSequence = orderSequence;
+		this.consumerThread = new Thread(this::consume, threadName);
+		this.consumerThread.setDaemon(true);
+		this.consumerThread.start();
+	}
+
+	/**
+	 * Method to get a new started instance of {@link LogRingBuffer}
+	 *
+	 * @param capacity      Requested capacity, rounded up to a power of two
+	 * @param policy        Policy applied when the buffer is full
+	 * @param dropBelow     Threshold used by
+	 *                      {@link OverflowPolicy#DROP_BELOW_LEVEL}
+	 * @param sampleRate    One in how many events is kept by
+	 *                      {@link OverflowPolicy#SAMPLE}
+	 * @param handler       Callback invoked on the consumer thread for each event
+	 * @param orderSequence Counter stamping events with their global order, may
+	 *                      be {@code null}
+	 * @param threadName    Name of the consumer thread
+	 * @return New instance of {@link LogRingBuffer}
+	 */
+	static LogRingBuffer getInstance(int capacity, OverflowPolicy policy, LogLevel dropBelow, int sampleRate,
+			Consumer<LogEvent> handler, AtomicLong orderSequence, String threadName) {
+		return new LogRingBuffer(capacity, policy, dropBelow, sampleRate, handler, orderSequence, threadName);
+	}
+
+	/**
+	 * Method to publish an event to the consumer
+	 *
+	 * @param level      Log level
+	 * @param className  Class name for logging
+	 * @param methodName Method name for logging
+	 * @param threadId   Id of the thread which produced the event
+	 * @param message    Log message
+	 * @param arguments  Arguments passed
+	 * @return {@code true} if the event was accepted, {@code false} if it was
+	 *         dropped by the overflow policy or the consumer exited
+	 */
+	boolean publish(LogLevel level, String className, String methodName, long threadId, String message,
+			Object[] arguments) {
+		long sequence = claim(level);
+		if (sequence == CLOSED)
+			return false;
+		if (sequence < 0) {
+			dropped.increment();
+			return false;
+		}
+		int index = (int) (sequence & mask);
+		entries[index].set(level, className, methodName, threadId, message, arguments);
+		if (orderSequence != null)
+			entries[index].setSequence(orderSequence.getAndIncrement());
+		published.lazySet(index, sequence);
+		return true;
+	}
+
+	/**
+	 * Method to claim the next sequence, applying the overflow policy while the
+	 * buffer is full
+	 *
+	 * @param level Level of the event being published
+	 * @return Claimed sequence, {@code -1} if the event must be dropped or
+	 *         {@link #CLOSED} if the consumer exited
+	 */
+	private long claim(LogLevel level) {
+		long waitStart = 0L;
+		while (true) {
+			long current = cursor.get();
+			if (current == CLOSED)
+				return CLOSED;
+			long next = current + 1;
+			long backlog = next - consumed.get();
+			if (backlog > capacity) {
+				if (!waitWhenFull(level))
+					return -1L;
+				if (waitStart == 0L)
+					waitStart = System.nanoTime();
+				LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+				continue;
+			}
+			if (policy == OverflowPolicy.SAMPLE && backlog > highWaterMark
+					&& ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+				return -1L;
+			if (cursor.compareAndSet(current, next)) {
+				if (waitStart != 0L)
+					PipelineMetrics.LOG_ENQUEUE_WAIT.recordSince(waitStart);
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Method to decide whether a producer facing a full buffer waits for a slot
+	 *
+	 * @param level Level of the event being published
+	 * @return {@code true} to wait, {@code false} to drop the event
+	 */
+	private boolean waitWhenFull(LogLevel level) {
+		if (!running)
+			return false;
+		switch (policy) {
+		case BLOCK:
+			return true;
+		case DROP_BELOW_LEVEL:
+			return !level.isBelow(dropBelow);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Consumer loop reading the published slots in sequence order until the
+	 * buffer is shut down and every claimed sequence has been processed
+	 */
+	private void consume() {
+		long next = consumed.get() + 1;
+		int idle = 0;
+		long park = CONSUMER_PARK_NANOS;
+		while (true) {
+			int index = (int) (next & mask);
+			if (published.get(index) == next) {
+				LogEvent event = entries[index];
+				try {
+					handler.accept(event);
+				} catch (RuntimeException e) {
+					// same as the executor it replaces: a failing event must not stop the consumer
+				} finally {
+					event.clear();
+					consumed.lazySet(next);
+				}
+				next++;
+				idle = 0;
+				park = CONSUMER_PARK_NANOS;
+			} else if (!running && cursor.get() < next) {
+				// a producer which read this buffer before it was replaced may still
+				// claim a slot: closing the cursor fails its claim, and a claim
+				// winning the race is consumed before exiting
+				if (cursor.compareAndSet(next - 1, CLOSED))
+					return;
+			} else if (idle < SPIN_TRIES) {
+				idle++;
+				Thread.onSpinWait();
+			} else if (idle < SPIN_TRIES + YIELD_TRIES) {
+				idle++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(park);
+				park = Math.min(park << 1, CONSUMER_MAX_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Method to stop accepting blocked producers and let the consumer exit once
+	 * the events already claimed have been processed
+	 */
+	void shutdown() {
+		running = false;
+	}
+
+	/**
+	 * Method to wait for the consumer thread to drain the buffer after
+	 * {@link #shutdown()}
+	 *
+	 * @param millis Maximum time to wait in milliseconds
+	 * @return {@code true} if the consumer finished within the given time
+	 * @throws InterruptedException Thrown when the waiting thread is interrupted
+	 */
+	boolean awaitTermination(long millis) throws InterruptedException {
+		consumerThread.join(Math.max(1L, millis));
+		return !consumerThread.isAlive();
+	}
+
+	/**
+	 * Method to get the number of events waiting to be consumed
+	 *
+	 * @return Current backlog
+	 */
+	long getBacklog() {
+		long claimed = cursor.get();
+		return claimed == CLOSED ? 0L : Math.max(0L, claimed - consumed.get());
+	}
+
+	/**
+	 * Method to get the capacity of the buffer
+	 *
+	 * @return Number of slots
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Method to get the number of events dropped by the overflow policy
+	 *
+	 * @return Dropped event count
+	 */
+	long getDroppedCount() {
+		return dropped.sum();
+	}
+}
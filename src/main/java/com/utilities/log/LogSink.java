@@ -0,0 +1,20 @@
+package com.utilities.log;
+
+/**
+ * Final stage of a {@link LogPipeline}, receiving every formatted event on a
+ * lane or merge thread.
+ *
+ * @author Kabir Akware
+ */
+@FunctionalInterface
+interface LogSink {
+
+	/**
+	 * Method to write a formatted event
+	 *
+	 * @param level    Log level
+	 * @param threadId Id of the thread which produced the event
+	 * @param message  Formatted event
+	 */
+	void accept(LogLevel level, long threadId, String message);
+}
@@ -0,0 +1,76 @@
+package com.utilities.log;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggerContextListener;
+
+/**
+ * Pushes the level changes of Logback, made through the Spring Boot loggers
+ * endpoint, {@code LoggingSystem} or a rescanned configuration, to
+ * {@link Log#refreshLevels()} as they happen. This class is only loaded by
+ * {@link Log} after it checked that Logback is on the classpath.
+ *
+ * @author Kabir Akware
+ */
+final class LogbackLevelListener implements LoggerContextListener {
+
+	/**
+	 * Whether a listener was already added, {@link Log} being constructed again
+	 * by every application context of the JVM
+	 */
+	private static boolean registered;
+
+	private final Runnable refresh;
+
+	private LogbackLevelListener(Runnable refresh) {
+		this.refresh = refresh;
+	}
+
+	/**
+	 * Method to add a listener to the Logback context backing SLF4J
+	 *
+	 * @param refresh Action re-reading the enabled levels
+	 * @return {@code true} if SLF4J is bound to Logback and level changes are
+	 *         pushed
+	 */
+	static synchronized boolean register(Runnable refresh) {
+		if (registered)
+			return true;
+		ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+		if (!(factory instanceof LoggerContext))
+			return false;
+		((LoggerContext) factory).addListener(new LogbackLevelListener(refresh));
+		registered = true;
+		return true;
+	}
+
+	@Override
+	public boolean isResetResistant() {
+		// kept across the resets of a reconfiguration, which change levels too
+		return true;
+	}
+
+	@Override
+	public void onStart(LoggerContext context) {
+		refresh.run();
+	}
+
+	@Override
+	public void onReset(LoggerContext context) {
+		refresh.run();
+	}
+
+	@Override
+	public void onStop(LoggerContext context) {
+		// levels are kept until the application stops logging
+	}
+
+	@Override
+	public void onLevelChange(Logger logger, Level level) {
+		refresh.run();
+	}
+}
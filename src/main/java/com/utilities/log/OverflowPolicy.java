@@ -0,0 +1,53 @@
+package com.utilities.log;
+
+import java.util.Locale;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Policies applied by {@link LogRingBuffer} when a producer finds the buffer
+ * full.
+ * 
+ * @author Kabir Akware
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Producer waits until the consumer frees a slot. No event is ever lost.
+	 */
+	BLOCK,
+
+	/**
+	 * The new event is discarded and counted as dropped.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * Events below the configured threshold level are discarded, events at or
+	 * above it wait for a free slot.
+	 */
+	DROP_BELOW_LEVEL,
+
+	/**
+	 * Once the backlog crosses the high-water mark only one in {@code N} events
+	 * is admitted, and events arriving on a full buffer are discarded.
+	 */
+	SAMPLE;
+
+	/**
+	 * Method to resolve an {@link OverflowPolicy} from its configured name, e.g.
+	 * {@code drop-newest}
+	 * 
+	 * @param name Policy name, case insensitive, words separated by {@code -} or
+	 *             {@code _}
+	 * @return Matching {@link OverflowPolicy}
+	 * @throws ConfigException Thrown when the name does not match any policy
+	 */
+	public static OverflowPolicy from(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw ConfigException.getInstance("invalid log overflow policy: " + name);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.utilities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of
+ * HdrHistogram.
+ *
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets,
+ * so recorded values keep a relative precision of about 12% over the whole
+ * {@code long} range. Each bucket is a {@link LongAdder}, which keeps
+ * {@link #record(long)} down to a few nanoseconds even when many threads record
+ * into the same recorder. Percentiles are computed on demand from the bucket
+ * counts and report the lower bound of the matching bucket.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class LatencyRecorder {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = SUB_BUCKETS * 62;
+
+	/**
+	 * Name under which the recorder is exported
+	 */
+	@Getter
+	private final String name;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder total = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Private constructor to allocate the buckets
+	 *
+	 * @param name Name under which the recorder is exported
+	 */
+	private LatencyRecorder(String name) {
+		this.name = name;
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Method to get a new instance of {@link LatencyRecorder}
+	 *
+	 * @param name Name under which the recorder is exported
+	 * @return New instance of {@link LatencyRecorder}
+	 */
+	public static LatencyRecorder getInstance(String name) {
+		return new LatencyRecorder(name);
+	}
+
+	/**
+	 * Method to record one measurement
+	 *
+	 * @param nanos Measured duration in nanoseconds, negative values are ignored
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			return;
+		buckets[index(nanos)].increment();
+		count.increment();
+		total.add(nanos);
+		long current = max.get();
+		while (nanos > current && !max.compareAndSet(current, nanos))
+			current = max.get();
+	}
+
+	/**
+	 * Method to record the time elapsed since a start time
+	 *
+	 * @param startNanos Start time taken from {@link System#nanoTime()}
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Method to get the number of measurements
+	 *
+	 * @return Measurement count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Method to get the sum of all measurements
+	 *
+	 * @return Total time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return total.sum();
+	}
+
+	/**
+	 * Method to get the largest measurement
+	 *
+	 * @return Maximum in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * Method to get the mean of all measurements
+	 *
+	 * @return Mean in nanoseconds, {@code 0} without measurements
+	 */
+	public double getMeanNanos() {
+		long n = count.sum();
+		return n == 0 ? 0d : (double) total.sum() / n;
+	}
+
+	/**
+	 * Method to get an approximate percentile of the measurements
+	 *
+	 * @param percentile Percentile between {@code 0} and {@code 100}
+	 * @return Lower bound of the bucket holding the percentile, in nanoseconds
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			n += counts[i];
+		}
+		if (n == 0)
+			return 0L;
+		long rank = (long) Math.ceil(Math.min(100d, Math.max(0d, percentile)) / 100d * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0)
+				return lowerBound(i);
+		}
+		return max.get();
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long lowerBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+	}
+}
@@ -0,0 +1,82 @@
+package com.utilities.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.context.ApplicationContext;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Exports {@link PipelineMetrics} to a Micrometer {@link MeterRegistry}. This
+ * class is only loaded by {@link PipelineMetricsExporter} after it checked that
+ * Micrometer is on the classpath.
+ *
+ * <p>
+ * Each latency recorder is exported as a {@link FunctionTimer} plus
+ * {@code .max}, {@code .p50} and {@code .p99} gauges in nanoseconds. Counters
+ * and gauges are exported as {@link FunctionCounter}s and {@link Gauge}s.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class MicrometerMetricsBinder implements PipelineMetrics.MetricsListener {
+
+	private final MeterRegistry registry;
+
+	/**
+	 * Targets of the registered {@link FunctionCounter}s by name. Micrometer only
+	 * holds function targets weakly, so they are kept reachable here for as long
+	 * as the binder, which {@link PipelineMetrics} keeps as a listener.
+	 */
+	private final Map<String, LongSupplier> counterTargets = new ConcurrentHashMap<>();
+
+	private MicrometerMetricsBinder(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Method to bind the pipeline metrics to the {@link MeterRegistry} of the
+	 * application context, if it has one
+	 *
+	 * @param context Application context
+	 * @return {@code true} if a registry was found and bound
+	 */
+	static boolean bind(ApplicationContext context) {
+		MeterRegistry registry = context.getBeanProvider(MeterRegistry.class).getIfAvailable();
+		if (registry == null)
+			return false;
+		PipelineMetrics.addListener(new MicrometerMetricsBinder(registry));
+		return true;
+	}
+
+	@Override
+	public void recorderRegistered(LatencyRecorder recorder) {
+		FunctionTimer.builder(recorder.getName(), recorder, LatencyRecorder::getCount,
+				LatencyRecorder::getTotalNanos, TimeUnit.NANOSECONDS).register(registry);
+		Gauge.builder(recorder.getName() + ".max", recorder, LatencyRecorder::getMaxNanos).baseUnit("nanoseconds")
+				.register(registry);
+		Gauge.builder(recorder.getName() + ".p50", recorder, r -> r.getPercentileNanos(50d)).baseUnit("nanoseconds")
+				.register(registry);
+		Gauge.builder(recorder.getName() + ".p99", recorder, r -> r.getPercentileNanos(99d)).baseUnit("nanoseconds")
+				.register(registry);
+	}
+
+	@Override
+	public void counterRegistered(String name, LongSupplier supplier) {
+		// a name registered again keeps its first target, which reads the latest
+		// registration, since Micrometer returns the existing meter
+		LongSupplier target = counterTargets.computeIfAbsent(name, key -> supplier);
+		FunctionCounter.builder(name, target, LongSupplier::getAsLong).register(registry);
+	}
+
+	@Override
+	public void gaugeRegistered(String name, LongSupplier supplier) {
+		Gauge.builder(name, supplier, LongSupplier::getAsLong).strongReference(true).register(registry);
+	}
+}
@@ -0,0 +1,181 @@
+package com.utilities.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the instrumentation of the logging and audit pipelines.
+ *
+ * <p>
+ * Latency recorders for the individual stages are static fields so that the
+ * hot path records into them without any lookup. Counters and gauges are
+ * registered as {@link LongSupplier}s reading the {@code LongAdder}s and queue
+ * sizes the components already maintain, so exporting them costs nothing on
+ * the hot path. Exporters such as {@link PipelineMetricsExporter} subscribe
+ * with {@link #addListener(MetricsListener)} and receive the metrics already
+ * registered as well as any registered later.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class PipelineMetrics {
+
+	/**
+	 * Time a producer waited for a free slot in a full log lane
+	 */
+	public static final LatencyRecorder LOG_ENQUEUE_WAIT = LatencyRecorder.getInstance("log.enqueue.wait");
+
+	/**
+	 * Time from publishing a log event to the end of its processing by its lane
+	 */
+	public static final LatencyRecorder LOG_QUEUE_LATENCY = LatencyRecorder.getInstance("log.queue.latency");
+
+	/**
+	 * Time spent formatting a log event
+	 */
+	public static final LatencyRecorder LOG_FORMAT = LatencyRecorder.getInstance("log.format");
+
+	/**
+	 * Time spent writing a formatted log event to SLF4J
+	 */
+	public static final LatencyRecorder LOG_WRITE = LatencyRecorder.getInstance("log.write");
+
+	/**
+	 * Time spent in {@code KafkaProducer.send}
+	 */
+	public static final LatencyRecorder KAFKA_SEND = LatencyRecorder.getInstance("kafka.send");
+
+	/**
+	 * Time from a send to its acknowledgement callback
+	 */
+	public static final LatencyRecorder KAFKA_ACK = LatencyRecorder.getInstance("kafka.ack");
+
+	/**
+	 * Time the audit path adds to a request
+	 */
+	public static final LatencyRecorder AUDIT_REQUEST = LatencyRecorder.getInstance("audit.request");
+
+	/**
+	 * Time a dispatcher worker spends serializing and sending one audit
+	 */
+	public static final LatencyRecorder AUDIT_SHIP = LatencyRecorder.getInstance("audit.ship");
+
+	private static final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+
+	private static final Map<String, LongSupplier> counters = new ConcurrentHashMap<>();
+
+	private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+	static {
+		for (LatencyRecorder recorder : List.of(LOG_ENQUEUE_WAIT, LOG_QUEUE_LATENCY, LOG_FORMAT, LOG_WRITE,
+				KAFKA_SEND, KAFKA_ACK, AUDIT_REQUEST, AUDIT_SHIP))
+			recorders.put(recorder.getName(), recorder);
+	}
+
+	/**
+	 * Private constructor to override the default constructor for this utility
+	 * class which contains static utility methods
+	 */
+	private PipelineMetrics() {
+	}
+
+	/**
+	 * Method to register a monotonically increasing counter. A counter
+	 * registered again under the same name replaces the previous one.
+	 *
+	 * @param name     Metric name
+	 * @param supplier Supplier reading the current count
+	 */
+	public static synchronized void registerCounter(String name, LongSupplier supplier) {
+		counters.put(name, supplier);
+		listeners.forEach(listener -> listener.counterRegistered(name, () -> counters.get(name).getAsLong()));
+	}
+
+	/**
+	 * Method to register a gauge such as a queue depth. A gauge registered again
+	 * under the same name replaces the previous one.
+	 *
+	 * @param name     Metric name
+	 * @param supplier Supplier reading the current value
+	 */
+	public static synchronized void registerGauge(String name, LongSupplier supplier) {
+		gauges.put(name, supplier);
+		listeners.forEach(listener -> listener.gaugeRegistered(name, () -> gauges.get(name).getAsLong()));
+	}
+
+	/**
+	 * Method to subscribe an exporter to the registered metrics. The listener is
+	 * immediately called for every metric already registered.
+	 *
+	 * @param listener Listener to add
+	 */
+	public static synchronized void addListener(MetricsListener listener) {
+		listeners.add(listener);
+		recorders.values().forEach(listener::recorderRegistered);
+		counters.keySet().forEach(name -> listener.counterRegistered(name, () -> counters.get(name).getAsLong()));
+		gauges.keySet().forEach(name -> listener.gaugeRegistered(name, () -> gauges.get(name).getAsLong()));
+	}
+
+	/**
+	 * Method to get the latency recorders
+	 *
+	 * @return Recorders by name
+	 */
+	public static Map<String, LatencyRecorder> getRecorders() {
+		return recorders;
+	}
+
+	/**
+	 * Method to get the registered counters
+	 *
+	 * @return Counters by name
+	 */
+	public static Map<String, LongSupplier> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Method to get the registered gauges
+	 *
+	 * @return Gauges by name
+	 */
+	public static Map<String, LongSupplier> getGauges() {
+		return gauges;
+	}
+
+	/**
+	 * Listener notified of the metrics registered in {@link PipelineMetrics}.
+	 * Suppliers passed to the listener always read the latest registration of
+	 * the name.
+	 */
+	public interface MetricsListener {
+
+		/**
+		 * Method called for every latency recorder
+		 *
+		 * @param recorder Latency recorder
+		 */
+		void recorderRegistered(LatencyRecorder recorder);
+
+		/**
+		 * Method called when a counter name is registered
+		 *
+		 * @param name     Metric name
+		 * @param supplier Supplier reading the current count
+		 */
+		void counterRegistered(String name, LongSupplier supplier);
+
+		/**
+		 * Method called when a gauge name is registered
+		 *
+		 * @param name     Metric name
+		 * @param supplier Supplier reading the current value
+		 */
+		void gaugeRegistered(String name, LongSupplier supplier);
+	}
+}
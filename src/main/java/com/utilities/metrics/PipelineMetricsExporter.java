@@ -0,0 +1,56 @@
+package com.utilities.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.utilities.log.Log;
+
+/**
+ * Component exporting {@link PipelineMetrics} once the application context is
+ * initialized: to the application's Micrometer {@code MeterRegistry} when
+ * Micrometer is on the classpath and a registry bean exists, and as the JMX
+ * bean {@value PipelineMetricsMBean#OBJECT_NAME} otherwise.
+ *
+ * @author Kabir Akware
+ */
+@Component
+public class PipelineMetricsExporter implements SmartInitializingSingleton {
+
+	private static final String METER_REGISTRY_CLASS = "io.micrometer.core.instrument.MeterRegistry";
+
+	private final ApplicationContext context;
+
+	public PipelineMetricsExporter(ApplicationContext context) {
+		this.context = context;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		if (ClassUtils.isPresent(METER_REGISTRY_CLASS, getClass().getClassLoader())
+				&& MicrometerMetricsBinder.bind(context)) {
+			Log.info(this.getClass().getSimpleName(), "afterSingletonsInstantiated",
+					"pipeline metrics bound to micrometer");
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(PipelineMetricsMBean.OBJECT_NAME);
+			if (!server.isRegistered(name))
+				server.registerMBean(new PipelineMetricsMBean(), name);
+			Log.info(this.getClass().getSimpleName(), "afterSingletonsInstantiated",
+					"pipeline metrics registered in JMX as %s", name);
+		} catch (JMException e) {
+			Log.error(this.getClass().getSimpleName(), "afterSingletonsInstantiated",
+					"unable to register pipeline metrics in JMX: %n%s", ExceptionUtils.getStackTrace(e));
+		}
+	}
+}
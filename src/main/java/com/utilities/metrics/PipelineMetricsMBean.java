@@ -0,0 +1,113 @@
+package com.utilities.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only JMX view of {@link PipelineMetrics}, used when Micrometer is not
+ * available.
+ *
+ * <p>
+ * Every counter and gauge is an attribute of type {@code long}. Every latency
+ * recorder contributes {@code <name>.count}, {@code <name>.meanNanos},
+ * {@code <name>.p50Nanos}, {@code <name>.p99Nanos} and {@code <name>.maxNanos}
+ * attributes. Metrics registered after the bean are picked up automatically.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PipelineMetricsMBean implements DynamicMBean {
+
+	/**
+	 * Object name under which the bean is registered
+	 */
+	static final String OBJECT_NAME = "com.utilities:type=PipelineMetrics";
+
+	private static final String[] RECORDER_SUFFIXES = { ".count", ".meanNanos", ".p50Nanos", ".p99Nanos",
+			".maxNanos" };
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		LongSupplier supplier = PipelineMetrics.getCounters().get(attribute);
+		if (supplier == null)
+			supplier = PipelineMetrics.getGauges().get(attribute);
+		if (supplier != null)
+			return supplier.getAsLong();
+
+		int dot = attribute.lastIndexOf('.');
+		LatencyRecorder recorder = dot < 0 ? null : PipelineMetrics.getRecorders().get(attribute.substring(0, dot));
+		if (recorder != null) {
+			switch (attribute.substring(dot)) {
+			case ".count":
+				return recorder.getCount();
+			case ".meanNanos":
+				return (long) recorder.getMeanNanos();
+			case ".p50Nanos":
+				return recorder.getPercentileNanos(50d);
+			case ".p99Nanos":
+				return recorder.getPercentileNanos(99d);
+			case ".maxNanos":
+				return recorder.getMaxNanos();
+			default:
+				break;
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// unknown attributes are left out, as the JMX contract allows
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("pipeline metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		// pipeline metrics have no operations
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (Map<String, LongSupplier> metrics : List.of(PipelineMetrics.getCounters(), PipelineMetrics.getGauges()))
+			for (String name : metrics.keySet())
+				attributes.add(attribute(name));
+		for (String name : PipelineMetrics.getRecorders().keySet())
+			for (String suffix : RECORDER_SUFFIXES)
+				attributes.add(attribute(name + suffix));
+		return new MBeanInfo(getClass().getName(), "Logging and audit pipeline metrics",
+				attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+	}
+
+	private static MBeanAttributeInfo attribute(String name) {
+		return new MBeanAttributeInfo(name, long.class.getName(), name, true, false, false);
+	}
+}
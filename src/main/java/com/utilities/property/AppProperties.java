@@ -3,8 +3,18 @@ package com.utilities.property;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -17,6 +27,20 @@ import com.utilities.log.Log;
  * path mentioned in {@code application.properties} using {@link InputStream}
  * and caching the properties in memory for further use in the application.
  * 
+ * <p>
+ * Every load parses the file into an immutable {@link PropertySnapshot}, with
+ * the values already converted to the types returned by the typed accessors,
+ * and publishes it through a single volatile reference. Lookups are therefore
+ * lock-free and never parse, and a reload replaces the whole configuration at
+ * once.
+ * </p>
+ * 
+ * <p>
+ * The file is watched through {@link java.nio.file.WatchService} and reloaded
+ * off the request threads once writes to it settle, see
+ * {@link PropertyFileWatcher}.
+ * </p>
+ * 
  * @see <a href =
  *      "https://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/stereotype/Component.html">
  *      Component </a>
@@ -25,28 +49,113 @@ import com.utilities.log.Log;
  */
 public class AppProperties {
 
+	/**
+	 * Default quiet period after the last change of the property file before it
+	 * is reloaded
+	 */
+	public static final long DEFAULT_RELOAD_DEBOUNCE_MILLIS = 250L;
+
+	/**
+	 * Suffix appended to the property file path to get its compiled snapshot
+	 */
+	public static final String COMPILED_SUFFIX = ".bin";
+
 	/**
 	 * Private constructor to override the default constructor for this utility
 	 * class which contains static utility methods
 	 * 
-	 * @param configPath
+	 * @param configPath     File path in which the properties are stored
+	 * @param debounceMillis Quiet period before reloading a changed file,
+	 *                       {@code 0} or less disables watching
+	 * @param compiled       Whether to load through a compiled snapshot
 	 */
-	private AppProperties(String configPath) {
+	private AppProperties(String configPath, long debounceMillis, boolean compiled) {
+		useCompiled = compiled;
 		loadProperties(configPath);
+		watch(configPath, debounceMillis);
+	}
+
+	/**
+	 * Private constructor to load layered sources
+	 * 
+	 * @param sources        Layers, lowest precedence first
+	 * @param debounceMillis Quiet period before reloading a changed source,
+	 *                       {@code 0} or less disables watching
+	 */
+	private AppProperties(List<PropertySource> sources, long debounceMillis) {
+		LayeredProperties layered = LayeredProperties.getInstance(sources);
+		synchronized (LOAD_LOCK) {
+			layers = layered;
+			useCompiled = false;
+			loadLayers(-1);
+		}
+		watchLayers(layered, debounceMillis);
 	}
 
 	/**
-	 * {@code Properties} object
+	 * Lock serialising loads, so that a slower load cannot publish an older file
+	 * over a newer one. Readers never take it.
+	 */
+	private static final Object LOAD_LOCK = new Object();
+
+	/**
+	 * Whether loads go through the compiled snapshot next to the file, see
+	 * {@link CompiledProperties}
+	 */
+	private static volatile boolean useCompiled;
+
+	/**
+	 * Path, stamp and snapshot of the last compiled load, reused while the stamp
+	 * of the file does not change. Guarded by {@link #LOAD_LOCK}.
+	 */
+	private static String compiledPath;
+
+	private static byte[] compiledStamp;
+
+	private static PropertySnapshot compiledSnapshot;
+
+	/**
+	 * Layered sources given to {@link #initateLoadingProperties(List, long)},
+	 * {@code null} when a single file is loaded
+	 */
+	private static LayeredProperties layers;
+
+	/**
+	 * Watchers of the file or sources given to {@link #initateLoadingProperties}
+	 */
+	private static final List<PropertyFileWatcher> watchers = new ArrayList<>();
+
+	/**
+	 * Snapshot of the last loaded property file, replaced as a whole on every
+	 * load so that readers never take a lock nor see a partial load
+	 */
+	private static volatile PropertySnapshot snapshot = PropertySnapshot.EMPTY;
+
+	/**
+	 * Notifier of the listeners subscribed to key changes
 	 */
-	private static final Properties props = new Properties();
+	private static final PropertyChangeNotifier NOTIFIER = PropertyChangeNotifier
+			.getInstance(AppProperties::getSnapshot);
 
 	/**
 	 * Method to return the cached properties currently loaded in the application
 	 * 
-	 * @return {@link Properties} object with cached properties
+	 * @return Read-only {@link Properties} view of the cached properties, which
+	 *         does not follow later reloads. Modifications, {@code setProperty}
+	 *         included, throw {@link UnsupportedOperationException}: copy it
+	 *         into new {@link Properties} to modify it.
 	 */
 	public static Properties getLoadedProperties() {
-		return props;
+		return snapshot.asProperties();
+	}
+
+	/**
+	 * Method to get the snapshot currently published
+	 * 
+	 * @return Current {@link PropertySnapshot}
+	 */
+	static PropertySnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/**
@@ -56,7 +165,7 @@ public class AppProperties {
 	 * @return Value against the key as string
 	 */
 	public static String strProperty(String key) {
-		return props.getProperty(key);
+		return snapshot.getRaw(key);
 	}
 
 	/**
@@ -64,23 +173,203 @@ public class AppProperties {
 	 * 
 	 * @param key Key in the property file
 	 * @return Value against the key as integer
+	 * @throws NumberFormatException Thrown when the key is missing or its value is
+	 *                               not an integer
 	 */
 	public static int intProperty(String key) {
-		return Integer.parseInt(props.getProperty(key));
+		return required(key).asInt(key);
+	}
+
+	/**
+	 * Method to get Integer property value in the application
+	 * 
+	 * @param key          Key in the property file
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value against the key as integer
+	 * @throws NumberFormatException Thrown when the value is not an integer
+	 */
+	public static int intProperty(String key, int defaultValue) {
+		TypedValue value = snapshot.get(key);
+		return value == null ? defaultValue : value.asInt(key);
+	}
+
+	/**
+	 * Method to get Long property value in the application
+	 * 
+	 * @param key Key in the property file
+	 * @return Value against the key as long
+	 * @throws NumberFormatException Thrown when the key is missing or its value is
+	 *                               not a long
+	 */
+	public static long longProperty(String key) {
+		return required(key).asLong(key);
+	}
+
+	/**
+	 * Method to get Long property value in the application
+	 * 
+	 * @param key          Key in the property file
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value against the key as long
+	 * @throws NumberFormatException Thrown when the value is not a long
+	 */
+	public static long longProperty(String key, long defaultValue) {
+		TypedValue value = snapshot.get(key);
+		return value == null ? defaultValue : value.asLong(key);
+	}
+
+	/**
+	 * Method to get Boolean property value in the application
+	 * 
+	 * @param key Key in the property file
+	 * @return Value against the key as boolean, {@code false} when the key is
+	 *         missing
+	 * @throws IllegalArgumentException Thrown when the value is neither
+	 *                                  {@code true} nor {@code false}
+	 */
+	public static boolean booleanProperty(String key) {
+		return booleanProperty(key, false);
+	}
+
+	/**
+	 * Method to get Boolean property value in the application
+	 * 
+	 * @param key          Key in the property file
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value against the key as boolean
+	 * @throws IllegalArgumentException Thrown when the value is neither
+	 *                                  {@code true} nor {@code false}
+	 */
+	public static boolean booleanProperty(String key, boolean defaultValue) {
+		TypedValue value = snapshot.get(key);
+		return value == null ? defaultValue : value.asBoolean(key);
+	}
+
+	/**
+	 * Method to get Duration property value in the application. Values are
+	 * written in ISO-8601 ({@code PT5S}), with a unit ({@code 500ms},
+	 * {@code 5s}, {@code 2m}, {@code 1h}, {@code 1d}) or as plain milliseconds
+	 * 
+	 * @param key Key in the property file
+	 * @return Value against the key as duration
+	 * @throws IllegalArgumentException Thrown when the key is missing or its value
+	 *                                  is not a duration
+	 */
+	public static Duration durationProperty(String key) {
+		TypedValue value = snapshot.get(key);
+		if (value == null)
+			throw new IllegalArgumentException("property not found: " + key);
+		return value.asDuration(key);
+	}
+
+	/**
+	 * Method to get Duration property value in the application
+	 * 
+	 * @param key          Key in the property file
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value against the key as duration
+	 * @throws IllegalArgumentException Thrown when the value is not a duration
+	 */
+	public static Duration durationProperty(String key, Duration defaultValue) {
+		TypedValue value = snapshot.get(key);
+		return value == null ? defaultValue : value.asDuration(key);
+	}
+
+	/**
+	 * Method to get comma separated property values in the application
+	 * 
+	 * @param key Key in the property file
+	 * @return Unmodifiable list of the trimmed, non empty items, empty when the
+	 *         key is missing
+	 */
+	public static List<String> listProperty(String key) {
+		TypedValue value = snapshot.get(key);
+		return value == null ? Collections.emptyList() : value.getListValue();
+	}
+
+	/**
+	 * Method to get the keys starting with a prefix, e.g. {@code kafka.}, as a
+	 * view of the current snapshot. Views are cached per snapshot, so repeated
+	 * lookups of a namespace cost a map probe until the next reload.
+	 * 
+	 * @param prefix Common prefix of the keys
+	 * @return View of the keys starting with the prefix
+	 */
+	public static PropertyView byPrefix(String prefix) {
+		return snapshot.view(prefix);
+	}
+
+	/**
+	 * Method to bind the keys starting with a prefix onto a record. A component
+	 * {@code bootstrapServers} is read from {@code prefix + "bootstrapServers"}
+	 * or {@code prefix + "bootstrap-servers"}. The record is bound once per
+	 * snapshot and shared afterwards.
+	 * 
+	 * @param <T>    Record type
+	 * @param prefix Common prefix of the keys, e.g. {@code kafka.}
+	 * @param type   Record class
+	 * @return Record holding the values of the current snapshot
+	 * @throws ConfigException Thrown when a value cannot be bound
+	 */
+	public static <T extends Record> T bind(String prefix, Class<T> type) {
+		return snapshot.bind(prefix, type);
 	}
 
 	/**
-	 * Method to load and cache property file in a static {@link Properties} object
-	 * which can be accessed through static methods
+	 * Method to subscribe a listener to the changes of the given keys. Listeners
+	 * are notified asynchronously after a reload, with the net changes of the
+	 * reloads since their last notification.
+	 * 
+	 * @param listener Listener receiving the changes
+	 * @param keys     Exact keys to subscribe to
+	 * @return Subscription used to cancel the registration
+	 */
+	public static PropertySubscription subscribeKeys(PropertyChangeListener listener, String... keys) {
+		return NOTIFIER.add(keys, new String[0], listener);
+	}
+
+	/**
+	 * Method to subscribe a listener to the changes of every key starting with
+	 * one of the given prefixes, e.g. {@code kafka.}
+	 * 
+	 * @param listener Listener receiving the changes
+	 * @param prefixes Key prefixes to subscribe to, an empty prefix matches every
+	 *                 key
+	 * @return Subscription used to cancel the registration
+	 */
+	public static PropertySubscription subscribePrefixes(PropertyChangeListener listener, String... prefixes) {
+		return NOTIFIER.add(new String[0], prefixes, listener);
+	}
+
+	private static TypedValue required(String key) {
+		TypedValue value = snapshot.get(key);
+		if (value == null)
+			throw new NumberFormatException("property not found: " + key);
+		return value;
+	}
+
+	/**
+	 * Method to load the property file into a new {@link PropertySnapshot} and
+	 * publish it in place of the previous one
 	 * 
 	 * @param configPath File path in which the properties are stored
 	 */
 	private void loadProperties(String configPath) {
-		try (InputStream is = new FileInputStream(configPath)) {
-			props.clear();
-			props.load(is);
-			Log.info(this.getClass().getSimpleName(), "loadProperties", "loaded %s properties from %s", props.size(),
-					configPath);
+		synchronized (LOAD_LOCK) {
+			layers = null;
+			load(configPath);
+		}
+	}
+
+	private void load(String configPath) {
+		try {
+			// in-place updates of large files must not be seen half written
+			PropertySnapshot loadedSnapshot = PropertyFileUpdater.readLocked(configPath,
+					() -> useCompiled ? loadCompiled(configPath) : loadText(configPath));
+			snapshot = loadedSnapshot;
+			NOTIFIER.published();
+			Log.info(this.getClass().getSimpleName(), "loadProperties", "loaded %s properties from %s",
+					loadedSnapshot.size(), configPath);
 		} catch (IOException e) {
 			Log.error(this.getClass().getSimpleName(), "loadProperties",
 					"exception occurred while loading configuration properties: %n%s", ExceptionUtils.getStackTrace(e));
@@ -89,15 +378,223 @@ public class AppProperties {
 		}
 	}
 
+	/**
+	 * Method to start reloading the property file whenever it changes, replacing
+	 * the watcher of a previous file
+	 * 
+	 * @param configPath     File path in which the properties are stored
+	 * @param debounceMillis Quiet period before reloading a changed file,
+	 *                       {@code 0} or less disables watching
+	 */
+	private void watch(String configPath, long debounceMillis) {
+		synchronized (LOAD_LOCK) {
+			closeWatchers();
+			if (debounceMillis > 0)
+				watchers.add(PropertyFileWatcher.getInstance(Paths.get(configPath), debounceMillis,
+						() -> refreshProperties(configPath)));
+		}
+	}
+
+	/**
+	 * Method to start reloading a layer whenever its file or directory changes
+	 * 
+	 * @param layered        Layered sources
+	 * @param debounceMillis Quiet period before reloading a changed source,
+	 *                       {@code 0} or less disables watching
+	 */
+	private void watchLayers(LayeredProperties layered, long debounceMillis) {
+		synchronized (LOAD_LOCK) {
+			closeWatchers();
+			if (debounceMillis <= 0)
+				return;
+			List<PropertySource> sources = layered.getSources();
+			for (int i = 0; i < sources.size(); i++) {
+				Path path = sources.get(i).getWatchPath();
+				if (path == null)
+					continue;
+				int index = i;
+				try {
+					watchers.add(PropertyFileWatcher.getInstance(path, debounceMillis, () -> reloadLayer(layered, index)));
+				} catch (ConfigException e) {
+					Log.warn(this.getClass().getSimpleName(), "watchLayers", "%s is not reloaded automatically: %s",
+							sources.get(i).getName(), e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static void closeWatchers() {
+		for (PropertyFileWatcher watcher : watchers)
+			watcher.close();
+		watchers.clear();
+	}
+
+	/**
+	 * Method to load layers and publish their merged values
+	 * 
+	 * @param index Position of the changed layer, or {@code -1} to load every
+	 *              layer
+	 */
+	private void loadLayers(int index) {
+		try {
+			Map<String, String> merged = index < 0 ? layers.reloadAll() : layers.reload(index);
+			PropertySnapshot loadedSnapshot = PropertySnapshot.getInstance(merged, layers.describe());
+			snapshot = loadedSnapshot;
+			NOTIFIER.published();
+			Log.info(this.getClass().getSimpleName(), "loadLayers", "loaded %s properties from %s",
+					loadedSnapshot.size(), layers.describe());
+		} catch (IOException e) {
+			Log.error(this.getClass().getSimpleName(), "loadLayers",
+					"exception occurred while loading configuration properties: %n%s", ExceptionUtils.getStackTrace(e));
+			throw ConfigException
+					.getInstance("exception occurred while loading configuration properties: " + e.getMessage());
+		}
+	}
+
+	private void reloadLayer(LayeredProperties layered, int index) {
+		synchronized (LOAD_LOCK) {
+			// ignore watchers of layers replaced in the meantime
+			if (layers == layered)
+				loadLayers(index);
+		}
+	}
+
+	private PropertySnapshot loadText(String configPath) throws IOException {
+		try (InputStream is = new FileInputStream(configPath)) {
+			Properties loaded = new Properties();
+			loaded.load(is);
+			return PropertySnapshot.getInstance(loaded, configPath);
+		}
+	}
+
+	/**
+	 * Method to load the compiled snapshot {@code configPath + ".bin"} if it was
+	 * compiled from the current version of the file, otherwise to parse the file
+	 * and compile it for the next load. A reload finding the file unchanged
+	 * returns the snapshot already loaded instead of mapping the compiled file
+	 * again, and a changed file only drops the reference to the previous mapping,
+	 * which is released once the snapshots still held by readers are collected.
+	 * 
+	 * @param configPath File path in which the properties are stored
+	 * @return Loaded snapshot
+	 * @throws IOException Thrown when the property file cannot be read
+	 */
+	private PropertySnapshot loadCompiled(String configPath) throws IOException {
+		Path text = Paths.get(configPath);
+		// stamped before reading, so that a write racing the load is picked up by
+		// the next one
+		byte[] stamp = CompiledProperties.stamp(text);
+		if (configPath.equals(compiledPath) && Arrays.equals(stamp, compiledStamp))
+			return compiledSnapshot;
+
+		PropertySnapshot loadedSnapshot = null;
+		Path binary = Paths.get(configPath + COMPILED_SUFFIX);
+		try {
+			CompiledProperties compiled = CompiledProperties.open(binary, stamp);
+			if (compiled != null)
+				loadedSnapshot = PropertySnapshot.getInstance(compiled, configPath);
+		} catch (IOException e) {
+			Log.warn(this.getClass().getSimpleName(), "loadCompiled", "unable to read %s, parsing %s: %s", binary,
+					configPath, e.getMessage());
+		}
+
+		if (loadedSnapshot == null) {
+			Properties loaded = new Properties();
+			try (InputStream is = Files.newInputStream(text)) {
+				loaded.load(is);
+			}
+			Map<String, String> raw = new HashMap<>(Math.max(16, (int) (loaded.size() / 0.75f) + 1));
+			for (String key : loaded.stringPropertyNames())
+				raw.put(key, loaded.getProperty(key));
+			loadedSnapshot = PropertySnapshot.getInstance(raw, configPath);
+			try {
+				CompiledProperties.write(binary, raw, stamp);
+			} catch (IOException e) {
+				Log.warn(this.getClass().getSimpleName(), "loadCompiled", "unable to write %s: %s", binary,
+						e.getMessage());
+			}
+		}
+		compiledPath = configPath;
+		compiledStamp = stamp;
+		compiledSnapshot = loadedSnapshot;
+		return loadedSnapshot;
+	}
+
 	/**
 	 * Method to get instance of {@link AppProperties} object and initiate loading
-	 * the properties in the cache
+	 * the properties in the cache. The file is then reloaded automatically after
+	 * {@value #DEFAULT_RELOAD_DEBOUNCE_MILLIS} ms without further changes.
 	 * 
 	 * @param configPath File path in which the properties are stored
 	 * @return Instance of {@link AppProperties} object
 	 */
 	public static AppProperties initateLoadingProperties(String configPath) {
-		return new AppProperties(configPath);
+		return new AppProperties(configPath, DEFAULT_RELOAD_DEBOUNCE_MILLIS, false);
+	}
+
+	/**
+	 * Method to get instance of {@link AppProperties} object and initiate loading
+	 * the properties in the cache
+	 * 
+	 * @param configPath     File path in which the properties are stored
+	 * @param debounceMillis Quiet period after the last change of the file before
+	 *                       it is reloaded, {@code 0} or less disables automatic
+	 *                       reloading
+	 * @return Instance of {@link AppProperties} object
+	 */
+	public static AppProperties initateLoadingProperties(String configPath, long debounceMillis) {
+		return new AppProperties(configPath, debounceMillis, false);
+	}
+
+	/**
+	 * Method to get instance of {@link AppProperties} object and initiate loading
+	 * the properties in the cache
+	 * 
+	 * @param configPath     File path in which the properties are stored
+	 * @param debounceMillis Quiet period after the last change of the file before
+	 *                       it is reloaded, {@code 0} or less disables automatic
+	 *                       reloading
+	 * @param compiled       Whether to load through the compiled snapshot
+	 *                       {@code configPath + ".bin"}, memory-mapped and decoded
+	 *                       lazily, which is regenerated whenever the size,
+	 *                       modification time or identity of the file change
+	 * @return Instance of {@link AppProperties} object
+	 */
+	public static AppProperties initateLoadingProperties(String configPath, long debounceMillis,
+			boolean compiled) {
+		return new AppProperties(configPath, debounceMillis, compiled);
+	}
+
+	/**
+	 * Method to get instance of {@link AppProperties} object and initiate loading
+	 * layered sources, e.g. the base file, a per-pod override file, a
+	 * {@link DirectoryPropertySource}, {@link EnvironmentPropertySource} and
+	 * {@link SystemPropertySource}. The winning value of every key is resolved
+	 * once per load, so that lookups stay a single hash probe. Sources with a
+	 * watch path are read again, alone, when they change.
+	 * 
+	 * @param sources        Layers, lowest precedence first
+	 * @param debounceMillis Quiet period after the last change of a source before
+	 *                       it is reloaded, {@code 0} or less disables automatic
+	 *                       reloading
+	 * @return Instance of {@link AppProperties} object
+	 */
+	public static AppProperties initateLoadingProperties(List<PropertySource> sources, long debounceMillis) {
+		return new AppProperties(sources, debounceMillis);
+	}
+
+	/**
+	 * Method to read every layered source again
+	 * 
+	 * @throws ConfigException Thrown when the properties were not loaded from
+	 *                         layered sources, or a source cannot be read
+	 */
+	public void refreshSources() {
+		synchronized (LOAD_LOCK) {
+			if (layers == null)
+				throw ConfigException.getInstance("properties are not loaded from layered sources");
+			loadLayers(-1);
+		}
 	}
 
 	/**
@@ -110,11 +607,23 @@ public class AppProperties {
 				LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MMM-dd hh:mm:ss.SSS")));
 	}
 
+	/**
+	 * Method to stop reloading the property file automatically
+	 */
+	public void stopWatching() {
+		synchronized (LOAD_LOCK) {
+			closeWatchers();
+		}
+	}
+
 	/**
 	 * Method to clear the properties
 	 */
 	public void clean() {
-		props.clear();
+		synchronized (LOAD_LOCK) {
+			snapshot = PropertySnapshot.EMPTY;
+			NOTIFIER.published();
+		}
 		Log.info(this.getClass().getSimpleName(), "clean", "properties cleared");
 	}
 }
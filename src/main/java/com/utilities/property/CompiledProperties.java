@@ -0,0 +1,280 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Read-only, memory-mapped compiled form of a property file, used by
+ * {@link AppProperties} to skip parsing the text file when it did not change.
+ *
+ * <p>
+ * Layout, big endian:
+ * </p>
+ *
+ * <pre>
+ * header  magic (4) | format version (4) | stamp of the text file (32)
+ *         | key count (4) | blob offset (4) | blob length (4)
+ * table   per key, sorted by the unsigned bytes of the key:
+ *         key offset (4) | key length (4) | value offset (4) | value length (4)
+ * blob    UTF-8 keys and values, offsets relative to the blob
+ * </pre>
+ *
+ * <p>
+ * Opening only validates the header, lookups binary search the table in the
+ * mapping, and nothing is decoded before it is looked up. Mapped pages are
+ * shared by every JVM of the host opening the same file.
+ * </p>
+ *
+ * <p>
+ * The stamp is the SHA-256 of the size, modification time and file key (the
+ * device and inode on Unix) of the text file, so checking that a compiled file
+ * is current reads the attributes of the text file, never its content. An
+ * editor rewriting the same number of bytes within the timestamp resolution of
+ * the file system would go unnoticed, which the nanosecond timestamps of the
+ * usual Linux file systems rule out in practice.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class CompiledProperties {
+
+	private static final int MAGIC = 0x41505342;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final int STAMP_LENGTH = 32;
+
+	private static final int HEADER_LENGTH = 4 + 4 + STAMP_LENGTH + 4 + 4 + 4;
+
+	private static final int ENTRY_LENGTH = 16;
+
+	private final MappedByteBuffer buffer;
+
+	private final int count;
+
+	private final int blobOffset;
+
+	private CompiledProperties(MappedByteBuffer buffer, int count, int blobOffset) {
+		this.buffer = buffer;
+		this.count = count;
+		this.blobOffset = blobOffset;
+	}
+
+	/**
+	 * Method to compute the stamp a compiled file is checked against, from the
+	 * attributes of the text file
+	 *
+	 * @param file Text property file
+	 * @return Stamp of the file
+	 * @throws IOException Thrown when the attributes cannot be read
+	 */
+	static byte[] stamp(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		String identity = attributes.size() + ":" + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) + ":"
+				+ attributes.fileKey();
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw ConfigException.getInstance("SHA-256 not available: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Method to map a compiled file
+	 *
+	 * @param file          Compiled file
+	 * @param expectedStamp Stamp of the text file it must have been compiled from
+	 * @return Mapped instance of {@link CompiledProperties}, or {@code null} if
+	 *         the file is missing, corrupt or compiled from another text file
+	 * @throws IOException Thrown when an existing file cannot be read
+	 */
+	static CompiledProperties open(Path file, byte[] expectedStamp) throws IOException {
+		if (!Files.isRegularFile(file))
+			return null;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_LENGTH || length > Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+				return null;
+			byte[] stamp = new byte[STAMP_LENGTH];
+			buffer.get(8, stamp);
+			if (!MessageDigest.isEqual(stamp, expectedStamp))
+				return null;
+			int count = buffer.getInt(8 + STAMP_LENGTH);
+			int blobOffset = buffer.getInt(12 + STAMP_LENGTH);
+			int blobLength = buffer.getInt(16 + STAMP_LENGTH);
+			if (count < 0 || blobOffset != HEADER_LENGTH + (long) count * ENTRY_LENGTH
+					|| (long) blobOffset + blobLength != length)
+				return null;
+			return new CompiledProperties(buffer, count, blobOffset);
+		}
+	}
+
+	/**
+	 * Method to write a compiled file, replacing an existing one atomically
+	 *
+	 * @param file   Compiled file
+	 * @param values Keys and values of the text file
+	 * @param stamp  Stamp of the text file
+	 * @throws IOException Thrown when the file cannot be written
+	 */
+	static void write(Path file, Map<String, String> values, byte[] stamp) throws IOException {
+		byte[][] keys = new byte[values.size()][];
+		byte[][] vals = new byte[values.size()][];
+		Integer[] order = new Integer[values.size()];
+		int i = 0;
+		long blobLength = 0;
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			vals[i] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+			blobLength += keys[i].length + vals[i].length;
+			order[i] = i;
+			i++;
+		}
+		Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+		long blobOffset = HEADER_LENGTH + (long) order.length * ENTRY_LENGTH;
+		if (blobOffset + blobLength > Integer.MAX_VALUE)
+			throw new IOException("properties too large to compile: " + file);
+
+		ByteBuffer out = ByteBuffer.allocate((int) (blobOffset + blobLength));
+		out.putInt(MAGIC).putInt(FORMAT_VERSION).put(stamp).putInt(order.length).putInt((int) blobOffset)
+				.putInt((int) blobLength);
+		int position = 0;
+		for (int index : order) {
+			out.putInt(position).putInt(keys[index].length);
+			position += keys[index].length;
+			out.putInt(position).putInt(vals[index].length);
+			position += vals[index].length;
+		}
+		for (int index : order)
+			out.put(keys[index]).put(vals[index]);
+		out.flip();
+
+		Path temp = file.resolveSibling(file.getFileName() + ".temp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (out.hasRemaining())
+					channel.write(out);
+				channel.force(true);
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Method to look a key up
+	 *
+	 * @param key Key in the property file
+	 * @return Value or {@code null} if the key is not present
+	 */
+	String lookup(String key) {
+		int index = indexOf(key.getBytes(StandardCharsets.UTF_8));
+		return index < 0 ? null : value(index);
+	}
+
+	/**
+	 * Method to binary search the table
+	 *
+	 * @param key UTF-8 bytes of the key
+	 * @return Index of the key, or {@code -(insertion point) - 1} if absent
+	 */
+	int indexOf(byte[] key) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareKey(mid, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	private int compareKey(int index, byte[] key) {
+		int entry = HEADER_LENGTH + index * ENTRY_LENGTH;
+		int offset = blobOffset + buffer.getInt(entry);
+		int length = buffer.getInt(entry + 4);
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++) {
+			int cmp = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length;
+	}
+
+	/**
+	 * Method to decode the key at a position of the table
+	 *
+	 * @param index Position in the table
+	 * @return Key
+	 */
+	String key(int index) {
+		return string(HEADER_LENGTH + index * ENTRY_LENGTH);
+	}
+
+	/**
+	 * Method to decode the value at a position of the table
+	 *
+	 * @param index Position in the table
+	 * @return Value
+	 */
+	String value(int index) {
+		return string(HEADER_LENGTH + index * ENTRY_LENGTH + 8);
+	}
+
+	private String string(int reference) {
+		byte[] bytes = new byte[buffer.getInt(reference + 4)];
+		buffer.get(blobOffset + buffer.getInt(reference), bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Method to get the number of keys
+	 *
+	 * @return Number of keys
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Method to decode every key and value, in key order
+	 *
+	 * @param action Receiver of the keys and values
+	 */
+	void forEach(BiConsumer<String, String> action) {
+		for (int i = 0; i < count; i++)
+			action.accept(key(i), value(i));
+	}
+}
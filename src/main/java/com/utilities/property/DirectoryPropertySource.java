@@ -0,0 +1,79 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link PropertySource} reading a directory holding one file per key, the
+ * file name being the key and its content the value. This is the layout
+ * produced by config store agents and mounted config maps, and stands in for a
+ * remote config store: the agent syncs the store into the directory and the
+ * directory is watched like any other file.
+ *
+ * <p>
+ * Hidden files, including the {@code ..data} links of mounted volumes, and
+ * subdirectories are skipped. A single trailing line break of a value is
+ * removed.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class DirectoryPropertySource implements PropertySource {
+
+	private final Path directory;
+
+	private DirectoryPropertySource(Path directory) {
+		this.directory = directory.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Method to get a new instance of {@link DirectoryPropertySource}
+	 *
+	 * @param directory Directory holding one file per key
+	 * @return New instance of {@link DirectoryPropertySource}
+	 */
+	public static DirectoryPropertySource getInstance(String directory) {
+		return new DirectoryPropertySource(Paths.get(directory));
+	}
+
+	@Override
+	public String getName() {
+		return "directory:" + directory;
+	}
+
+	@Override
+	public Map<String, String> load() throws IOException {
+		if (!Files.isDirectory(directory))
+			return Collections.emptyMap();
+		Map<String, String> values = new HashMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String key = file.getFileName().toString();
+				if (key.startsWith(".") || !Files.isRegularFile(file))
+					continue;
+				values.put(key, trimLineBreak(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+			}
+		}
+		return values;
+	}
+
+	private static String trimLineBreak(String value) {
+		if (value.endsWith("\r\n"))
+			return value.substring(0, value.length() - 2);
+		if (value.endsWith("\n"))
+			return value.substring(0, value.length() - 1);
+		return value;
+	}
+
+	@Override
+	public Path getWatchPath() {
+		return directory;
+	}
+}
@@ -0,0 +1,50 @@
+package com.utilities.property;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link PropertySource} reading the environment variables starting with a
+ * prefix. The prefix is removed, the rest is lower-cased and underscores become
+ * dots, so that {@code APP_KAFKA_RETRIES} with the prefix {@code APP_} overrides
+ * {@code kafka.retries}.
+ *
+ * @author Kabir Akware
+ */
+public final class EnvironmentPropertySource implements PropertySource {
+
+	private final String prefix;
+
+	private final Map<String, String> environment;
+
+	private EnvironmentPropertySource(String prefix, Map<String, String> environment) {
+		this.prefix = prefix;
+		this.environment = environment;
+	}
+
+	/**
+	 * Method to get a new instance of {@link EnvironmentPropertySource}
+	 *
+	 * @param prefix Prefix of the variables to read, e.g. {@code APP_}
+	 * @return New instance of {@link EnvironmentPropertySource}
+	 */
+	public static EnvironmentPropertySource getInstance(String prefix) {
+		return new EnvironmentPropertySource(prefix, System.getenv());
+	}
+
+	@Override
+	public String getName() {
+		return "env:" + prefix;
+	}
+
+	@Override
+	public Map<String, String> load() {
+		Map<String, String> values = new HashMap<>();
+		environment.forEach((name, value) -> {
+			if (name.startsWith(prefix) && name.length() > prefix.length())
+				values.put(name.substring(prefix.length()).toLowerCase(Locale.ROOT).replace('_', '.'), value);
+		});
+		return values;
+	}
+}
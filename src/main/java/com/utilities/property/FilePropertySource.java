@@ -0,0 +1,77 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link PropertySource} reading a {@code .properties} file, e.g. the base
+ * configuration or a per-pod override file.
+ *
+ * @author Kabir Akware
+ */
+public final class FilePropertySource implements PropertySource {
+
+	private final Path path;
+
+	/**
+	 * Whether a missing file is read as empty rather than failing the load
+	 */
+	private final boolean optional;
+
+	private FilePropertySource(Path path, boolean optional) {
+		this.path = path.toAbsolutePath().normalize();
+		this.optional = optional;
+	}
+
+	/**
+	 * Method to get a new instance of {@link FilePropertySource}
+	 *
+	 * @param path     Property file path
+	 * @param optional Whether a missing file is read as empty
+	 * @return New instance of {@link FilePropertySource}
+	 */
+	public static FilePropertySource getInstance(String path, boolean optional) {
+		return new FilePropertySource(Paths.get(path), optional);
+	}
+
+	@Override
+	public String getName() {
+		return "file:" + path;
+	}
+
+	@Override
+	public Map<String, String> load() throws IOException {
+		if (optional && !Files.exists(path))
+			return Collections.emptyMap();
+		Properties loaded = new Properties();
+		try {
+			PropertyFileUpdater.readLocked(path.toString(), () -> {
+				try (InputStream is = Files.newInputStream(path)) {
+					loaded.load(is);
+				}
+				return loaded;
+			});
+		} catch (NoSuchFileException e) {
+			if (optional)
+				return Collections.emptyMap();
+			throw e;
+		}
+		Map<String, String> values = new HashMap<>();
+		for (String key : loaded.stringPropertyNames())
+			values.put(key, loaded.getProperty(key));
+		return values;
+	}
+
+	@Override
+	public Path getWatchPath() {
+		return path;
+	}
+}
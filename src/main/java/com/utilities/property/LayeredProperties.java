@@ -0,0 +1,99 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Merges the {@link PropertySource} layers given to {@link AppProperties} into
+ * the flat map a snapshot is built from, so that precedence is resolved once
+ * per load instead of on every lookup.
+ *
+ * <p>
+ * The last loaded content of every layer is kept, and a change of one source
+ * only reads that source again before merging. Callers serialise the loads.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class LayeredProperties {
+
+	private final List<PropertySource> sources;
+
+	private final List<Map<String, String>> loaded;
+
+	private LayeredProperties(List<PropertySource> sources) {
+		if (sources.isEmpty())
+			throw ConfigException.getInstance("at least one property source is required");
+		this.sources = List.copyOf(sources);
+		this.loaded = new ArrayList<>(Collections.nCopies(sources.size(), Collections.emptyMap()));
+	}
+
+	/**
+	 * Method to get a new instance of {@link LayeredProperties}
+	 *
+	 * @param sources Layers, lowest precedence first
+	 * @return New instance of {@link LayeredProperties}
+	 */
+	static LayeredProperties getInstance(List<PropertySource> sources) {
+		return new LayeredProperties(sources);
+	}
+
+	List<PropertySource> getSources() {
+		return sources;
+	}
+
+	/**
+	 * Method to read every layer again and merge them
+	 *
+	 * @return Winning value of every key
+	 * @throws IOException Thrown when a source cannot be read
+	 */
+	Map<String, String> reloadAll() throws IOException {
+		for (int i = 0; i < sources.size(); i++)
+			loaded.set(i, sources.get(i).load());
+		return merge();
+	}
+
+	/**
+	 * Method to read one layer again and merge it with the others
+	 *
+	 * @param index Position of the changed layer
+	 * @return Winning value of every key
+	 * @throws IOException Thrown when the source cannot be read
+	 */
+	Map<String, String> reload(int index) throws IOException {
+		loaded.set(index, sources.get(index).load());
+		return merge();
+	}
+
+	private Map<String, String> merge() {
+		int size = 0;
+		for (Map<String, String> layer : loaded)
+			size += layer.size();
+		Map<String, String> merged = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+		for (Map<String, String> layer : loaded)
+			merged.putAll(layer);
+		return merged;
+	}
+
+	/**
+	 * Method to describe the layers in precedence order, for logs
+	 *
+	 * @return Names of the sources
+	 */
+	String describe() {
+		StringBuilder builder = new StringBuilder();
+		for (PropertySource source : sources) {
+			if (builder.length() > 0)
+				builder.append(" < ");
+			builder.append(source.getName());
+		}
+		return builder.toString();
+	}
+}
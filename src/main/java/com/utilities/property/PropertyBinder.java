@@ -0,0 +1,146 @@
+package com.utilities.property;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.List;
+
+import com.utilities.exceptions.ConfigException;
+
+/**
+ * Binds the keys of a {@link PropertyView} onto the components of a record.
+ *
+ * <p>
+ * A component named {@code bootstrapServers} is read from the key
+ * {@code bootstrapServers} or, if absent, {@code bootstrap-servers} relative to
+ * the prefix. Supported component types are {@link String}, {@code int},
+ * {@code long}, {@code boolean} and their wrappers, {@link Duration} and
+ * {@code List<String>}. Missing keys bind to {@code null}, an empty list, or
+ * for primitives fail. The reflective lookup of a record type is done once and
+ * kept in a {@link ClassValue}.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PropertyBinder {
+
+	private static final ClassValue<Binding> BINDINGS = new ClassValue<>() {
+		@Override
+		protected Binding computeValue(Class<?> type) {
+			return new Binding(type);
+		}
+	};
+
+	private PropertyBinder() {
+	}
+
+	/**
+	 * Method to bind a view onto a new record
+	 *
+	 * @param <T>  Record type
+	 * @param view View holding the keys of the record
+	 * @param type Record class
+	 * @return New record
+	 * @throws ConfigException Thrown when a value cannot be bound
+	 */
+	static <T extends Record> T bind(PropertyView view, Class<T> type) {
+		return type.cast(BINDINGS.get(type).bind(view));
+	}
+
+	/**
+	 * Components and canonical constructor of a record type
+	 */
+	private static final class Binding {
+
+		private final Class<?> type;
+
+		private final RecordComponent[] components;
+
+		private final String[] kebabNames;
+
+		private final Constructor<?> constructor;
+
+		private Binding(Class<?> type) {
+			if (!type.isRecord())
+				throw ConfigException.getInstance(type.getName() + " is not a record");
+			this.type = type;
+			this.components = type.getRecordComponents();
+			this.kebabNames = new String[components.length];
+			Class<?>[] parameterTypes = new Class<?>[components.length];
+			for (int i = 0; i < components.length; i++) {
+				kebabNames[i] = kebab(components[i].getName());
+				parameterTypes[i] = components[i].getType();
+			}
+			try {
+				this.constructor = type.getDeclaredConstructor(parameterTypes);
+				this.constructor.setAccessible(true);
+			} catch (NoSuchMethodException | RuntimeException e) {
+				throw ConfigException.getInstance("unable to bind " + type.getName() + ": " + e.getMessage());
+			}
+		}
+
+		private Object bind(PropertyView view) {
+			Object[] arguments = new Object[components.length];
+			for (int i = 0; i < components.length; i++) {
+				String name = view.get(components[i].getName()) != null ? components[i].getName() : kebabNames[i];
+				arguments[i] = value(view, name, components[i]);
+			}
+			try {
+				return constructor.newInstance(arguments);
+			} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw ConfigException.getInstance("unable to bind " + type.getName() + ": " + e.getMessage());
+			}
+		}
+
+		private static Object value(PropertyView view, String name, RecordComponent component) {
+			Class<?> target = component.getType();
+			String key = view.getPrefix() + name;
+			String raw = view.get(name);
+			if (raw == null) {
+				if (target == List.class)
+					return List.of();
+				if (target.isPrimitive())
+					throw ConfigException.getInstance("property not found: " + key);
+				return null;
+			}
+			try {
+				if (target == String.class)
+					return raw;
+				if (target == int.class || target == Integer.class)
+					return view.getInt(name, 0);
+				if (target == long.class || target == Long.class)
+					return view.getLong(name, 0L);
+				if (target == boolean.class || target == Boolean.class)
+					return view.getBoolean(name, false);
+				if (target == Duration.class)
+					return view.getDuration(name, null);
+				if (target == List.class && isStringList(component.getGenericType()))
+					return view.getList(name);
+			} catch (IllegalArgumentException e) {
+				throw ConfigException.getInstance("invalid value of " + key + ": " + e.getMessage());
+			}
+			throw ConfigException.getInstance("unsupported type " + component.getGenericType() + " of " + key);
+		}
+
+		private static boolean isStringList(Type type) {
+			return !(type instanceof ParameterizedType)
+					|| ((ParameterizedType) type).getActualTypeArguments()[0] == String.class;
+		}
+
+		private static String kebab(String name) {
+			StringBuilder builder = new StringBuilder(name.length() + 4);
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (Character.isUpperCase(c)) {
+					builder.append('-').append(Character.toLowerCase(c));
+				} else {
+					builder.append(c);
+				}
+			}
+			return builder.toString();
+		}
+	}
+}
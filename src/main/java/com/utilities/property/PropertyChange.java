@@ -0,0 +1,64 @@
+package com.utilities.property;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Change of a single key between two loads of the property file, delivered to
+ * {@link PropertyChangeListener}s.
+ *
+ * @author Kabir Akware
+ */
+@Getter
+@ToString
+public final class PropertyChange {
+
+	/**
+	 * Kind of a change
+	 */
+	public enum Type {
+		ADDED, REMOVED, CHANGED
+	}
+
+	private final String key;
+
+	/**
+	 * Value before the reload, {@code null} when the key was added
+	 */
+	private final String oldValue;
+
+	/**
+	 * Value after the reload, {@code null} when the key was removed
+	 */
+	private final String newValue;
+
+	private final Type type;
+
+	/**
+	 * Private constructor to set the change
+	 *
+	 * @param key      Key in the property file
+	 * @param oldValue Value before the reload
+	 * @param newValue Value after the reload
+	 * @param type     Kind of change
+	 */
+	private PropertyChange(String key, String oldValue, String newValue, Type type) {
+		this.key = key;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+		this.type = type;
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertyChange}
+	 *
+	 * @param key      Key in the property file
+	 * @param oldValue Value before the reload, {@code null} when added
+	 * @param newValue Value after the reload, {@code null} when removed
+	 * @return New instance of {@link PropertyChange}
+	 */
+	static PropertyChange getInstance(String key, String oldValue, String newValue) {
+		Type type = oldValue == null ? Type.ADDED : newValue == null ? Type.REMOVED : Type.CHANGED;
+		return new PropertyChange(key, oldValue, newValue, type);
+	}
+}
@@ -0,0 +1,22 @@
+package com.utilities.property;
+
+import java.util.List;
+
+/**
+ * Receiver of the changes of the keys it subscribed to through
+ * {@link AppProperties#subscribeKeys} or {@link AppProperties#subscribePrefixes}.
+ *
+ * @author Kabir Akware
+ */
+@FunctionalInterface
+public interface PropertyChangeListener {
+
+	/**
+	 * Method invoked on the notifier thread after one or more reloads changed
+	 * subscribed keys. Reloads following each other quickly are coalesced into
+	 * one notification holding the net changes.
+	 *
+	 * @param changes Changes of the subscribed keys, never empty
+	 */
+	void onChange(List<PropertyChange> changes);
+}
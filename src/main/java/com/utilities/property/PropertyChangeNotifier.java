@@ -0,0 +1,229 @@
+package com.utilities.property;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.utilities.log.Log;
+
+/**
+ * Computes the changes between property snapshots and routes them to the
+ * listeners subscribed to the affected keys or prefixes.
+ *
+ * <p>
+ * A publication only schedules a dispatch on the notifier thread. The dispatch
+ * diffs the last delivered snapshot against the current one in a single pass
+ * over each, so reloads published before it runs are coalesced into their net
+ * changes, and the diff is computed once whatever the number of listeners.
+ * Exact keys are routed with one hash lookup per change, prefixes by scanning
+ * the prefix subscriptions only.
+ * </p>
+ *
+ * <p>
+ * A listener subscribing while a dispatch is pending has already read the
+ * snapshot it diffs to, so the changes up to the snapshot published when it
+ * subscribed are dropped for it.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PropertyChangeNotifier {
+
+	private final Supplier<PropertySnapshot> current;
+
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private final Object subscriptionLock = new Object();
+
+	/**
+	 * Subscriptions by exact key, replaced as a whole on every change
+	 */
+	private volatile Map<String, List<PropertySubscription>> byKey = Collections.emptyMap();
+
+	/**
+	 * Subscriptions with at least one prefix, replaced as a whole on every change
+	 */
+	private volatile List<PropertySubscription> byPrefix = Collections.emptyList();
+
+	private final ExecutorService executor;
+
+	/**
+	 * Subscriptions still holding the snapshot published when they subscribed,
+	 * guarded by {@link #subscriptionLock}
+	 */
+	private final List<PropertySubscription> catchingUp = new ArrayList<>();
+
+	/**
+	 * Snapshot the listeners were last brought up to date with, only accessed on
+	 * the notifier thread
+	 */
+	private PropertySnapshot delivered;
+
+	/**
+	 * Private constructor to set the snapshot source and create the notifier
+	 * thread
+	 *
+	 * @param current Supplier of the currently published snapshot
+	 */
+	private PropertyChangeNotifier(Supplier<PropertySnapshot> current) {
+		this.current = current;
+		this.delivered = current.get();
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "property-change-notifier");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertyChangeNotifier}
+	 *
+	 * @param current Supplier of the currently published snapshot
+	 * @return New instance of {@link PropertyChangeNotifier}
+	 */
+	static PropertyChangeNotifier getInstance(Supplier<PropertySnapshot> current) {
+		return new PropertyChangeNotifier(current);
+	}
+
+	/**
+	 * Method to register a listener
+	 *
+	 * @param keys     Exact keys to subscribe to
+	 * @param prefixes Key prefixes to subscribe to
+	 * @param listener Listener receiving the changes
+	 * @return Subscription used to cancel the registration
+	 */
+	PropertySubscription add(String[] keys, String[] prefixes, PropertyChangeListener listener) {
+		Set<String> keySet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(keys)));
+		PropertySubscription subscription = PropertySubscription.getInstance(keySet, prefixes.clone(), listener, this,
+				current.get());
+		synchronized (subscriptionLock) {
+			catchingUp.add(subscription);
+			Map<String, List<PropertySubscription>> keyed = new HashMap<>(byKey);
+			for (String key : subscription.getKeys()) {
+				List<PropertySubscription> list = new ArrayList<>(keyed.getOrDefault(key, Collections.emptyList()));
+				list.add(subscription);
+				keyed.put(key, Collections.unmodifiableList(list));
+			}
+			byKey = keyed;
+			if (subscription.hasPrefixes()) {
+				List<PropertySubscription> prefixed = new ArrayList<>(byPrefix);
+				prefixed.add(subscription);
+				byPrefix = Collections.unmodifiableList(prefixed);
+			}
+		}
+		return subscription;
+	}
+
+	/**
+	 * Method to unregister a listener
+	 *
+	 * @param subscription Subscription to cancel
+	 */
+	void remove(PropertySubscription subscription) {
+		synchronized (subscriptionLock) {
+			catchingUp.remove(subscription);
+			Map<String, List<PropertySubscription>> keyed = new HashMap<>(byKey);
+			for (String key : subscription.getKeys()) {
+				List<PropertySubscription> list = new ArrayList<>(keyed.getOrDefault(key, Collections.emptyList()));
+				list.remove(subscription);
+				if (list.isEmpty())
+					keyed.remove(key);
+				else
+					keyed.put(key, Collections.unmodifiableList(list));
+			}
+			byKey = keyed;
+			if (subscription.hasPrefixes()) {
+				List<PropertySubscription> prefixed = new ArrayList<>(byPrefix);
+				prefixed.remove(subscription);
+				byPrefix = Collections.unmodifiableList(prefixed);
+			}
+		}
+	}
+
+	/**
+	 * Method to signal that a new snapshot was published. Returns immediately,
+	 * the diff and the notifications run on the notifier thread.
+	 */
+	void published() {
+		if (scheduled.compareAndSet(false, true))
+			executor.execute(this::dispatch);
+	}
+
+	private void dispatch() {
+		scheduled.set(false);
+		PropertySnapshot previous = delivered;
+		PropertySnapshot next = current.get();
+		delivered = next;
+		if (previous != next && (!byKey.isEmpty() || !byPrefix.isEmpty())) {
+			Map<PropertySubscription, List<PropertyChange>> routed = new IdentityHashMap<>();
+			for (PropertyChange change : diff(previous, next))
+				route(change, routed);
+			routed.forEach((subscription, changes) -> {
+				List<PropertyChange> unseen = subscription.unseen(changes, previous, next);
+				if (!unseen.isEmpty())
+					notify(subscription, unseen);
+			});
+		}
+		synchronized (subscriptionLock) {
+			catchingUp.removeIf(subscription -> subscription.caughtUp(next));
+		}
+	}
+
+	/**
+	 * Method to compute the changes between two snapshots
+	 *
+	 * @param previous Snapshot the listeners last saw
+	 * @param next     Snapshot now published
+	 * @return Added, changed and removed keys
+	 */
+	static List<PropertyChange> diff(PropertySnapshot previous, PropertySnapshot next) {
+		Map<String, TypedValue> before = previous.getValues();
+		Map<String, TypedValue> after = next.getValues();
+		List<PropertyChange> changes = new ArrayList<>();
+		after.forEach((key, value) -> {
+			TypedValue old = before.get(key);
+			if (old == null)
+				changes.add(PropertyChange.getInstance(key, null, value.getRaw()));
+			else if (!old.getRaw().equals(value.getRaw()))
+				changes.add(PropertyChange.getInstance(key, old.getRaw(), value.getRaw()));
+		});
+		before.forEach((key, value) -> {
+			if (!after.containsKey(key))
+				changes.add(PropertyChange.getInstance(key, value.getRaw(), null));
+		});
+		return changes;
+	}
+
+	private void route(PropertyChange change, Map<PropertySubscription, List<PropertyChange>> routed) {
+		List<PropertySubscription> exact = byKey.get(change.getKey());
+		if (exact != null)
+			for (PropertySubscription subscription : exact)
+				routed.computeIfAbsent(subscription, s -> new ArrayList<>()).add(change);
+		for (PropertySubscription subscription : byPrefix) {
+			if (subscription.matchesPrefix(change.getKey()) && (exact == null || !exact.contains(subscription)))
+				routed.computeIfAbsent(subscription, s -> new ArrayList<>()).add(change);
+		}
+	}
+
+	private void notify(PropertySubscription subscription, List<PropertyChange> changes) {
+		try {
+			subscription.getListener().onChange(Collections.unmodifiableList(changes));
+		} catch (RuntimeException e) {
+			Log.error(this.getClass().getSimpleName(), "notify", "property change listener failed: %n%s",
+					ExceptionUtils.getStackTrace(e));
+		}
+	}
+}
@@ -0,0 +1,489 @@
+package com.utilities.property;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import com.utilities.log.Log;
+
+/**
+ * Byte offset index of the lines of a property file, letting
+ * {@link PropertyFileUpdater} edit large files without copying them.
+ *
+ * <p>
+ * The index maps every key to the offsets of its value, with the same key
+ * matching as the full rewrite: the text before the first {@code =} of a line.
+ * It is built from a memory-mapped scan of the file and only rebuilt when the
+ * file differs from the one it was built for: another modification time, size
+ * or file key, the latter catching a file replaced by a move, or another CRC32
+ * of its last {@value #TAIL_CHECK_BYTES} bytes, catching an edit of the same
+ * size within the timestamp resolution of the file system. Updates are applied
+ * in one of two ways:
+ * </p>
+ * <ul>
+ * <li>when every key exists and no new value is longer than the old one, the
+ * values are patched in place through a memory-mapped region, and the bytes
+ * freed by a shorter value are turned into a comment line</li>
+ * <li>otherwise the file is rewritten from the first affected line only, and
+ * missing keys are appended. The new tail is first written and flushed to the
+ * journal {@code <file>.tail}, which is only deleted once the file is copied
+ * over, truncated and flushed. A rewrite interrupted by a crash or a full
+ * disk is replayed from the journal before the file is next indexed or
+ * loaded, so the old tail never outlives the new one.</li>
+ * </ul>
+ *
+ * <p>
+ * Patches edit the file itself, so a crash in the middle of one can leave
+ * some of its values updated and others not. {@link PropertyFileUpdater}
+ * therefore only uses the index for files too large to copy on every update.
+ * Callers must hold the update locks of the file.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PropertyFileIndex {
+
+	private static final Map<Path, PropertyFileIndex> INDEXES = new ConcurrentHashMap<>();
+
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+
+	/**
+	 * Number of bytes at the end of the file whose checksum is part of the stamp
+	 */
+	private static final int TAIL_CHECK_BYTES = 4096;
+
+	/**
+	 * Last bytes of a complete journal, see {@link #apply}
+	 */
+	private static final long JOURNAL_MAGIC = 0x50524f504a524e4cL;
+
+	private static final int JOURNAL_TRAILER_BYTES = 24;
+
+	private final Path path;
+
+	private final Charset charset = Charset.defaultCharset();
+
+	/**
+	 * Line of the first occurrence of every key
+	 */
+	private final Map<String, Line> lines = new HashMap<>();
+
+	/**
+	 * Keys occurring on more than one line, whose every occurrence must be
+	 * updated and which are therefore left to the tail rewrite
+	 */
+	private final Set<String> duplicates = new HashSet<>();
+
+	private FileTime modified;
+
+	private long size;
+
+	private Object fileKey;
+
+	private long tailChecksum;
+
+	private PropertyFileIndex(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Method to get the up to date index of a file, building it if the file
+	 * changed since it was last indexed, after replaying an interrupted tail
+	 * rewrite
+	 *
+	 * @param path Property file
+	 * @return Index of the file
+	 * @throws IOException Thrown when the file cannot be read
+	 */
+	static PropertyFileIndex forFile(Path path) throws IOException {
+		Path key = path.toAbsolutePath().normalize();
+		recover(key);
+		PropertyFileIndex index = INDEXES.computeIfAbsent(key, PropertyFileIndex::new);
+		if (index.isStale())
+			index.rebuild();
+		return index;
+	}
+
+	private void rebuild() throws IOException {
+		lines.clear();
+		duplicates.clear();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("property file too large to index: " + path);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			scan(buffer, 0L);
+		}
+		stamp();
+	}
+
+	/**
+	 * Method to index the lines of a buffer
+	 *
+	 * @param buffer Bytes of the file starting at a line start
+	 * @param offset Offset of the first byte of the buffer in the file
+	 */
+	private void scan(ByteBuffer buffer, long offset) {
+		int limit = buffer.limit();
+		int start = 0;
+		while (start < limit) {
+			int separator = -1;
+			int end = start;
+			while (end < limit && buffer.get(end) != '\n') {
+				if (separator < 0 && buffer.get(end) == '=')
+					separator = end;
+				end++;
+			}
+			if (separator >= 0) {
+				byte[] keyBytes = new byte[separator - start];
+				buffer.get(start, keyBytes);
+				String key = new String(keyBytes, charset);
+				int valueEnd = end > separator + 1 && buffer.get(end - 1) == '\r' ? end - 1 : end;
+				Line line = new Line(offset + start, offset + separator + 1, offset + valueEnd);
+				if (lines.putIfAbsent(key, line) != null)
+					duplicates.add(key);
+			}
+			start = end + 1;
+		}
+	}
+
+	private boolean isStale() throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		return !attributes.lastModifiedTime().equals(modified) || attributes.size() != size
+				|| !Objects.equals(attributes.fileKey(), fileKey) || tailChecksum(attributes.size()) != tailChecksum;
+	}
+
+	private void stamp() throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		modified = attributes.lastModifiedTime();
+		size = attributes.size();
+		fileKey = attributes.fileKey();
+		tailChecksum = tailChecksum(size);
+	}
+
+	/**
+	 * Method to compute the checksum of the end of the file
+	 *
+	 * @param length Size of the file
+	 * @return CRC32 of the last {@value #TAIL_CHECK_BYTES} bytes
+	 * @throws IOException Thrown when the file cannot be read
+	 */
+	private long tailChecksum(long length) throws IOException {
+		ByteBuffer tail = ByteBuffer.allocate((int) Math.min(length, TAIL_CHECK_BYTES));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = length - tail.capacity();
+			while (tail.hasRemaining() && channel.read(tail, position + tail.position()) >= 0) {
+				// read until full or end of file
+			}
+		}
+		tail.flip();
+		CRC32 crc = new CRC32();
+		crc.update(tail);
+		return crc.getValue();
+	}
+
+	/**
+	 * Method to apply updates to the file. Values fitting in the bytes of their
+	 * line before the first line which must be rewritten are patched in place,
+	 * the rest of the file from that line on is rewritten, and missing keys are
+	 * appended.
+	 *
+	 * @param properties Keys and values to add or update
+	 * @throws IOException Thrown when the file cannot be updated
+	 */
+	void update(Map<String, String> properties) throws IOException {
+		Map<String, byte[]> values = new LinkedHashMap<>();
+		long tailStart = size;
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+			byte[] value = String.valueOf(entry.getValue()).getBytes(charset);
+			values.put(entry.getKey(), value);
+			Line line = lines.get(entry.getKey());
+			if (line != null && (duplicates.contains(entry.getKey()) || value.length > line.capacity()))
+				tailStart = Math.min(tailStart, line.start);
+		}
+
+		Map<String, byte[]> patched = new HashMap<>();
+		Map<String, byte[]> rewritten = new LinkedHashMap<>();
+		for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+			Line line = lines.get(entry.getKey());
+			if (line != null && line.start < tailStart)
+				patched.put(entry.getKey(), entry.getValue());
+			else
+				rewritten.put(entry.getKey(), entry.getValue());
+		}
+		if (!patched.isEmpty())
+			patch(patched);
+		if (!rewritten.isEmpty())
+			rewriteTail(rewritten, tailStart);
+		stamp();
+	}
+
+	/**
+	 * Method to overwrite values in place, every new value fitting in the bytes
+	 * reserved for the old one
+	 *
+	 * @param values New values by key, all present in the index
+	 * @throws IOException Thrown when the file cannot be written
+	 */
+	private void patch(Map<String, byte[]> values) throws IOException {
+		long from = Long.MAX_VALUE;
+		long to = 0L;
+		for (String key : values.keySet()) {
+			Line line = lines.get(key);
+			from = Math.min(from, line.valueStart);
+			to = Math.max(to, line.slotEnd);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, from, to - from);
+			for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+				Line line = lines.get(entry.getKey());
+				byte[] value = entry.getValue();
+				int position = (int) (line.valueStart - from);
+				region.put(position, value);
+				int freed = line.capacity() - value.length;
+				if (freed > 0) {
+					// the rest of the slot becomes a blank or comment line
+					region.put(position + value.length, (byte) '\n');
+					for (int i = 1; i < freed; i++)
+						region.put(position + value.length + i, i == 1 ? (byte) '#' : (byte) ' ');
+				}
+			}
+			region.force();
+		}
+	}
+
+	/**
+	 * Method to rewrite the file from the first affected line, then append the
+	 * keys not found. The tail is read through a read-only mapping and streamed
+	 * to the journal, so the heap never holds more than a buffer of it, and the
+	 * journal is then copied over the tail by {@link #apply}.
+	 *
+	 * @param values New values by key
+	 * @param from   Offset of the first affected line, or the file size when only
+	 *               appending
+	 * @throws IOException Thrown when the file cannot be written
+	 */
+	private void rewriteTail(Map<String, byte[]> values, long from) throws IOException {
+		Path journal = journal(path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long length = channel.size();
+			MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, from, length - from);
+			try (FileOutputStream file = new FileOutputStream(journal.toFile());
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+				if (from > 0 && from == length && !endsWithNewline(channel, length))
+					out.write(LINE_SEPARATOR);
+				writeTail(tail, values, out);
+				long rewrittenLength = out.size();
+				out.writeLong(from);
+				out.writeLong(rewrittenLength);
+				out.writeLong(JOURNAL_MAGIC);
+				out.flush();
+				file.getFD().sync();
+			}
+		}
+		PropertyFileUpdater.syncDirectory(journal.toAbsolutePath().getParent());
+
+		long rewrittenLength = apply(path, journal);
+		lines.values().removeIf(line -> line.start >= from);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			scan(channel.map(FileChannel.MapMode.READ_ONLY, from, rewrittenLength), from);
+		}
+		Files.delete(journal);
+		PropertyFileUpdater.syncDirectory(journal.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Method to get the journal of the tail rewrites of a file
+	 *
+	 * @param path Property file
+	 * @return Journal path, {@code <file>.tail}
+	 */
+	private static Path journal(Path path) {
+		return path.resolveSibling(path.getFileName() + ".tail");
+	}
+
+	/**
+	 * Method to check whether an interrupted tail rewrite of the file is waiting
+	 * to be replayed by {@link #recover}
+	 *
+	 * @param path Property file
+	 * @return {@code true} if a journal exists for the file
+	 */
+	static boolean pending(Path path) {
+		return Files.exists(journal(path));
+	}
+
+	/**
+	 * Method to replay the tail rewrite journaled for a file, left behind by an
+	 * update interrupted between writing its journal and truncating the file.
+	 * An incomplete journal means the file was not touched yet and is discarded.
+	 * Callers must hold the exclusive update locks of the file.
+	 *
+	 * @param path Property file
+	 * @return {@code true} if a journal was found, replayed or discarded
+	 * @throws IOException Thrown when the journal cannot be replayed
+	 */
+	static boolean recover(Path path) throws IOException {
+		Path journal = journal(path);
+		if (!Files.exists(journal))
+			return false;
+		if (apply(path, journal) >= 0)
+			Log.warn(PropertyFileIndex.class.getSimpleName(), "recover", "replayed interrupted update of %s", path);
+		Files.delete(journal);
+		PropertyFileUpdater.syncDirectory(journal.toAbsolutePath().getParent());
+		INDEXES.remove(path.toAbsolutePath().normalize());
+		return true;
+	}
+
+	/**
+	 * Method to copy a complete journal over the tail of the file, truncate the
+	 * file after it and flush it. Applying the same journal twice gives the same
+	 * file, so a crash at any point of it is repaired by replaying the journal.
+	 *
+	 * <pre>
+	 * journal  rewritten tail | offset in the file (8) | tail length (8) | magic (8)
+	 * </pre>
+	 *
+	 * @param path    Property file
+	 * @param journal Journal of the rewrite
+	 * @return Length of the rewritten tail, {@code -1} if the journal is
+	 *         incomplete and nothing was applied
+	 * @throws IOException Thrown when the file cannot be written
+	 */
+	private static long apply(Path path, Path journal) throws IOException {
+		try (FileChannel source = FileChannel.open(journal, StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = source.size();
+			if (size < JOURNAL_TRAILER_BYTES)
+				return -1L;
+			ByteBuffer trailer = ByteBuffer.allocate(JOURNAL_TRAILER_BYTES);
+			while (trailer.hasRemaining())
+				if (source.read(trailer, size - JOURNAL_TRAILER_BYTES + trailer.position()) < 0)
+					return -1L;
+			long from = trailer.getLong(0);
+			long length = trailer.getLong(8);
+			if (trailer.getLong(16) != JOURNAL_MAGIC || from < 0 || length != size - JOURNAL_TRAILER_BYTES)
+				return -1L;
+			long copied = 0L;
+			while (copied < length)
+				copied += target.transferFrom(source.position(copied), from + copied, length - copied);
+			target.truncate(from + length);
+			target.force(true);
+			return length;
+		}
+	}
+
+	/**
+	 * Method to write the lines of the tail with their new values, then the keys
+	 * not found
+	 *
+	 * @param tail   Bytes of the file from the first affected line
+	 * @param values New values by key
+	 * @param out    Rewritten tail
+	 * @throws IOException Thrown when the rewritten tail cannot be written
+	 */
+	private void writeTail(ByteBuffer tail, Map<String, byte[]> values, OutputStream out) throws IOException {
+		Set<String> pending = new HashSet<>(values.keySet());
+		byte[] chunk = new byte[8192];
+		int start = 0;
+		int limit = tail.limit();
+		while (start < limit) {
+			int end = start;
+			int separator = -1;
+			while (end < limit && tail.get(end) != '\n') {
+				if (separator < 0 && tail.get(end) == '=')
+					separator = end;
+				end++;
+			}
+			int lineEnd = end < limit ? end + 1 : end;
+			byte[] value = null;
+			String key = null;
+			if (separator >= 0) {
+				byte[] keyBytes = new byte[separator - start];
+				tail.get(start, keyBytes);
+				key = new String(keyBytes, charset);
+				value = values.get(key);
+			}
+			if (value == null) {
+				copy(tail, start, lineEnd, chunk, out);
+				if (end == limit && end > start)
+					out.write(LINE_SEPARATOR);
+			} else {
+				copy(tail, start, separator + 1, chunk, out);
+				out.write(value);
+				out.write(LINE_SEPARATOR);
+				pending.remove(key);
+			}
+			start = lineEnd;
+		}
+		for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+			if (pending.contains(entry.getKey())) {
+				out.write(entry.getKey().getBytes(charset));
+				out.write('=');
+				out.write(entry.getValue());
+				out.write(LINE_SEPARATOR);
+			}
+		}
+	}
+
+	private static void copy(ByteBuffer source, int from, int to, byte[] chunk, OutputStream out)
+			throws IOException {
+		for (int position = from; position < to;) {
+			int length = Math.min(chunk.length, to - position);
+			source.get(position, chunk, 0, length);
+			out.write(chunk, 0, length);
+			position += length;
+		}
+	}
+
+	private static boolean endsWithNewline(FileChannel channel, long length) throws IOException {
+		ByteBuffer last = ByteBuffer.allocate(1);
+		channel.read(last, length - 1);
+		return last.get(0) == '\n';
+	}
+
+	/**
+	 * Position of a key's line and value in the file
+	 */
+	private static final class Line {
+
+		private final long start;
+
+		private final long valueStart;
+
+		/**
+		 * End of the bytes the value may occupy: the end of the value when the line
+		 * was indexed, including the padding left by later shorter values
+		 */
+		private final long slotEnd;
+
+		private Line(long start, long valueStart, long slotEnd) {
+			this.start = start;
+			this.valueStart = valueStart;
+			this.slotEnd = slotEnd;
+		}
+
+		private int capacity() {
+			return (int) (slotEnd - valueStart);
+		}
+	}
+}
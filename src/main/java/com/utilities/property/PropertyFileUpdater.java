@@ -3,11 +3,25 @@ package com.utilities.property;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
@@ -16,9 +30,22 @@ import com.utilities.log.Log;
 
 public class PropertyFileUpdater {
 
+	/**
+	 * Locks serialising the updates of a file within this JVM, by canonical path.
+	 * {@link FileLock}s are held by the whole JVM and cannot serialise its own
+	 * threads.
+	 */
+	private static final Map<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+	/**
+	 * Size from which files are edited in place through a
+	 * {@link PropertyFileIndex} instead of being copied on every update
+	 */
+	private static final long IN_PLACE_MIN_FILE_BYTES = 1L << 20;
+
 	/**
 	 * Method to add or update a single property in the property file
-	 * 
+	 *
 	 * @param fileName Property file path
 	 * @param key      Key of the property
 	 * @param value    Value of the property
@@ -26,48 +53,214 @@ public class PropertyFileUpdater {
 	 *                         adding properties
 	 */
 	public static void updateProperty(String fileName, String key, String value) {
+		updateProperties(fileName, Collections.singletonMap(key, value));
+	}
+
+	/**
+	 * Method to add or update several properties in the property file in a
+	 * single pass.
+	 *
+	 * <p>
+	 * Concurrent updates of the same file, from this or another process, are
+	 * serialised with a lock on {@code fileName + ".lock"}. Files below 1 MB are
+	 * copied with the changes, and the copy is flushed to disk before it
+	 * atomically replaces the original, so that either every change is applied or
+	 * the file is left untouched. Larger files are edited in place through a
+	 * {@link PropertyFileIndex}, at a cost close to the size of the changed
+	 * values rather than the size of the file.
+	 * </p>
+	 *
+	 * @param fileName   Property file path
+	 * @param properties Keys and values to add or update, keys missing from the
+	 *                   file are appended in iteration order
+	 * @throws ConfigException Thrown when there is a problem with updating or
+	 *                         adding properties
+	 */
+	public static void updateProperties(String fileName, Map<String, String> properties) {
+		if (properties.isEmpty())
+			return;
 		File originalFile = new File(fileName);
 		File tempFile = new File(fileName + ".temp");
-		write(key, value, originalFile, tempFile);
-		replaceFile(originalFile, tempFile);
+		ReentrantLock lock = LOCKS.computeIfAbsent(canonicalPath(originalFile), k -> new ReentrantLock());
+		lock.lock();
+		try (FileChannel lockChannel = FileChannel.open(new File(fileName + ".lock").toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock fileLock = lockChannel.lock();
+			try {
+				// an interrupted tail rewrite may have shrunk the file below the threshold
+				PropertyFileIndex.recover(originalFile.toPath());
+				if (originalFile.length() >= IN_PLACE_MIN_FILE_BYTES)
+					PropertyFileIndex.forFile(originalFile.toPath()).update(new LinkedHashMap<>(properties));
+				else
+					rewrite(properties, originalFile, tempFile);
+			} finally {
+				fileLock.release();
+			}
+		} catch (IOException e) {
+			Log.error(PropertyFileUpdater.class.getSimpleName(), "updateProperties",
+					"Error occurred while updating file:\n%s", ExceptionUtils.getStackTrace(e));
+			throw ConfigException.getInstance(e.getMessage() + ": Error occurred while updating file " + fileName);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reading of a property file run by {@link #readLocked}
+	 *
+	 * @param <T> Type of the value read
+	 */
+	@FunctionalInterface
+	interface LockedRead<T> {
+		T read() throws IOException;
+	}
+
+	/**
+	 * Method to read a property file while no update of it is in progress, from
+	 * this or another process. Large files are edited in place, so a reader not
+	 * holding the lock of {@link #updateProperties} could see a half written
+	 * tail. The lock on {@code fileName + ".lock"} is taken shared, or exclusive
+	 * to first replay an interrupted update. Files in a directory which cannot
+	 * hold the lock file, such as a mounted ConfigMap, cannot be updated either
+	 * and are read without it.
+	 *
+	 * @param <T>      Type of the value read
+	 * @param fileName Property file path
+	 * @param read     Reading of the file
+	 * @return Value read
+	 * @throws IOException Thrown when the file cannot be read
+	 */
+	static <T> T readLocked(String fileName, LockedRead<T> read) throws IOException {
+		File file = new File(fileName);
+		ReentrantLock lock = LOCKS.computeIfAbsent(canonicalPath(file), k -> new ReentrantLock());
+		lock.lock();
+		try {
+			FileChannel lockChannel;
+			try {
+				lockChannel = FileChannel.open(new File(fileName + ".lock").toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.READ, StandardOpenOption.WRITE);
+			} catch (IOException e) {
+				return read.read();
+			}
+			try (lockChannel) {
+				boolean exclusive = PropertyFileIndex.pending(file.toPath());
+				while (true) {
+					FileLock fileLock = lockChannel.lock(0, Long.MAX_VALUE, !exclusive);
+					try {
+						if (exclusive)
+							PropertyFileIndex.recover(file.toPath());
+						else if (PropertyFileIndex.pending(file.toPath())) {
+							// an updater died since the check, retry exclusively to replay it
+							exclusive = true;
+							continue;
+						}
+						return read.read();
+					} finally {
+						fileLock.release();
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	private static void write(String key, String value, File originalFile, File tempFile) {
-		try (BufferedReader reader = new BufferedReader(new FileReader(originalFile));
-				BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+	private static void rewrite(Map<String, String> properties, File originalFile, File tempFile)
+			throws IOException {
+		try {
+			write(new LinkedHashMap<>(properties), originalFile, tempFile);
+			replaceFile(originalFile, tempFile);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Method to copy the original file to the temporary file, replacing the
+	 * values of the given keys and appending the keys which were not found
+	 *
+	 * @param properties   Keys and values to write, keys found in the file are
+	 *                     removed
+	 * @param originalFile Property file
+	 * @param tempFile     Updated copy, flushed to disk on return
+	 */
+	private static void write(Map<String, String> properties, File originalFile, File tempFile) {
+		Charset charset = Charset.defaultCharset();
+		Map<String, String> pending = new HashMap<>(properties);
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(originalFile), charset));
+				FileOutputStream out = new FileOutputStream(tempFile);
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, charset))) {
 
 			String currentLine;
-			boolean updated = false;
 			while ((currentLine = reader.readLine()) != null) {
-				if (currentLine.startsWith(key + "=")) {
-					currentLine = key + "=" + value;
-					updated = true;
+				int separator = currentLine.indexOf('=');
+				if (separator >= 0) {
+					String key = currentLine.substring(0, separator);
+					if (properties.containsKey(key)) {
+						currentLine = key + "=" + properties.get(key);
+						pending.remove(key);
+					}
 				}
 				writer.write(currentLine);
 				writer.newLine();
 			}
 
-			if (!updated) {
-				writer.write(key + "=" + value);
-				writer.newLine();
+			for (Map.Entry<String, String> entry : properties.entrySet()) {
+				if (pending.containsKey(entry.getKey())) {
+					writer.write(entry.getKey() + "=" + entry.getValue());
+					writer.newLine();
+				}
 			}
+			writer.flush();
+			out.getFD().sync();
 
 		} catch (IOException e) {
 			Log.error(PropertyFileUpdater.class.getSimpleName(), "write",
 					"Error occurred while reading/writing file:\n%s", ExceptionUtils.getStackTrace(e));
 			throw ConfigException
-					.getInstance(e.getMessage() + ": Error occurred while reading/writing file for key " + key);
+					.getInstance(e.getMessage() + ": Error occurred while reading/writing file for keys "
+							+ properties.keySet());
 		}
 	}
 
 	private static void replaceFile(File originalFile, File tempFile) {
 		// Replace the original file with the updated file
 		try {
-			Files.move(tempFile.toPath(), originalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			try {
+				Files.move(tempFile.toPath(), originalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), originalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			syncDirectory(originalFile.getAbsoluteFile().toPath().getParent());
 		} catch (IOException e) {
 			Log.error(PropertyFileUpdater.class.getSimpleName(), "replaceFile",
 					"Error occurred while updating file:\n%s", ExceptionUtils.getStackTrace(e));
 			throw ConfigException.getInstance(e.getMessage() + ": Error occurred while updating file");
 		}
 	}
+
+	/**
+	 * Method to flush a directory to disk, so that a file moved into it survives
+	 * a crash. Platforms which cannot open a directory, such as Windows, are
+	 * skipped.
+	 *
+	 * @param directory Directory of the moved file
+	 */
+	static void syncDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// the move itself succeeded, only its durability is not guaranteed
+		}
+	}
 }
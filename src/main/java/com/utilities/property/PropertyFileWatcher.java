@@ -0,0 +1,200 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import com.utilities.exceptions.ConfigException;
+import com.utilities.log.Log;
+
+/**
+ * Watches a property file through the {@link WatchService} of its directory and
+ * reloads it once writes to it have settled.
+ *
+ * <p>
+ * Any create, modify or delete event for the file name starts a quiet period
+ * of {@code debounceMillis}, restarted by every further event. The reload runs
+ * on the watcher thread once the period passes without events, so a burst of
+ * writes, or the write to a temporary file followed by a move used by
+ * {@link PropertyFileUpdater}, results in a single reload and request threads
+ * never wait for it. Events of other files in the directory, including the
+ * temporary file, are ignored, unless they change the real path the file
+ * resolves to. A Kubernetes ConfigMap is mounted as a symlink to
+ * {@code ..data/<file>}, and an update swaps the {@code ..data} symlink
+ * without any event for the file name itself.
+ * </p>
+ *
+ * <p>
+ * When the watched path is a directory, such as the one of a
+ * {@link DirectoryPropertySource}, an event of any entry triggers the reload.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PropertyFileWatcher {
+
+	private final Path file;
+
+	/**
+	 * Whether {@link #file} is a directory whose every entry is watched
+	 */
+	private final boolean directory;
+
+	private final long debounceNanos;
+
+	private final Runnable reload;
+
+	private final WatchService watchService;
+
+	private final Thread watcherThread;
+
+	/**
+	 * Real path {@link #file} resolved to when last checked, {@code null} while
+	 * it does not exist. Only used by the watcher thread after construction.
+	 */
+	private Path realPath;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Private constructor to register the directory and start the watcher thread
+	 *
+	 * @param file           Property file or directory to watch
+	 * @param debounceMillis Quiet period after the last event before reloading
+	 * @param reload         Action reloading the file, run on the watcher thread
+	 * @throws ConfigException Thrown when the directory cannot be watched
+	 */
+	private PropertyFileWatcher(Path file, long debounceMillis, Runnable reload) {
+		this.file = file.toAbsolutePath().normalize();
+		this.directory = Files.isDirectory(this.file);
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, debounceMillis));
+		this.reload = reload;
+		this.realPath = directory ? null : realPath();
+		try {
+			this.watchService = FileSystems.getDefault().newWatchService();
+			Path watched = directory ? this.file : this.file.getParent();
+			watched.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			throw ConfigException.getInstance("unable to watch property file " + file + ": " + e.getMessage());
+		}
+		this.watcherThread = new Thread(this::watch, "property-watcher");
+		this.watcherThread.setDaemon(true);
+		this.watcherThread.start();
+	}
+
+	/**
+	 * Method to get a new started instance of {@link PropertyFileWatcher}
+	 *
+	 * @param file           Property file or directory to watch
+	 * @param debounceMillis Quiet period after the last event before reloading
+	 * @param reload         Action reloading the file, run on the watcher thread
+	 * @return New instance of {@link PropertyFileWatcher}
+	 * @throws ConfigException Thrown when the directory cannot be watched
+	 */
+	static PropertyFileWatcher getInstance(Path file, long debounceMillis, Runnable reload) {
+		return new PropertyFileWatcher(file, debounceMillis, reload);
+	}
+
+	/**
+	 * Watch loop waiting for an event of the file, then for the quiet period, and
+	 * reloading
+	 */
+	private void watch() {
+		try {
+			while (running) {
+				if (!drain(watchService.take()))
+					continue;
+				long deadline = System.nanoTime() + debounceNanos;
+				long remaining;
+				while ((remaining = deadline - System.nanoTime()) > 0) {
+					WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+					if (key != null && drain(key))
+						deadline = System.nanoTime() + debounceNanos;
+				}
+				reload();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// closed by close()
+		}
+	}
+
+	/**
+	 * Method to consume the events of a key
+	 *
+	 * @param key Signalled key
+	 * @return {@code true} if one of the events concerns the watched file, or
+	 *         the file now resolves to another real path
+	 */
+	private boolean drain(WatchKey key) {
+		boolean relevant = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (directory || event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| file.getFileName().equals(event.context()))
+				relevant = true;
+		}
+		if (!directory) {
+			Path current = realPath();
+			if (!Objects.equals(current, realPath)) {
+				realPath = current;
+				relevant = true;
+			}
+		}
+		if (!key.reset()) {
+			Log.warn(this.getClass().getSimpleName(), "drain", "directory of %s is no longer watched", file);
+			running = false;
+		}
+		return relevant;
+	}
+
+	private void reload() {
+		// a single file in the middle of being replaced is reloaded by the event
+		// of its creation
+		if (!running || !directory && !file.toFile().isFile())
+			return;
+		try {
+			reload.run();
+		} catch (RuntimeException e) {
+			Log.error(this.getClass().getSimpleName(), "reload",
+					"reload of %s failed, keeping the previous properties: %n%s", file,
+					ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Method to resolve the symlinks of the watched file
+	 *
+	 * @return Real path of the file, {@code null} if it does not exist
+	 */
+	private Path realPath() {
+		try {
+			return file.toRealPath();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Method to stop watching the file
+	 */
+	void close() {
+		running = false;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			Log.warn(this.getClass().getSimpleName(), "close", "unable to close watch service: %s", e.getMessage());
+		}
+	}
+}
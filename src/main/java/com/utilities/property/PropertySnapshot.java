@@ -0,0 +1,439 @@
+package com.utilities.property;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import lombok.Getter;
+
+/**
+ * Immutable view of one load of the property file. {@link AppProperties}
+ * publishes the current snapshot through a single volatile reference, so that
+ * a lookup is one volatile read and one hash probe, without any lock, and
+ * readers never observe a load in progress.
+ *
+ * <p>
+ * A snapshot backed by {@link CompiledProperties} decodes and parses a value
+ * the first time it is looked up, and every value only when the whole map is
+ * needed.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+final class PropertySnapshot {
+
+	private static final AtomicLong VERSIONS = new AtomicLong();
+
+	/**
+	 * Snapshot published before anything is loaded and after
+	 * {@link AppProperties#clean()}
+	 */
+	static final PropertySnapshot EMPTY = new PropertySnapshot(Collections.emptyMap(), null);
+
+	/**
+	 * Parsed values by key, built on first use for compiled snapshots
+	 */
+	private volatile Map<String, TypedValue> values;
+
+	/**
+	 * Mapped compiled file backing the snapshot, {@code null} when loaded from
+	 * text
+	 */
+	private final CompiledProperties compiled;
+
+	/**
+	 * Values of a compiled snapshot parsed so far
+	 */
+	private final Map<String, TypedValue> parsed;
+
+	/**
+	 * Increasing number identifying the load
+	 */
+	@Getter
+	private final long version;
+
+	/**
+	 * Path the snapshot was loaded from, {@code null} for {@link #EMPTY}
+	 */
+	@Getter
+	private final String source;
+
+	/**
+	 * Keys in sorted order, built on first prefix lookup
+	 */
+	private volatile String[] sortedKeys;
+
+	/**
+	 * Maximum number of prefix views, and of bound records, cached by a snapshot.
+	 * Further prefixes, e.g. built from request data, get uncached instances.
+	 */
+	private static final int MAX_CACHED_VIEWS = 256;
+
+	/**
+	 * Prefix views created so far, at most {@value #MAX_CACHED_VIEWS}
+	 */
+	private final Map<String, PropertyView> views = new ConcurrentHashMap<>();
+
+	/**
+	 * Records bound so far, by prefix and record type, at most
+	 * {@value #MAX_CACHED_VIEWS}
+	 */
+	private final Map<List<Object>, Record> bindings = new ConcurrentHashMap<>();
+
+	/**
+	 * Lazily built {@link Properties} view returned by
+	 * {@link AppProperties#getLoadedProperties()}
+	 */
+	private volatile Properties properties;
+
+	/**
+	 * Private constructor to parse every value once
+	 *
+	 * @param raw    Keys and values as written in the property file
+	 * @param source Path the values were loaded from
+	 */
+	private PropertySnapshot(Map<String, String> raw, String source) {
+		Map<String, TypedValue> parsed = new HashMap<>(Math.max(16, (int) (raw.size() / 0.75f) + 1));
+		raw.forEach((key, value) -> parsed.put(key, TypedValue.getInstance(value)));
+		this.values = parsed;
+		this.compiled = null;
+		this.parsed = null;
+		this.source = source;
+		this.version = VERSIONS.incrementAndGet();
+	}
+
+	/**
+	 * Private constructor to back the snapshot with a compiled file, whose values
+	 * are only decoded and parsed when looked up
+	 *
+	 * @param compiled Mapped compiled file
+	 * @param source   Path of the text file it was compiled from
+	 */
+	private PropertySnapshot(CompiledProperties compiled, String source) {
+		this.compiled = compiled;
+		this.parsed = new ConcurrentHashMap<>();
+		this.source = source;
+		this.version = VERSIONS.incrementAndGet();
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertySnapshot}
+	 *
+	 * @param raw    Keys and values as written in the property file
+	 * @param source Path the values were loaded from
+	 * @return New instance of {@link PropertySnapshot}
+	 */
+	static PropertySnapshot getInstance(Map<String, String> raw, String source) {
+		return new PropertySnapshot(raw, source);
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertySnapshot} from loaded
+	 * {@link Properties}
+	 *
+	 * @param loaded Properties read from the file
+	 * @param source Path the properties were loaded from
+	 * @return New instance of {@link PropertySnapshot}
+	 */
+	static PropertySnapshot getInstance(Properties loaded, String source) {
+		Map<String, String> raw = new HashMap<>(Math.max(16, (int) (loaded.size() / 0.75f) + 1));
+		for (String key : loaded.stringPropertyNames())
+			raw.put(key, loaded.getProperty(key));
+		return new PropertySnapshot(raw, source);
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertySnapshot} backed by a
+	 * compiled file
+	 *
+	 * @param compiled Mapped compiled file
+	 * @param source   Path of the text file it was compiled from
+	 * @return New instance of {@link PropertySnapshot}
+	 */
+	static PropertySnapshot getInstance(CompiledProperties compiled, String source) {
+		return new PropertySnapshot(compiled, source);
+	}
+
+	/**
+	 * Method to get the parsed value of a key
+	 *
+	 * @param key Key in the property file
+	 * @return Parsed value or {@code null} if the key is not present
+	 */
+	TypedValue get(String key) {
+		Map<String, TypedValue> all = values;
+		if (all != null)
+			return all.get(key);
+		TypedValue value = parsed.get(key);
+		if (value == null) {
+			String raw = compiled.lookup(key);
+			if (raw == null)
+				return null;
+			value = TypedValue.getInstance(raw);
+			TypedValue existing = parsed.putIfAbsent(key, value);
+			if (existing != null)
+				value = existing;
+		}
+		return value;
+	}
+
+	/**
+	 * Method to get the raw value of a key
+	 *
+	 * @param key Key in the property file
+	 * @return Value or {@code null} if the key is not present
+	 */
+	String getRaw(String key) {
+		TypedValue value = get(key);
+		return value == null ? null : value.getRaw();
+	}
+
+	/**
+	 * Method to get the parsed values by key
+	 *
+	 * @return Unmodifiable map of the parsed values
+	 */
+	Map<String, TypedValue> getValues() {
+		return Collections.unmodifiableMap(materialize());
+	}
+
+	/**
+	 * Method to parse every value of a compiled snapshot, once
+	 *
+	 * @return Parsed values by key
+	 */
+	private Map<String, TypedValue> materialize() {
+		Map<String, TypedValue> all = values;
+		if (all != null)
+			return all;
+		synchronized (this) {
+			if (values == null) {
+				Map<String, TypedValue> built = new HashMap<>(Math.max(16, (int) (compiled.size() / 0.75f) + 1));
+				compiled.forEach((key, raw) -> {
+					TypedValue value = parsed.get(key);
+					built.put(key, value != null ? value : TypedValue.getInstance(raw));
+				});
+				values = built;
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Method to get the number of keys
+	 *
+	 * @return Number of keys
+	 */
+	int size() {
+		return compiled != null ? compiled.size() : values.size();
+	}
+
+	/**
+	 * Method to get the cached view of the keys starting with a prefix, or a new
+	 * uncached one once {@value #MAX_CACHED_VIEWS} prefixes are cached
+	 *
+	 * @param prefix Common prefix of the keys
+	 * @return View of the keys
+	 */
+	PropertyView view(String prefix) {
+		PropertyView view = views.get(prefix);
+		if (view != null)
+			return view;
+		if (views.size() >= MAX_CACHED_VIEWS)
+			return PropertyView.getInstance(this, prefix, sortedKeys());
+		return views.computeIfAbsent(prefix, p -> PropertyView.getInstance(this, p, sortedKeys()));
+	}
+
+	/**
+	 * Method to get the cached record bound from the keys starting with a prefix
+	 *
+	 * @param <T>    Record type
+	 * @param prefix Common prefix of the keys
+	 * @param type   Record class
+	 * @return Bound record
+	 */
+	<T extends Record> T bind(String prefix, Class<T> type) {
+		List<Object> key = List.of(prefix, type);
+		Record bound = bindings.get(key);
+		if (bound == null)
+			bound = bindings.size() >= MAX_CACHED_VIEWS ? PropertyBinder.bind(view(prefix), type)
+					: bindings.computeIfAbsent(key, k -> PropertyBinder.bind(view(prefix), type));
+		return type.cast(bound);
+	}
+
+	private String[] sortedKeys() {
+		String[] keys = sortedKeys;
+		if (keys == null) {
+			if (values == null && compiled != null) {
+				// decode the keys only, already in order but for supplementary characters
+				keys = new String[compiled.size()];
+				for (int i = 0; i < keys.length; i++)
+					keys[i] = compiled.key(i);
+			} else {
+				keys = materialize().keySet().toArray(new String[0]);
+			}
+			Arrays.sort(keys);
+			sortedKeys = keys;
+		}
+		return keys;
+	}
+
+	/**
+	 * Method to get the snapshot as read-only {@link Properties}, built on first
+	 * use and shared afterwards
+	 *
+	 * @return Read-only properties of this snapshot
+	 */
+	Properties asProperties() {
+		Properties view = properties;
+		if (view == null) {
+			view = ReadOnlyProperties.getInstance(materialize());
+			properties = view;
+		}
+		return view;
+	}
+
+	/**
+	 * {@link Properties} rejecting every modification once filled, through its
+	 * methods as well as its collection views, so that the compatibility view
+	 * cannot diverge from the snapshot it was built from
+	 */
+	private static final class ReadOnlyProperties extends Properties {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient boolean sealed;
+
+		/**
+		 * Unmodifiable entries, whose {@code setValue} is rejected as well
+		 */
+		private final transient Set<Map.Entry<Object, Object>> entries;
+
+		private ReadOnlyProperties(Map<String, TypedValue> values) {
+			super(values.size());
+			values.forEach((key, value) -> super.put(key, value.getRaw()));
+			this.entries = Collections.unmodifiableMap(new AbstractMap<Object, Object>() {
+				@Override
+				public Set<Map.Entry<Object, Object>> entrySet() {
+					return ReadOnlyProperties.super.entrySet();
+				}
+			}).entrySet();
+			this.sealed = true;
+		}
+
+		private static ReadOnlyProperties getInstance(Map<String, TypedValue> values) {
+			return new ReadOnlyProperties(values);
+		}
+
+		private void checkSealed() {
+			if (sealed)
+				throw new UnsupportedOperationException("loaded properties are read-only");
+		}
+
+		@Override
+		public synchronized Object put(Object key, Object value) {
+			checkSealed();
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized void putAll(Map<?, ?> t) {
+			checkSealed();
+			super.putAll(t);
+		}
+
+		@Override
+		public synchronized Object putIfAbsent(Object key, Object value) {
+			checkSealed();
+			return super.putIfAbsent(key, value);
+		}
+
+		@Override
+		public synchronized Object remove(Object key) {
+			checkSealed();
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized boolean remove(Object key, Object value) {
+			checkSealed();
+			return super.remove(key, value);
+		}
+
+		@Override
+		public synchronized Object replace(Object key, Object value) {
+			checkSealed();
+			return super.replace(key, value);
+		}
+
+		@Override
+		public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+			checkSealed();
+			return super.replace(key, oldValue, newValue);
+		}
+
+		@Override
+		public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ? extends Object> function) {
+			checkSealed();
+			super.replaceAll(function);
+		}
+
+		@Override
+		public synchronized Object compute(Object key,
+				BiFunction<? super Object, ? super Object, ? extends Object> function) {
+			checkSealed();
+			return super.compute(key, function);
+		}
+
+		@Override
+		public synchronized Object computeIfAbsent(Object key, Function<? super Object, ? extends Object> function) {
+			checkSealed();
+			return super.computeIfAbsent(key, function);
+		}
+
+		@Override
+		public synchronized Object computeIfPresent(Object key,
+				BiFunction<? super Object, ? super Object, ? extends Object> function) {
+			checkSealed();
+			return super.computeIfPresent(key, function);
+		}
+
+		@Override
+		public synchronized Object merge(Object key, Object value,
+				BiFunction<? super Object, ? super Object, ? extends Object> function) {
+			checkSealed();
+			return super.merge(key, value, function);
+		}
+
+		@Override
+		public synchronized void clear() {
+			checkSealed();
+			super.clear();
+		}
+
+		@Override
+		public Set<Map.Entry<Object, Object>> entrySet() {
+			return sealed ? entries : super.entrySet();
+		}
+
+		@Override
+		public Set<Object> keySet() {
+			return Collections.unmodifiableSet(super.keySet());
+		}
+
+		@Override
+		public Collection<Object> values() {
+			return Collections.unmodifiableCollection(super.values());
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.utilities.property;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Layer of configuration merged by {@link AppProperties} into a single
+ * snapshot. Layers are given lowest precedence first, and a key of a later
+ * layer overrides the same key of every earlier layer.
+ *
+ * @author Kabir Akware
+ */
+public interface PropertySource {
+
+	/**
+	 * Method to get the name of the source, used in logs
+	 *
+	 * @return Name of the source
+	 */
+	String getName();
+
+	/**
+	 * Method to read every key and value of the source
+	 *
+	 * @return Keys and values of the source
+	 * @throws IOException Thrown when the source cannot be read
+	 */
+	Map<String, String> load() throws IOException;
+
+	/**
+	 * Method to get the file or directory whose changes require this source to be
+	 * loaded again
+	 *
+	 * @return Path to watch, or {@code null} when the source does not change while
+	 *         the application runs
+	 */
+	default Path getWatchPath() {
+		return null;
+	}
+}
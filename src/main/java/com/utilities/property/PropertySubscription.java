@@ -0,0 +1,146 @@
+package com.utilities.property;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Registration of a {@link PropertyChangeListener}, used to cancel it.
+ *
+ * <p>
+ * The snapshot published when subscribing is kept until the notifier has
+ * dispatched past it, so that changes the listener could already read when it
+ * subscribed are not delivered to it again.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class PropertySubscription {
+
+	private final Set<String> keys;
+
+	private final String[] prefixes;
+
+	private final PropertyChangeListener listener;
+
+	private final PropertyChangeNotifier notifier;
+
+	/**
+	 * Version of the snapshot published when subscribing
+	 */
+	private final long version;
+
+	/**
+	 * Snapshot published when subscribing, {@code null} once the notifier has
+	 * dispatched a snapshot at least as recent
+	 */
+	private volatile PropertySnapshot subscribedTo;
+
+	/**
+	 * Private constructor to set the subscription
+	 *
+	 * @param keys         Exact keys subscribed to
+	 * @param prefixes     Key prefixes subscribed to
+	 * @param listener     Listener receiving the changes
+	 * @param notifier     Notifier the subscription is registered with
+	 * @param subscribedTo Snapshot published when subscribing
+	 */
+	private PropertySubscription(Set<String> keys, String[] prefixes, PropertyChangeListener listener,
+			PropertyChangeNotifier notifier, PropertySnapshot subscribedTo) {
+		this.keys = keys;
+		this.prefixes = prefixes;
+		this.listener = listener;
+		this.notifier = notifier;
+		this.version = subscribedTo.getVersion();
+		this.subscribedTo = subscribedTo;
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertySubscription}
+	 *
+	 * @param keys         Exact keys subscribed to
+	 * @param prefixes     Key prefixes subscribed to
+	 * @param listener     Listener receiving the changes
+	 * @param notifier     Notifier the subscription is registered with
+	 * @param subscribedTo Snapshot published when subscribing
+	 * @return New instance of {@link PropertySubscription}
+	 */
+	static PropertySubscription getInstance(Set<String> keys, String[] prefixes, PropertyChangeListener listener,
+			PropertyChangeNotifier notifier, PropertySnapshot subscribedTo) {
+		return new PropertySubscription(keys, prefixes, listener, notifier, subscribedTo);
+	}
+
+	Set<String> getKeys() {
+		return keys;
+	}
+
+	PropertyChangeListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Method to check whether a key matches one of the subscribed prefixes
+	 *
+	 * @param key Changed key
+	 * @return {@code true} if a prefix matches
+	 */
+	boolean matchesPrefix(String key) {
+		for (String prefix : prefixes)
+			if (key.startsWith(prefix))
+				return true;
+		return false;
+	}
+
+	boolean hasPrefixes() {
+		return prefixes.length > 0;
+	}
+
+	/**
+	 * Method to drop the changes of a dispatch the listener could already read
+	 * when it subscribed
+	 *
+	 * @param changes  Changes routed to the listener
+	 * @param previous Snapshot the dispatch diffs from
+	 * @param next     Snapshot the dispatch diffs to
+	 * @return Changes to deliver, possibly empty
+	 */
+	List<PropertyChange> unseen(List<PropertyChange> changes, PropertySnapshot previous, PropertySnapshot next) {
+		PropertySnapshot seen = subscribedTo;
+		if (seen == null || version <= previous.getVersion())
+			return changes;
+		if (version >= next.getVersion())
+			return Collections.emptyList();
+		// subscribed between two coalesced loads: only deliver what differs from
+		// the values it subscribed to
+		List<PropertyChange> unseen = new ArrayList<>(changes.size());
+		for (PropertyChange change : changes) {
+			TypedValue value = seen.get(change.getKey());
+			if (!Objects.equals(value == null ? null : value.getRaw(), change.getNewValue()))
+				unseen.add(change);
+		}
+		return unseen;
+	}
+
+	/**
+	 * Method to release the snapshot published when subscribing once a snapshot
+	 * at least as recent has been dispatched
+	 *
+	 * @param dispatched Snapshot just dispatched
+	 * @return {@code true} if released
+	 */
+	boolean caughtUp(PropertySnapshot dispatched) {
+		if (version > dispatched.getVersion())
+			return false;
+		subscribedTo = null;
+		return true;
+	}
+
+	/**
+	 * Method to stop delivering changes to the listener
+	 */
+	public void cancel() {
+		notifier.remove(this);
+	}
+}
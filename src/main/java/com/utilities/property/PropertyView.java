@@ -0,0 +1,280 @@
+package com.utilities.property;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Zero-copy view of the keys of one snapshot starting with a prefix, e.g.
+ * {@code kafka.}, returned by {@link AppProperties#byPrefix(String)}.
+ *
+ * <p>
+ * A view is a range of the sorted key index of its snapshot and is cached by
+ * the snapshot, for its first 256 prefixes, so repeated lookups of a namespace
+ * cost two binary searches once per load and nothing afterwards. Names passed
+ * to the accessors are relative to the prefix. A view keeps reading the
+ * snapshot it was created from, also after a reload.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+public final class PropertyView {
+
+	private final PropertySnapshot snapshot;
+
+	private final String prefix;
+
+	/**
+	 * Sorted keys of the snapshot, shared with every other view of it
+	 */
+	private final String[] keys;
+
+	private final int from;
+
+	private final int to;
+
+	private Map<String, String> map;
+
+	/**
+	 * Private constructor to set the range of the view
+	 *
+	 * @param snapshot Snapshot the view reads
+	 * @param prefix   Common prefix of the keys
+	 * @param keys     Sorted keys of the snapshot
+	 * @param from     Index of the first key with the prefix
+	 * @param to       Index after the last key with the prefix
+	 */
+	private PropertyView(PropertySnapshot snapshot, String prefix, String[] keys, int from, int to) {
+		this.snapshot = snapshot;
+		this.prefix = prefix;
+		this.keys = keys;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Method to get a new instance of {@link PropertyView} over the keys of a
+	 * snapshot starting with a prefix
+	 *
+	 * @param snapshot   Snapshot the view reads
+	 * @param prefix     Common prefix of the keys
+	 * @param sortedKeys Sorted keys of the snapshot
+	 * @return New instance of {@link PropertyView}
+	 */
+	static PropertyView getInstance(PropertySnapshot snapshot, String prefix, String[] sortedKeys) {
+		int from = Arrays.binarySearch(sortedKeys, prefix);
+		if (from < 0)
+			from = -from - 1;
+		int low = from;
+		int high = sortedKeys.length;
+		// keys with the prefix are contiguous from the insertion point on
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedKeys[mid].startsWith(prefix))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return new PropertyView(snapshot, prefix, sortedKeys, from, low);
+	}
+
+	/**
+	 * Method to get the common prefix of the keys
+	 *
+	 * @return Prefix of the view
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * Method to get the number of keys in the view
+	 *
+	 * @return Number of keys
+	 */
+	public int size() {
+		return to - from;
+	}
+
+	/**
+	 * Method to check whether the view has no key
+	 *
+	 * @return {@code true} if no key starts with the prefix
+	 */
+	public boolean isEmpty() {
+		return to == from;
+	}
+
+	/**
+	 * Method to get the full keys of the view, in sorted order
+	 *
+	 * @return Unmodifiable list backed by the key index
+	 */
+	public List<String> keys() {
+		return Collections.unmodifiableList(Arrays.asList(keys).subList(from, to));
+	}
+
+	/**
+	 * Method to get a nested view, e.g. {@code producer.} within {@code kafka.}
+	 *
+	 * @param subPrefix Prefix relative to this view
+	 * @return Cached view of the keys starting with both prefixes
+	 */
+	public PropertyView byPrefix(String subPrefix) {
+		return snapshot.view(prefix + subPrefix);
+	}
+
+	/**
+	 * Method to get a String value
+	 *
+	 * @param name Key relative to the prefix
+	 * @return Value or {@code null} if the key is not present
+	 */
+	public String get(String name) {
+		return snapshot.getRaw(prefix + name);
+	}
+
+	/**
+	 * Method to get an Integer value
+	 *
+	 * @param name         Key relative to the prefix
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value as integer
+	 * @throws NumberFormatException Thrown when the value is not an integer
+	 */
+	public int getInt(String name, int defaultValue) {
+		TypedValue value = snapshot.get(prefix + name);
+		return value == null ? defaultValue : value.asInt(prefix + name);
+	}
+
+	/**
+	 * Method to get a Long value
+	 *
+	 * @param name         Key relative to the prefix
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value as long
+	 * @throws NumberFormatException Thrown when the value is not a long
+	 */
+	public long getLong(String name, long defaultValue) {
+		TypedValue value = snapshot.get(prefix + name);
+		return value == null ? defaultValue : value.asLong(prefix + name);
+	}
+
+	/**
+	 * Method to get a Boolean value
+	 *
+	 * @param name         Key relative to the prefix
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value as boolean
+	 * @throws IllegalArgumentException Thrown when the value is neither
+	 *                                  {@code true} nor {@code false}
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		TypedValue value = snapshot.get(prefix + name);
+		return value == null ? defaultValue : value.asBoolean(prefix + name);
+	}
+
+	/**
+	 * Method to get a Duration value
+	 *
+	 * @param name         Key relative to the prefix
+	 * @param defaultValue Value returned when the key is missing
+	 * @return Value as duration
+	 * @throws IllegalArgumentException Thrown when the value is not a duration
+	 */
+	public Duration getDuration(String name, Duration defaultValue) {
+		TypedValue value = snapshot.get(prefix + name);
+		return value == null ? defaultValue : value.asDuration(prefix + name);
+	}
+
+	/**
+	 * Method to get comma separated values
+	 *
+	 * @param name Key relative to the prefix
+	 * @return Unmodifiable list of the items, empty when the key is missing
+	 */
+	public List<String> getList(String name) {
+		TypedValue value = snapshot.get(prefix + name);
+		return value == null ? Collections.emptyList() : value.getListValue();
+	}
+
+	/**
+	 * Method to get the view as a map keyed by the names relative to the prefix,
+	 * e.g. to pass a namespace to a client library
+	 *
+	 * @return Unmodifiable map backed by the view
+	 */
+	public Map<String, String> asMap() {
+		Map<String, String> view = map;
+		if (view == null) {
+			view = new RangeMap();
+			map = view;
+		}
+		return view;
+	}
+
+	@Override
+	public String toString() {
+		return asMap().toString();
+	}
+
+	/**
+	 * Read-only map over the range of the view
+	 */
+	private final class RangeMap extends AbstractMap<String, String> {
+
+		@Override
+		public int size() {
+			return PropertyView.this.size();
+		}
+
+		@Override
+		public String get(Object name) {
+			return name instanceof String ? PropertyView.this.get((String) name) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object name) {
+			return get(name) != null;
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			return new AbstractSet<>() {
+
+				@Override
+				public int size() {
+					return PropertyView.this.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return new Iterator<>() {
+
+						private int index = from;
+
+						@Override
+						public boolean hasNext() {
+							return index < to;
+						}
+
+						@Override
+						public Map.Entry<String, String> next() {
+							if (index >= to)
+								throw new NoSuchElementException();
+							String key = keys[index++];
+							return new SimpleImmutableEntry<>(key.substring(prefix.length()), snapshot.getRaw(key));
+						}
+					};
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.utilities.property;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link PropertySource} reading the JVM system properties, e.g. the
+ * {@code -Dkey=value} options.
+ *
+ * @author Kabir Akware
+ */
+public final class SystemPropertySource implements PropertySource {
+
+	private SystemPropertySource() {
+	}
+
+	/**
+	 * Method to get a new instance of {@link SystemPropertySource}
+	 *
+	 * @return New instance of {@link SystemPropertySource}
+	 */
+	public static SystemPropertySource getInstance() {
+		return new SystemPropertySource();
+	}
+
+	@Override
+	public String getName() {
+		return "system-properties";
+	}
+
+	@Override
+	public Map<String, String> load() {
+		Properties system = System.getProperties();
+		Map<String, String> values = new HashMap<>();
+		for (String key : system.stringPropertyNames())
+			values.put(key, system.getProperty(key));
+		return values;
+	}
+}
@@ -0,0 +1,221 @@
+package com.utilities.property;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import lombok.Getter;
+
+/**
+ * Property value parsed once into every type {@link AppProperties} can return,
+ * so that typed lookups on the request path do not parse anything.
+ *
+ * <p>
+ * A type the raw value cannot be converted to is remembered as {@code null}
+ * and reported with the same exception the conversion would have thrown.
+ * </p>
+ *
+ * @author Kabir Akware
+ */
+@Getter
+final class TypedValue {
+
+	/**
+	 * Separator of list values
+	 */
+	private static final char LIST_SEPARATOR = ',';
+
+	/**
+	 * Value as written in the property file
+	 */
+	private final String raw;
+
+	private final Integer intValue;
+
+	private final Long longValue;
+
+	/**
+	 * {@code null} unless the value is {@code true} or {@code false}, case
+	 * insensitive
+	 */
+	private final Boolean booleanValue;
+
+	private final Duration durationValue;
+
+	/**
+	 * Comma separated items, trimmed and without empty items
+	 */
+	private final List<String> listValue;
+
+	/**
+	 * Private constructor to parse the raw value
+	 *
+	 * @param raw Value as written in the property file
+	 */
+	private TypedValue(String raw) {
+		this.raw = raw;
+		String trimmed = raw.trim();
+		this.longValue = parseLong(trimmed);
+		this.intValue = longValue != null && longValue == longValue.intValue() ? longValue.intValue() : null;
+		this.booleanValue = parseBoolean(trimmed);
+		this.durationValue = parseDuration(trimmed);
+		this.listValue = parseList(raw);
+	}
+
+	/**
+	 * Method to get a new instance of {@link TypedValue}
+	 *
+	 * @param raw Value as written in the property file
+	 * @return New instance of {@link TypedValue}
+	 */
+	static TypedValue getInstance(String raw) {
+		return new TypedValue(raw);
+	}
+
+	/**
+	 * Method to get the value as an integer
+	 *
+	 * @param key Key of the value, used in the error message
+	 * @return Value as integer
+	 * @throws NumberFormatException Thrown when the value is not an integer
+	 */
+	int asInt(String key) {
+		if (intValue == null)
+			throw new NumberFormatException("For input string: \"" + raw + "\" of key " + key);
+		return intValue;
+	}
+
+	/**
+	 * Method to get the value as a long
+	 *
+	 * @param key Key of the value, used in the error message
+	 * @return Value as long
+	 * @throws NumberFormatException Thrown when the value is not a long
+	 */
+	long asLong(String key) {
+		if (longValue == null)
+			throw new NumberFormatException("For input string: \"" + raw + "\" of key " + key);
+		return longValue;
+	}
+
+	/**
+	 * Method to get the value as a boolean
+	 *
+	 * @param key Key of the value, used in the error message
+	 * @return Value as boolean
+	 * @throws IllegalArgumentException Thrown when the value is neither
+	 *                                  {@code true} nor {@code false}
+	 */
+	boolean asBoolean(String key) {
+		if (booleanValue == null)
+			throw new IllegalArgumentException("not a boolean: \"" + raw + "\" of key " + key);
+		return booleanValue;
+	}
+
+	/**
+	 * Method to get the value as a duration
+	 *
+	 * @param key Key of the value, used in the error message
+	 * @return Value as duration
+	 * @throws IllegalArgumentException Thrown when the value is not a duration
+	 */
+	Duration asDuration(String key) {
+		if (durationValue == null)
+			throw new IllegalArgumentException("not a duration: \"" + raw + "\" of key " + key);
+		return durationValue;
+	}
+
+	private static Long parseLong(String value) {
+		int length = value.length();
+		if (length == 0 || length > 20)
+			return null;
+		int start = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+		if (start == length)
+			return null;
+		for (int i = start; i < length; i++)
+			if (value.charAt(i) < '0' || value.charAt(i) > '9')
+				return null;
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Boolean parseBoolean(String value) {
+		if ("true".equalsIgnoreCase(value))
+			return Boolean.TRUE;
+		if ("false".equalsIgnoreCase(value))
+			return Boolean.FALSE;
+		return null;
+	}
+
+	/**
+	 * Method to parse a duration written either in ISO-8601 ({@code PT5S}), as a
+	 * number with one of the units {@code ns}, {@code us}, {@code ms}, {@code s},
+	 * {@code m}, {@code h} or {@code d}, or as a plain number of milliseconds
+	 *
+	 * @param value Trimmed value
+	 * @return Parsed duration or {@code null}
+	 */
+	private static Duration parseDuration(String value) {
+		if (value.isEmpty())
+			return null;
+		char first = Character.toUpperCase(value.charAt(0));
+		if (first == 'P' || ((first == '-' || first == '+') && value.length() > 1
+				&& Character.toUpperCase(value.charAt(1)) == 'P')) {
+			try {
+				return Duration.parse(value);
+			} catch (DateTimeParseException e) {
+				return null;
+			}
+		}
+		int unitStart = value.length();
+		while (unitStart > 0 && Character.isLetter(value.charAt(unitStart - 1)))
+			unitStart--;
+		Long amount = parseLong(value.substring(0, unitStart).trim());
+		if (amount == null)
+			return null;
+		try {
+			switch (value.substring(unitStart).toLowerCase(Locale.ROOT)) {
+			case "":
+			case "ms":
+				return Duration.ofMillis(amount);
+			case "ns":
+				return Duration.ofNanos(amount);
+			case "us":
+				return Duration.ofNanos(Math.multiplyExact(amount, 1_000L));
+			case "s":
+				return Duration.ofSeconds(amount);
+			case "m":
+				return Duration.ofMinutes(amount);
+			case "h":
+				return Duration.ofHours(amount);
+			case "d":
+				return Duration.ofDays(amount);
+			default:
+				return null;
+			}
+		} catch (ArithmeticException e) {
+			return null;
+		}
+	}
+
+	private static List<String> parseList(String value) {
+		List<String> items = new ArrayList<>();
+		int start = 0;
+		int length = value.length();
+		for (int i = 0; i <= length; i++) {
+			if (i == length || value.charAt(i) == LIST_SEPARATOR) {
+				String item = value.substring(start, i).trim();
+				if (!item.isEmpty())
+					items.add(item);
+				start = i + 1;
+			}
+		}
+		return items.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(items);
+	}
+}